@@ -0,0 +1,43 @@
+package com.jayway.oglhelloworld.frame;
+
+import android.view.Choreographer;
+
+/**
+ * Frames timed by the display vsync through {@link Choreographer}.
+ * <p/>
+ * Notice: Must be created on a thread with a looper, usually the UI thread, callbacks are called on that thread.
+ * Only one callback can be posted at a time.
+ */
+public class ChoreographerFrameClock implements FrameClock {
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+
+    private Callback mCallback;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(final long frameTimeNanos) {
+            final Callback callback = mCallback;
+            mCallback = null;
+            if (callback != null) {
+                callback.onFrame(frameTimeNanos);
+            }
+        }
+    };
+
+    @Override
+    public void postFrameCallback(final Callback callback) {
+        if (mCallback == null) {
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
+        mCallback = callback;
+    }
+
+    @Override
+    public void removeFrameCallback(final Callback callback) {
+        if (mCallback == callback) {
+            mChoreographer.removeFrameCallback(mFrameCallback);
+            mCallback = null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.jayway.oglhelloworld.frame;
+
+/**
+ * A source of frame callbacks, e.g. the display vsync, see {@link ChoreographerFrameClock}.
+ * <p/>
+ * Callbacks are one-shot like those of {@link android.view.Choreographer}, a callback posts itself again to get the
+ * next frame.
+ */
+public interface FrameClock {
+
+    public interface Callback {
+        /**
+         * @param frameTimeNanos The time the frame started, in nanoseconds. Increasing, but with an arbitrary origin.
+         */
+        void onFrame(long frameTimeNanos);
+    }
+
+    /**
+     * Calls a callback once, on the next frame.
+     */
+    void postFrameCallback(Callback callback);
+
+    /**
+     * Removes a posted callback, does nothing if it is not posted.
+     */
+    void removeFrameCallback(Callback callback);
+}
@@ -0,0 +1,141 @@
+package com.jayway.oglhelloworld.frame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values with a bounded relative error, laid out like an HDR histogram: values below
+ * {@code 2 * SUB_BUCKET_COUNT} get a bucket each, above that every power of two is split into
+ * {@link #SUB_BUCKET_COUNT} buckets, so each bucket is at most about 3% wide relative to its values.
+ * <p/>
+ * Recording is lock-free and does not allocate, so it can be done every frame on the GL thread while another thread
+ * reads the percentiles.
+ */
+public class FrameHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of buckets per power of two.
+     */
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Larger values are recorded as this.
+     */
+    public static final long MAX_VALUE = (1L << 30) - 1;
+
+    private static final int BUCKET_COUNT = getIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * The value at some percentiles of a histogram, see {@link #getPercentiles()}.
+     */
+    public static class Percentiles {
+        public final long count;
+        public final long p50;
+        public final long p95;
+        public final long p99;
+        public final long max;
+
+        Percentiles(long count, long p50, long p95, long p99, long max) {
+            this.count = count;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+    }
+
+    /**
+     * @param value The value, negative values are recorded as 0.
+     */
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+
+        mCounts.incrementAndGet(getIndex(value));
+        mTotalCount.incrementAndGet();
+
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Notice: Values recorded while resetting may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mMax.set(0);
+    }
+
+    public long getTotalCount() {
+        return mTotalCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * @param percentile The percentile, in [0 100].
+     * @return The largest value in the bucket holding the percentile, at most the largest value recorded, or 0 if no
+     * values are recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        return getValueAtPercentile(percentile, mTotalCount.get());
+    }
+
+    public Percentiles getPercentiles() {
+        final long count = mTotalCount.get();
+        return new Percentiles(count,
+                               getValueAtPercentile(50, count),
+                               getValueAtPercentile(95, count),
+                               getValueAtPercentile(99, count),
+                               mMax.get());
+    }
+
+    private long getValueAtPercentile(double percentile, long totalCount) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        final long max = mMax.get();
+
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mCounts.get(i);
+            if (count >= rank) {
+                return Math.min(getHighestValue(i), max);
+            }
+        }
+        // Values recorded while iterating
+        return max;
+    }
+
+    private static int getIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >> shift);
+    }
+
+    private static long getHighestValue(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long top = index - shift * SUB_BUCKET_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+}
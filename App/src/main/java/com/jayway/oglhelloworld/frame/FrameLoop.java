@@ -0,0 +1,176 @@
+package com.jayway.oglhelloworld.frame;
+
+/**
+ * Runs a simulation at a fixed time step, paced by the frames of a {@link FrameClock}.
+ * <p/>
+ * The time measured between frames is accumulated and consumed in whole steps, so the simulation advances at the same
+ * speed whatever the frame rate is. What is left over is passed to {@link Listener#onRender(float)}, to draw the
+ * state interpolated between the last two steps. When frames take so long that more than
+ * {@link #DEFAULT_MAX_STEPS_PER_FRAME} steps are due, the remaining steps are skipped instead of letting the
+ * simulation fall further behind every frame.
+ * <p/>
+ * Notice: Not thread safe, the listener is called on the thread of the clock.
+ */
+public class FrameLoop implements FrameClock.Callback {
+    /**
+     * 60 steps per second.
+     */
+    public static final long DEFAULT_STEP_NANOS = 1000000000L / 60;
+
+    /**
+     * The number of steps a single frame may run.
+     */
+    public static final int DEFAULT_MAX_STEPS_PER_FRAME = 4;
+
+    /**
+     * Longer frame times, e.g. after the process was paused, are clamped to this.
+     */
+    public static final long MAX_FRAME_NANOS = 250000000L;
+
+    public interface Listener {
+        /**
+         * Advances the simulation one step.
+         *
+         * @param dt The step, in seconds.
+         */
+        void onStep(float dt);
+
+        /**
+         * Called once per frame, after the steps of the frame.
+         *
+         * @param alpha Where the frame lies between the last two steps, in [0 1). Draw {@code previous * (1 - alpha)
+         *              + current * alpha}.
+         */
+        void onRender(float alpha);
+    }
+
+    private final FrameClock mClock;
+    private final Listener mListener;
+
+    private final long mStepNanos;
+    private final float mStepSeconds;
+    private int mMaxStepsPerFrame = DEFAULT_MAX_STEPS_PER_FRAME;
+
+    private boolean mIsRunning;
+    private boolean mHasFrameTime;
+    private long mFrameTimeNanos;
+    private long mAccumulatedNanos;
+
+    // Statistics
+    private long mLastFrameNanos;
+    private int mFrameCount;
+    private int mStepCount;
+    private int mSkippedStepCount;
+
+    public FrameLoop(FrameClock clock, Listener listener) {
+        this(clock, listener, DEFAULT_STEP_NANOS);
+    }
+
+    /**
+     * @param stepNanos The simulation step, in nanoseconds.
+     */
+    public FrameLoop(FrameClock clock, Listener listener, long stepNanos) {
+        mClock = clock;
+        mListener = listener;
+        mStepNanos = stepNanos;
+        mStepSeconds = stepNanos / 1e9f;
+    }
+
+    /**
+     * @param maxStepsPerFrame See {@link #DEFAULT_MAX_STEPS_PER_FRAME}.
+     */
+    public void setMaxStepsPerFrame(int maxStepsPerFrame) {
+        mMaxStepsPerFrame = Math.max(1, maxStepsPerFrame);
+    }
+
+    /**
+     * Starts running on the next frame. The first frame only measures the time, it runs no steps.
+     */
+    public void start() {
+        if (mIsRunning) {
+            return;
+        }
+
+        mIsRunning = true;
+        mHasFrameTime = false;
+        mAccumulatedNanos = 0;
+        mClock.postFrameCallback(this);
+    }
+
+    public void stop() {
+        mIsRunning = false;
+        mClock.removeFrameCallback(this);
+    }
+
+    @Override
+    public void onFrame(final long frameTimeNanos) {
+        if (!mIsRunning) {
+            return;
+        }
+
+        // Post first, so that the listener may stop the loop
+        mClock.postFrameCallback(this);
+
+        long frameNanos = mHasFrameTime ? frameTimeNanos - mFrameTimeNanos : 0;
+        frameNanos = Math.max(0, Math.min(frameNanos, MAX_FRAME_NANOS));
+        mFrameTimeNanos = frameTimeNanos;
+        mHasFrameTime = true;
+
+        mLastFrameNanos = frameNanos;
+        mFrameCount++;
+        mAccumulatedNanos += frameNanos;
+
+        int steps = 0;
+        while (mAccumulatedNanos >= mStepNanos && steps < mMaxStepsPerFrame) {
+            mListener.onStep(mStepSeconds);
+            mAccumulatedNanos -= mStepNanos;
+            steps++;
+        }
+        mStepCount += steps;
+
+        // FRAME SKIPPING: Drop the steps we are too late for ====
+        if (mAccumulatedNanos >= mStepNanos) {
+            mSkippedStepCount += (int) (mAccumulatedNanos / mStepNanos);
+            mAccumulatedNanos %= mStepNanos;
+        }
+
+        if (mIsRunning) {
+            mListener.onRender((float) mAccumulatedNanos / mStepNanos);
+        }
+    }
+
+    // Getters
+
+    public boolean isRunning() {
+        return mIsRunning;
+    }
+
+    /**
+     * @return The simulation step, in seconds.
+     */
+    public float getStep() {
+        return mStepSeconds;
+    }
+
+    /**
+     * @return The time between the last two frames, in nanoseconds.
+     */
+    public long getLastFrameNanos() {
+        return mLastFrameNanos;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getStepCount() {
+        return mStepCount;
+    }
+
+    /**
+     * @return The number of steps dropped because frames took too long.
+     */
+    public int getSkippedStepCount() {
+        return mSkippedStepCount;
+    }
+}
@@ -0,0 +1,200 @@
+package com.jayway.oglhelloworld.frame;
+
+import com.jayway.oglhelloworld.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frame times of a render loop: the interval between the starts of two frames and the CPU time spent rendering each,
+ * recorded in microseconds into a {@link FrameHistogram} each.
+ * <p/>
+ * A frame is janky when it missed a vsync, i.e. its interval is more than one and a half frame budgets, or when
+ * rendering it took longer than the budget.
+ * <p/>
+ * Only continuous frames are recorded, e.g. those of a running {@link FrameLoop}. A frame rendered on demand, e.g. on
+ * touch, follows an arbitrary gap which is not a missed vsync.
+ * <p/>
+ * Notice: {@link #beginFrame(long, boolean)} and {@link #endFrame(long)} must be called from one thread, usually the
+ * GL thread.
+ * The statistics may be read from any thread.
+ */
+public class FrameMetrics {
+    private static final Log LOG = new Log(FrameMetrics.class);
+
+    /**
+     * The budget of a 60 Hz display, in nanoseconds.
+     */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 1000000000L / 60;
+
+    /**
+     * Longer intervals are not recorded, since the loop was paused rather than slow, e.g. with the process.
+     */
+    public static final long MAX_INTERVAL_NANOS = 250000000L;
+
+    private final FrameHistogram mIntervals = new FrameHistogram();
+    private final FrameHistogram mRenderTimes = new FrameHistogram();
+    private final AtomicLong mJankCount = new AtomicLong();
+
+    private volatile long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+
+    // Only touched by the recording thread
+    private long mFrameStartNanos;
+    private long mLastIntervalNanos;
+    private boolean mHasFrameStart;
+    private boolean mIsFrameContinuous;
+    private boolean mIsLastFrameJanky;
+
+    /**
+     * A copy of the statistics at one point in time, in microseconds.
+     */
+    public static class Snapshot {
+        public final FrameHistogram.Percentiles intervals;
+        public final FrameHistogram.Percentiles renderTimes;
+        public final long jankCount;
+        public final long frameBudgetNanos;
+
+        Snapshot(FrameHistogram.Percentiles intervals, FrameHistogram.Percentiles renderTimes, long jankCount,
+                 long frameBudgetNanos) {
+            this.intervals = intervals;
+            this.renderTimes = renderTimes;
+            this.jankCount = jankCount;
+            this.frameBudgetNanos = frameBudgetNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                                 "frames %d, janky %d (budget %.2f ms)%n"
+                                         + "interval ms: p50 %.2f p95 %.2f p99 %.2f max %.2f%n"
+                                         + "render ms:   p50 %.2f p95 %.2f p99 %.2f max %.2f",
+                                 renderTimes.count, jankCount, frameBudgetNanos / 1e6,
+                                 intervals.p50 / 1e3, intervals.p95 / 1e3, intervals.p99 / 1e3, intervals.max / 1e3,
+                                 renderTimes.p50 / 1e3, renderTimes.p95 / 1e3, renderTimes.p99 / 1e3,
+                                 renderTimes.max / 1e3);
+        }
+    }
+
+    /**
+     * @param frameBudgetNanos The time one frame may take, see {@link #DEFAULT_FRAME_BUDGET_NANOS}.
+     */
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        mFrameBudgetNanos = frameBudgetNanos;
+    }
+
+    /**
+     * Call when a frame starts rendering.
+     *
+     * @param timeNanos  The time, e.g. {@link System#nanoTime()}.
+     * @param continuous Whether the frame is one of a continuous run, e.g. of a running {@link FrameLoop}, rather
+     *                   than rendered on demand. Other frames are not recorded, and the interval to the frame
+     *                   before is only recorded when both are continuous.
+     */
+    public void beginFrame(long timeNanos, boolean continuous) {
+        final boolean hasInterval = continuous && mIsFrameContinuous && mHasFrameStart;
+        mLastIntervalNanos = hasInterval ? timeNanos - mFrameStartNanos : 0;
+        if (mLastIntervalNanos > MAX_INTERVAL_NANOS) {
+            mLastIntervalNanos = 0;
+        } else if (hasInterval) {
+            mIntervals.record(mLastIntervalNanos / 1000);
+        }
+
+        mFrameStartNanos = timeNanos;
+        mHasFrameStart = true;
+        mIsFrameContinuous = continuous;
+    }
+
+    /**
+     * Call when a frame is done rendering.
+     *
+     * @param timeNanos The time, from the same clock as for {@link #beginFrame(long, boolean)}.
+     */
+    public void endFrame(long timeNanos) {
+        if (!mIsFrameContinuous) {
+            mIsLastFrameJanky = false;
+            return;
+        }
+
+        final long renderNanos = timeNanos - mFrameStartNanos;
+        mRenderTimes.record(renderNanos / 1000);
+
+        final long budget = mFrameBudgetNanos;
+        mIsLastFrameJanky = renderNanos > budget || mLastIntervalNanos > budget + budget / 2;
+        if (mIsLastFrameJanky) {
+            mJankCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets all frames recorded so far, e.g. when an animation starts or the scene changes.
+     */
+    public void reset() {
+        mIntervals.reset();
+        mRenderTimes.reset();
+        mJankCount.set(0);
+    }
+
+    // Getters
+
+    /**
+     * Notice: Only valid on the recording thread.
+     *
+     * @return true if the last frame ended was janky.
+     */
+    public boolean isLastFrameJanky() {
+        return mIsLastFrameJanky;
+    }
+
+    public long getJankCount() {
+        return mJankCount.get();
+    }
+
+    public FrameHistogram getIntervals() {
+        return mIntervals;
+    }
+
+    public FrameHistogram getRenderTimes() {
+        return mRenderTimes;
+    }
+
+    public Snapshot getSnapshot() {
+        return new Snapshot(mIntervals.getPercentiles(), mRenderTimes.getPercentiles(), mJankCount.get(),
+                            mFrameBudgetNanos);
+    }
+
+    // Reporting
+
+    public void log() {
+        LOG.d(getSnapshot().toString());
+    }
+
+    /**
+     * Writes a snapshot to a file, e.g. to compare the frame times of two builds.
+     *
+     * @return true if the file was written.
+     */
+    public boolean writeTo(File file) {
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file);
+            writer.write(getSnapshot().toString());
+            writer.write('\n');
+            return true;
+        } catch (IOException e) {
+            LOG.e("Failed writing frame metrics to " + file + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    LOG.w("Failed closing " + file);
+                }
+            }
+        }
+    }
+}
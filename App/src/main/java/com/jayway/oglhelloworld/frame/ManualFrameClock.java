@@ -0,0 +1,62 @@
+package com.jayway.oglhelloworld.frame;
+
+import java.util.ArrayList;
+
+/**
+ * A clock advanced by hand, which makes frame timing deterministic, e.g. to run a {@link FrameLoop} on the JVM with
+ * a simulated vsync and simulated load.
+ */
+public class ManualFrameClock implements FrameClock {
+
+    private final ArrayList<Callback> mCallbacks = new ArrayList<Callback>();
+    private final ArrayList<Callback> mRunning = new ArrayList<Callback>();
+
+    private long mTimeNanos;
+
+    /**
+     * @param startTimeNanos The time of the first frame.
+     */
+    public ManualFrameClock(long startTimeNanos) {
+        mTimeNanos = startTimeNanos;
+    }
+
+    @Override
+    public void postFrameCallback(final Callback callback) {
+        if (!mCallbacks.contains(callback)) {
+            mCallbacks.add(callback);
+        }
+    }
+
+    @Override
+    public void removeFrameCallback(final Callback callback) {
+        mCallbacks.remove(callback);
+    }
+
+    /**
+     * Runs the callbacks posted so far as one frame at the current time, then moves the time forward.
+     *
+     * @param frameNanos The time to the next frame.
+     */
+    public void frame(long frameNanos) {
+        // Callbacks posted while running belong to the next frame
+        mRunning.addAll(mCallbacks);
+        mCallbacks.clear();
+        for (int i = 0; i < mRunning.size(); i++) {
+            mRunning.get(i).onFrame(mTimeNanos);
+        }
+        mRunning.clear();
+
+        mTimeNanos += frameNanos;
+    }
+
+    public long getTimeNanos() {
+        return mTimeNanos;
+    }
+
+    /**
+     * @return true if a callback waits for the next frame.
+     */
+    public boolean hasCallbacks() {
+        return !mCallbacks.isEmpty();
+    }
+}
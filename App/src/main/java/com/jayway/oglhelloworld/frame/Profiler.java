@@ -0,0 +1,323 @@
+package com.jayway.oglhelloworld.frame;
+
+import com.jayway.oglhelloworld.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scoped timing markers recorded into a preallocated ring buffer, which can be exported as Chrome trace events and
+ * opened in {@code chrome://tracing} or Perfetto.
+ * <p/>
+ * Mark a section with {@link #begin(String)} and {@link #end(String)}, and the end of every frame with
+ * {@link #endFrame()}. While disabled a marker only reads a flag, while enabled it stores the time, thread and name
+ * without allocating. When the buffer is full the oldest events are overwritten.
+ * <p/>
+ * Notice: The names are stored by reference, so use constants rather than strings built per call.
+ */
+public final class Profiler {
+    private static final Log LOG = new Log(Profiler.class);
+
+    /**
+     * The number of events kept, must be a power of two.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final byte BEGIN = 0;
+    private static final byte END = 1;
+    private static final byte FRAME = 2;
+
+    private static final String FRAME_NAME = "frame";
+
+    private static final long NOT_WRITTEN = -1;
+
+    private static final class Events {
+        final int mask;
+        final long[] times;
+        final long[] threads;
+        final String[] names;
+        final byte[] types;
+        final AtomicLong position = new AtomicLong();
+
+        // The position of the event each slot holds, set once the event is written
+        final AtomicLongArray sequences;
+
+        Events(int capacity) {
+            mask = capacity - 1;
+            times = new long[capacity];
+            threads = new long[capacity];
+            names = new String[capacity];
+            types = new byte[capacity];
+
+            final long[] notWritten = new long[capacity];
+            Arrays.fill(notWritten, NOT_WRITTEN);
+            sequences = new AtomicLongArray(notWritten);
+        }
+    }
+
+    private static volatile boolean sEnabled;
+    private static volatile Events sEvents;
+
+    // Capture window, only touched by the thread calling endFrame()
+    private static int sFramesLeft;
+    private static File sCaptureFile;
+
+    // Writes the captures, so that the trace is not written on the thread ending the frame
+    private static ThreadPoolExecutor sExportExecutor;
+
+    private Profiler() {
+    }
+
+    /**
+     * Starts recording until disabled, keeping the last {@link #DEFAULT_CAPACITY} events.
+     */
+    public static void setEnabled(boolean enabled) {
+        if (enabled && sEvents == null) {
+            sEvents = new Events(DEFAULT_CAPACITY);
+        }
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Clears the recorded events and records a number of frames, then writes them to a file on a background thread.
+     *
+     * @param frameCount The number of frames, ended by {@link #endFrame()}.
+     * @param file       The file to write the trace to.
+     */
+    public static void startCapture(int frameCount, File file) {
+        sEnabled = false;
+        sEvents = new Events(DEFAULT_CAPACITY);
+        sFramesLeft = frameCount;
+        sCaptureFile = file;
+        // Started here rather than by the last frame
+        getExportExecutor().prestartCoreThread();
+        sEnabled = frameCount > 0;
+    }
+
+    /**
+     * Starts a section, on the calling thread.
+     */
+    public static void begin(String name) {
+        if (sEnabled) {
+            record(BEGIN, name);
+        }
+    }
+
+    /**
+     * Ends the section started last on the calling thread.
+     */
+    public static void end(String name) {
+        if (sEnabled) {
+            record(END, name);
+        }
+    }
+
+    /**
+     * Marks the end of a frame, and ends a capture after its last frame.
+     */
+    public static void endFrame() {
+        if (!sEnabled) {
+            return;
+        }
+
+        record(FRAME, FRAME_NAME);
+
+        if (sCaptureFile != null && --sFramesLeft <= 0) {
+            sEnabled = false;
+
+            final Events events = sEvents;
+            final File file = sCaptureFile;
+            getExportExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeChromeTrace(events, file);
+                }
+            });
+            sCaptureFile = null;
+        }
+    }
+
+    private static void record(byte type, String name) {
+        final Events events = sEvents;
+        final long position = events.position.getAndIncrement();
+        final int i = (int) (position & events.mask);
+
+        // The slot may still hold an event from the previous lap, which must not be read while it is replaced
+        events.sequences.set(i, NOT_WRITTEN);
+        events.times[i] = System.nanoTime();
+        events.threads[i] = Thread.currentThread().getId();
+        events.names[i] = name;
+        events.types[i] = type;
+        events.sequences.lazySet(i, position);
+    }
+
+    private static synchronized ThreadPoolExecutor getExportExecutor() {
+        if (sExportExecutor == null) {
+            sExportExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                                                     new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "Profiler");
+                    thread.setDaemon(true);
+                    // Behind the rendering of the frames after the capture
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sExportExecutor;
+    }
+
+    // EXPORT =====================================================================================================================
+
+    /**
+     * Writes the recorded events as Chrome trace event JSON.
+     * <p/>
+     * Notice: Events recorded while writing are left out or may come out garbled, disable the profiler first.
+     *
+     * @return true if the file was written.
+     */
+    public static boolean writeChromeTrace(File file) {
+        return writeChromeTrace(sEvents, file);
+    }
+
+    /**
+     * @return The number of events written.
+     */
+    public static int writeChromeTrace(Writer writer) throws IOException {
+        return writeChromeTrace(sEvents, writer);
+    }
+
+    private static boolean writeChromeTrace(Events events, File file) {
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file);
+            final int eventCount = writeChromeTrace(events, writer);
+            LOG.d("Wrote " + eventCount + " trace events to " + file);
+            return true;
+        } catch (IOException e) {
+            LOG.e("Failed writing trace to " + file + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    LOG.w("Failed closing " + file);
+                }
+            }
+        }
+    }
+
+    private static int writeChromeTrace(Events events, Writer writer) throws IOException {
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        if (events == null) {
+            writer.write("]}\n");
+            return 0;
+        }
+
+        final long end = events.position.get();
+        final long start = Math.max(0, end - events.times.length);
+
+        final StringBuilder event = new StringBuilder(128);
+        boolean hasOrigin = false;
+        long origin = 0;
+        int eventCount = 0;
+        for (long position = start; position < end; position++) {
+            final int i = (int) (position & events.mask);
+            if (events.sequences.get(i) != position) {
+                // Claimed but not yet written, or being replaced by a later event
+                continue;
+            }
+
+            final long time = events.times[i];
+            final long thread = events.threads[i];
+            final String name = events.names[i];
+            final byte type = events.types[i];
+            if (events.sequences.get(i) != position) {
+                // Overwritten while being read
+                continue;
+            }
+
+            if (!hasOrigin) {
+                origin = time;
+                hasOrigin = true;
+            }
+
+            event.setLength(0);
+            if (eventCount > 0) {
+                event.append(',');
+            }
+            event.append("\n{\"name\":\"");
+            appendEscaped(event, name);
+            event.append("\",\"ph\":\"");
+            switch (type) {
+                case BEGIN:
+                    event.append('B');
+                    break;
+                case END:
+                    event.append('E');
+                    break;
+                default:
+                    // Instant event spanning all threads
+                    event.append("i\",\"s\":\"g");
+                    break;
+            }
+            event.append("\",\"ts\":");
+            appendMicros(event, time - origin);
+            event.append(",\"pid\":1,\"tid\":")
+                 .append(thread)
+                 .append('}');
+            writer.write(event.toString());
+            eventCount++;
+        }
+        writer.write("\n]}\n");
+        return eventCount;
+    }
+
+    /**
+     * Appends nanoseconds as microseconds with three decimals, without the formatting machinery of String.format.
+     */
+    private static void appendMicros(StringBuilder out, long nanos) {
+        if (nanos < 0) {
+            out.append('-');
+            nanos = -nanos;
+        }
+
+        final int fraction = (int) (nanos % 1000);
+        out.append(nanos / 1000).append('.');
+        if (fraction < 100) {
+            out.append('0');
+        }
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(' ');
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
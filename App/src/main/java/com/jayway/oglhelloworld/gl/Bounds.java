@@ -0,0 +1,101 @@
+package com.jayway.oglhelloworld.gl;
+
+import java.nio.FloatBuffer;
+
+/**
+ * The extent of a mesh in model space, an axis aligned bounding box and a bounding sphere sharing its center.
+ * <p/>
+ * Computed once from the vertex positions, see {@link GlObject#bounds}, and transformed by the model matrix when
+ * tested against a {@link Frustum}.
+ */
+public class Bounds {
+
+    // Exposed directly for performance reasons
+    public final float centerX;
+    public final float centerY;
+    public final float centerZ;
+
+    /**
+     * Half the size of the box along each axis.
+     */
+    public final float extentX;
+    public final float extentY;
+    public final float extentZ;
+
+    /**
+     * The radius of the sphere around the center containing all vertices, at most the half diagonal of the box.
+     */
+    public final float radius;
+
+    /**
+     * @param vertexData  The float vertex data.
+     * @param vertexType  The layout of the vertex data.
+     * @param vertexCount The number of vertices.
+     */
+    public Bounds(FloatBuffer vertexData, VertexType vertexType, int vertexCount) {
+        final int dimension = vertexType.getDimension();
+        final int positionOffset = vertexType.getPositionOffset();
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int v = 0; v < vertexCount; v++) {
+            final int p = v * dimension + positionOffset;
+            final float x = vertexData.get(p);
+            final float y = vertexData.get(p + 1);
+            final float z = vertexData.get(p + 2);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        if (vertexCount == 0) {
+            minX = minY = minZ = maxX = maxY = maxZ = 0f;
+        }
+
+        centerX = (minX + maxX) * 0.5f;
+        centerY = (minY + maxY) * 0.5f;
+        centerZ = (minZ + maxZ) * 0.5f;
+        extentX = (maxX - minX) * 0.5f;
+        extentY = (maxY - minY) * 0.5f;
+        extentZ = (maxZ - minZ) * 0.5f;
+
+        // A second pass gives a tighter sphere than the half diagonal, e.g. for round meshes
+        float maxSquared = 0f;
+        for (int v = 0; v < vertexCount; v++) {
+            final int p = v * dimension + positionOffset;
+            final float dx = vertexData.get(p) - centerX;
+            final float dy = vertexData.get(p + 1) - centerY;
+            final float dz = vertexData.get(p + 2) - centerZ;
+            maxSquared = Math.max(maxSquared, dx * dx + dy * dy + dz * dz);
+        }
+        radius = (float) Math.sqrt(maxSquared);
+    }
+
+    /**
+     * Creates bounds which were computed earlier, e.g. stored in a {@link MeshFile}.
+     */
+    public Bounds(float centerX, float centerY, float centerZ, float extentX, float extentY, float extentZ,
+                  float radius) {
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.extentX = extentX;
+        this.extentY = extentY;
+        this.extentZ = extentZ;
+        this.radius = radius;
+    }
+
+    /**
+     * @return The largest scale of a model matrix, from the lengths of its axes. Scales the radius into world space.
+     */
+    public static float getMaxScale(float[] modelMatrix) {
+        final float[] m = modelMatrix;
+        final float scaleSquared = Math.max(m[0] * m[0] + m[1] * m[1] + m[2] * m[2],
+                                            Math.max(m[4] * m[4] + m[5] * m[5] + m[6] * m[6],
+                                                     m[8] * m[8] + m[9] * m[9] + m[10] * m[10]));
+        return (float) Math.sqrt(scaleSquared);
+    }
+}
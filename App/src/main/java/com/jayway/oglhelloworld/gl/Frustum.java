@@ -0,0 +1,82 @@
+package com.jayway.oglhelloworld.gl;
+
+/**
+ * The six clip planes of a view-projection matrix, for testing whether bounding volumes can be visible.
+ * <p/>
+ * The planes point inwards and are normalized, so the plane equation gives the signed distance in world space.
+ */
+public class Frustum {
+    /**
+     * Results of {@link #testSphere(float, float, float, float)}.
+     */
+    public static final int OUTSIDE = 0;
+    public static final int INTERSECTING = 1;
+    public static final int INSIDE = 2;
+
+    private static final int PLANE_COUNT = 6;
+
+    // a, b, c and d of each plane: left, right, bottom, top, near, far
+    private final float[] mPlanes = new float[PLANE_COUNT * 4];
+
+    /**
+     * Extracts the planes from the rows of a view-projection matrix (Gribb and Hartmann).
+     *
+     * @param viewProjection The projection matrix times the view matrix, in column-major order.
+     */
+    public void set(float[] viewProjection) {
+        final float[] m = viewProjection;
+        for (int i = 0; i < PLANE_COUNT; i++) {
+            // Row 3 plus or minus row 0, 1 and 2
+            final int row = i / 2;
+            final float sign = (i & 1) == 0 ? 1f : -1f;
+
+            final float a = m[3] + sign * m[row];
+            final float b = m[7] + sign * m[4 + row];
+            final float c = m[11] + sign * m[8 + row];
+            final float d = m[15] + sign * m[12 + row];
+
+            final float length = (float) Math.sqrt(a * a + b * b + c * c);
+            final float scale = length > 0f ? 1f / length : 0f;
+            mPlanes[i * 4] = a * scale;
+            mPlanes[i * 4 + 1] = b * scale;
+            mPlanes[i * 4 + 2] = c * scale;
+            mPlanes[i * 4 + 3] = d * scale;
+        }
+    }
+
+    /**
+     * @return {@link #OUTSIDE} if the sphere is completely outside of a plane, {@link #INSIDE} if it is completely
+     * inside of all planes, otherwise {@link #INTERSECTING}.
+     */
+    public int testSphere(float x, float y, float z, float radius) {
+        final float[] p = mPlanes;
+        int result = INSIDE;
+        for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+            final float distance = p[i] * x + p[i + 1] * y + p[i + 2] * z + p[i + 3];
+            if (distance < -radius) {
+                return OUTSIDE;
+            } else if (distance < radius) {
+                result = INTERSECTING;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param x       The center of the box.
+     * @param extentX Half the size of the box along each axis.
+     * @return false if the box is completely outside of a plane.
+     */
+    public boolean intersectsBox(float x, float y, float z, float extentX, float extentY, float extentZ) {
+        final float[] p = mPlanes;
+        for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+            final float distance = p[i] * x + p[i + 1] * y + p[i + 2] * z + p[i + 3];
+            final float projectedExtent = Math.abs(p[i]) * extentX + Math.abs(p[i + 1]) * extentY
+                                          + Math.abs(p[i + 2]) * extentZ;
+            if (distance < -projectedExtent) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
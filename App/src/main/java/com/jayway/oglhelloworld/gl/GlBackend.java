@@ -0,0 +1,113 @@
+package com.jayway.oglhelloworld.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * The GL calls used by the renderer. The methods mirror their {@link android.opengl.GLES20} counterparts,
+ * so that the render path can be backed by the real GPU or by a stand-in such as {@link RecordingGlBackend}.
+ *
+ * @see Gles20Backend
+ */
+public interface GlBackend {
+
+    // Global state
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glClear(int mask);
+
+    void glEnable(int cap);
+
+    void glDisable(int cap);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glDepthFunc(int func);
+
+    void glDepthMask(boolean flag);
+
+    void glBlendFunc(int sfactor, int dfactor);
+
+    int glGetError();
+
+    String glGetString(int name);
+
+    // Shaders
+
+    int glCreateShader(int type);
+
+    void glShaderSource(int shader, String source);
+
+    void glCompileShader(int shader);
+
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    String glGetShaderInfoLog(int shader);
+
+    void glDeleteShader(int shader);
+
+    int glCreateProgram();
+
+    void glAttachShader(int program, int shader);
+
+    void glLinkProgram(int program);
+
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    String glGetProgramInfoLog(int program);
+
+    void glDeleteProgram(int program);
+
+    void glUseProgram(int program);
+
+    // Uniforms and attributes
+
+    int glGetUniformLocation(int program, String name);
+
+    int glGetAttribLocation(int program, String name);
+
+    void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    // Textures
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    void glActiveTexture(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    void glTexParameterf(int target, int pname, float param);
+
+    /**
+     * @see android.opengl.GLUtils#texImage2D(int, int, android.graphics.Bitmap, int)
+     */
+    void texImage2D(int target, int level, Bitmap bitmap, int border);
+
+    // Buffers
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    // Drawing
+
+    void glDrawArrays(int mode, int first, int count);
+
+    void glDrawElements(int mode, int count, int type, int offset);
+}
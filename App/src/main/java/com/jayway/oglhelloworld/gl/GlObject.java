@@ -0,0 +1,571 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.math.Mat4;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static android.opengl.GLES20.GL_ARRAY_BUFFER;
+import static android.opengl.GLES20.GL_ELEMENT_ARRAY_BUFFER;
+import static android.opengl.GLES20.GL_TRIANGLES;
+import static android.opengl.GLES20.GL_UNSIGNED_INT;
+import static android.opengl.GLES20.GL_UNSIGNED_SHORT;
+
+/**
+ * Object holding all necessary data to render it as a triangle mesh with DemoOpenGL.
+ * <p/>
+ * It also provides functionality modify the model matrix e.g. rotation.
+ *
+ * @author Andreas Nilsson
+ */
+public class GlObject {
+    /**
+     * Largest vertex count that can be addressed with {@link android.opengl.GLES20#GL_UNSIGNED_SHORT} indices.
+     */
+    public static final int MAX_SHORT_INDEXED_VERTICES = 0x10000;
+
+    /**
+     * Buffer handle used when no buffer object has been uploaded.
+     */
+    public static final int NO_BUFFER = 0;
+
+    // Exposed directly for performance reasons
+    public float[] modelMatrix = new float[16];
+
+    public final String title;
+    public final VertexType vertexType;
+
+    /**
+     * The vertex data in the float layout of the vertex type, or {@code null} if the object only has
+     * {@link #vPackedBuffer}, see {@link #getFloatVertexData()}.
+     */
+    public final FloatBuffer vBuffer;
+
+    /**
+     * The vertex data already in the packed layout of the vertex type, uploaded as is, or {@code null} if
+     * {@link #vBuffer} is packed when it is uploaded.
+     */
+    public final ByteBuffer vPackedBuffer;
+
+    public final int vDataStride;
+    public final int vCount;
+
+    public final int vPosOffset;
+    public final int vPosDimension;
+
+    public final int vUVOffset;
+    public final int vUVDimension;
+
+    public final int vNormaDimension;
+    public final int vNormOffset;
+
+    // The attribute formats in graphics memory, see VertexType.ComponentType. Offsets are in bytes.
+    public final int vPosType;
+    public final boolean vPosNormalized;
+    public final int vPosByteOffset;
+
+    public final int vUVType;
+    public final boolean vUVNormalized;
+    public final int vUVByteOffset;
+
+    public final int vNormType;
+    public final boolean vNormNormalized;
+    public final int vNormByteOffset;
+
+    public final int glRenderMode;
+
+    /**
+     * The extent in model space, computed once from the vertex positions.
+     */
+    public final Bounds bounds;
+
+    /**
+     * prefix i means index. {@link #iBuffer} is {@code null} for non-indexed objects.
+     */
+    public final Buffer iBuffer;
+    public final int iCount;
+    public final int iType;
+
+    // Buffer objects, only valid in the GL context they were uploaded in
+    private int mVertexBufferId = NO_BUFFER;
+    private int mIndexBufferId = NO_BUFFER;
+
+    // Simplified versions of this object, see MeshSimplifier
+    private LodChain mLodChain;
+
+    // Bumped whenever the model matrix changes, so that renderers only recompute the matrices derived from it then
+    private int mModelMatrixVersion;
+
+    // The object owning the model matrix and its version, another object when they are shared, see LodChain
+    private GlObject mModelMatrixOwner = this;
+
+    // Matrices derived from the model matrix by the renderer drawing this object
+    MatrixCache mMatrixCache;
+
+    // Drawn instead of this object by renderers which do not support its vertex type, see SceneRenderer
+    GlObject mFallback;
+
+    // Position, rotation and scale, written by the thread animating the object, see publishTransform()
+    private final Transform mTransform = new Transform();
+
+    // Model matrices composed from the transform, handed to the thread drawing the object
+    private final TripleBuffer mPublishedMatrices = new TripleBuffer(Mat4.SIZE);
+
+    // Animation state
+    private float mRotationY;
+    private float mRotationX;
+
+    /**
+     * Creates a {@link GlObject} with {@link #glRenderMode} set
+     * to {@link android.opengl.GLES20#GL_TRIANGLES}.
+     *
+     * @param title      The title.
+     * @param vertexType The vertex type.
+     * @param vertexData The vertex data.
+     */
+    public GlObject(String title, VertexType vertexType, float[] vertexData) {
+        this(title, vertexType, vertexData, GL_TRIANGLES);
+    }
+
+    /**
+     * @param glRenderMode The render mode.
+     * @see GlObject#GlObject(String, VertexType, float[])
+     */
+    public GlObject(String title, VertexType vertexType, float[] vertexData, int glRenderMode) {
+        this(title, vertexType, vertexData, null, glRenderMode);
+    }
+
+    /**
+     * Creates an indexed {@link GlObject}, which is drawn with {@link android.opengl.GLES20#glDrawElements}.
+     * <p/>
+     * Indices are stored as {@link android.opengl.GLES20#GL_UNSIGNED_SHORT} when the vertex count allows it,
+     * otherwise as {@link android.opengl.GLES20#GL_UNSIGNED_INT} which requires the
+     * {@code OES_element_index_uint} extension.
+     *
+     * @param indices The indices into {@code vertexData} or {@code null} if the object is not indexed.
+     * @see GlObject#GlObject(String, VertexType, float[], int)
+     */
+    public GlObject(String title, VertexType vertexType, float[] vertexData, int[] indices, int glRenderMode) {
+        this(title, vertexType, allocateNativeFloatBuffer(vertexData),
+             allocateNativeIndexBuffer(indices, vertexData.length / vertexType.getDimension()), glRenderMode);
+    }
+
+    /**
+     * Creates a {@link GlObject} which uses the provided buffers directly, without copying them.
+     * <p/>
+     * Notice: the buffers are expected to be direct buffers in native byte order, with the data between
+     * position 0 and their limit.
+     *
+     * @param vertexData The vertex data laid out according to the {@code vertexType}.
+     * @param indexData  A {@link ShortBuffer} or {@link IntBuffer} with the indices,
+     *                   or {@code null} if the object is not indexed.
+     * @see GlObject#GlObject(String, VertexType, float[], int[], int)
+     */
+    public GlObject(String title, VertexType vertexType, FloatBuffer vertexData, Buffer indexData, int glRenderMode) {
+        this(title, vertexType, vertexData, indexData, glRenderMode,
+             new Bounds(vertexData, vertexType, vertexData.limit() / vertexType.getDimension()));
+    }
+
+    /**
+     * Creates a {@link GlObject} with bounds that are already known, so that the vertex data is not read, e.g. when
+     * it is memory mapped by {@link MeshFile}.
+     *
+     * @param bounds The bounds of the vertex positions.
+     * @see GlObject#GlObject(String, VertexType, FloatBuffer, Buffer, int)
+     */
+    public GlObject(String title, VertexType vertexType, FloatBuffer vertexData, Buffer indexData, int glRenderMode,
+                    Bounds bounds) {
+        this(title, vertexType, vertexData, null, vertexData.limit() / vertexType.getDimension(), indexData,
+             glRenderMode, bounds);
+    }
+
+    /**
+     * Creates a {@link GlObject} from vertex data which is already packed, e.g. memory mapped by {@link MeshFile}.
+     * It is uploaded without copying it, {@link #vBuffer} is {@code null}.
+     *
+     * @param packedVertexData The vertex data in the packed layout of the {@code vertexType}, see
+     *                         {@link VertexType#getDataStrideInBytes()}.
+     * @param bounds           The bounds of the vertex positions.
+     * @see GlObject#GlObject(String, VertexType, FloatBuffer, Buffer, int, Bounds)
+     */
+    public GlObject(String title, VertexType vertexType, ByteBuffer packedVertexData, Buffer indexData,
+                    int glRenderMode, Bounds bounds) {
+        this(title, vertexType, null, packedVertexData,
+             packedVertexData.limit() / vertexType.getDataStrideInBytes(), indexData, glRenderMode, bounds);
+    }
+
+    private GlObject(String title, VertexType vertexType, FloatBuffer vertexData, ByteBuffer packedVertexData,
+                     int vertexCount, Buffer indexData, int glRenderMode, Bounds bounds) {
+        this.title = title;
+        this.vertexType = vertexType;
+        /**
+         * prefix v means vertex.
+         */
+        this.vBuffer = vertexData;
+        this.vPackedBuffer = packedVertexData;
+        this.vCount = vertexCount;
+        this.vDataStride = vertexType.getDataStrideInBytes();
+
+        this.vPosOffset = vertexType.getPositionOffset();
+        this.vPosDimension = vertexType.getPositionCount();
+
+        this.vUVOffset = vertexType.getUVOffset();
+        this.vUVDimension = vertexType.getUVCount();
+
+        this.vNormOffset = vertexType.getNormalOffset();
+        this.vNormaDimension = vertexType.getNormalCount();
+
+        this.vPosType = vertexType.getPositionType().glType;
+        this.vPosNormalized = vertexType.getPositionType().normalized;
+        this.vPosByteOffset = vertexType.getPositionByteOffset();
+
+        this.vUVType = vertexType.getUVType().glType;
+        this.vUVNormalized = vertexType.getUVType().normalized;
+        this.vUVByteOffset = vertexType.getUVByteOffset();
+
+        this.vNormType = vertexType.getNormalType().glType;
+        this.vNormNormalized = vertexType.getNormalType().normalized;
+        this.vNormByteOffset = vertexType.getNormalByteOffset();
+
+        this.glRenderMode = glRenderMode;
+        this.bounds = bounds;
+
+        this.iBuffer = indexData;
+        if (indexData != null) {
+            this.iCount = indexData.limit();
+            this.iType = indexData instanceof ShortBuffer ? GL_UNSIGNED_SHORT : GL_UNSIGNED_INT;
+        } else {
+            this.iCount = 0;
+            this.iType = 0;
+        }
+
+        Mat4.setIdentity(modelMatrix, 0);
+    }
+
+    // Setters
+
+    /**
+     * Sets the y rotation for this object.
+     * <p/>
+     * Notice: rotation will be clipped within [-90 90] degrees.
+     *
+     * @param angle The angle in degrees.
+     */
+    public void setRotationY(float angle) {
+        // Constraint the angle
+        mRotationY = Math.max(Math.min(angle, 90), -90);
+        updateRotation();
+    }
+
+    /**
+     * Sets the x rotation for this object.
+     * <p/>
+     * Notice: rotation will be clipped within [-90 90] degrees.
+     *
+     * @param angle The angle in degrees.
+     */
+    public void setRotationX(float angle) {
+        // Constraint the angle
+        mRotationX = Math.max(Math.min(angle, 90), -90);
+        updateRotation();
+    }
+
+    /**
+     * Composes the model matrix from the transform, if it changed, and publishes it to the thread drawing this object.
+     * Called by the thread changing the transform, e.g. the UI thread, after a batch of changes, so that the renderer
+     * never sees a half-written transform and several changes are composed only once.
+     *
+     * @return true if a matrix was published.
+     */
+    public boolean publishTransform() {
+        if (!mTransform.updateMatrix(mPublishedMatrices.getBackBuffer(), 0)) {
+            return false;
+        }
+        mPublishedMatrices.publish();
+        return true;
+    }
+
+    /**
+     * Copies the latest model matrix published by {@link #publishTransform()} to {@link #modelMatrix}, if there is a
+     * new one. Called by the renderer on the GL thread before reading the model matrix, it never blocks.
+     * <p/>
+     * Notice: A model matrix written directly is overwritten the next time a transform is published.
+     *
+     * @return true if the model matrix changed.
+     */
+    public boolean updateModelMatrix() {
+        if (!mPublishedMatrices.acquire()) {
+            return false;
+        }
+        System.arraycopy(mPublishedMatrices.getFrontBuffer(), 0, modelMatrix, 0, Mat4.SIZE);
+        invalidateModelMatrix();
+        return true;
+    }
+
+    /**
+     * Gets the current model matrix on the calling thread, for work on an object which is not being drawn, e.g.
+     * batching it. {@link #modelMatrix} is only brought up to date by the renderer drawing the object.
+     * <p/>
+     * Notice: Must be called by the thread changing the transform, like {@link #publishTransform()}.
+     *
+     * @param out The 4x4 matrix to write.
+     * @return {@code out}, composed from the transform once it has been set, otherwise a copy of
+     * {@link #modelMatrix} as written directly, e.g. by a {@link com.jayway.oglhelloworld.gl.scene.SceneGraph}.
+     */
+    public float[] getModelMatrix(float[] out) {
+        if (mTransform.isSet()) {
+            mTransform.composeMatrix(out, 0);
+        } else {
+            System.arraycopy(modelMatrix, 0, out, 0, Mat4.SIZE);
+        }
+        return out;
+    }
+
+    /**
+     * Places this object where another is, for objects derived from it, e.g. by the mesh tools. Copies the current
+     * model matrix and the transform with its rotation angles, and publishes the transform.
+     * <p/>
+     * Notice: Must be called by the thread changing the transform of the source.
+     */
+    void copyTransform(GlObject source) {
+        source.getModelMatrix(modelMatrix);
+        invalidateModelMatrix();
+
+        mTransform.set(source.mTransform);
+        mRotationX = source.mRotationX;
+        mRotationY = source.mRotationY;
+        publishTransform();
+    }
+
+    /**
+     * Must be called after writing to {@link #modelMatrix} directly, so that renderers recompute the matrices derived
+     * from it. {@link #updateModelMatrix()} does this itself.
+     */
+    public void invalidateModelMatrix() {
+        mModelMatrixOwner.mModelMatrixVersion++;
+    }
+
+    /**
+     * Makes this object use the model matrix of another object, including its version.
+     */
+    void shareModelMatrix(GlObject owner) {
+        modelMatrix = owner.modelMatrix;
+        mModelMatrixOwner = owner.mModelMatrixOwner;
+    }
+
+    /**
+     * Lets the renderer draw a simplified level instead of this object when it is small on screen.
+     *
+     * @param lodChain The chain with this object as level 0, or {@code null} to always draw this object.
+     */
+    public void setLodChain(LodChain lodChain) {
+        mLodChain = lodChain;
+    }
+
+    // Getters
+
+    public Transform getTransform() {
+        return mTransform;
+    }
+
+    public LodChain getLodChain() {
+        return mLodChain;
+    }
+
+    /**
+     * @return A number which changes whenever the model matrix changes, see {@link #invalidateModelMatrix()}.
+     */
+    public int getModelMatrixVersion() {
+        return mModelMatrixOwner.mModelMatrixVersion;
+    }
+
+    public float getRotationY() {
+        return mRotationY;
+    }
+
+    public float getRotationX() {
+        return mRotationX;
+    }
+
+    /**
+     * Applies the rotation angles to the transform.
+     */
+    private void updateRotation() {
+        mTransform.setRotation(getRotationX(), 0, 1, 0);
+        mTransform.rotate(getRotationY(), 1, 0, 0);
+    }
+
+    /**
+     * @return {@link #vBuffer}, or if the object only has packed data a new buffer unpacked from
+     * {@link #vPackedBuffer}, e.g. for the mesh processing tools.
+     */
+    public FloatBuffer getFloatVertexData() {
+        if (vBuffer != null) {
+            return vBuffer;
+        }
+        return GlObjectFactory.unpackVertices(vertexType, vPackedBuffer, vCount);
+    }
+
+    public boolean hasTextureCoordinates() {
+        return vUVDimension > 0;
+    }
+
+    public boolean hasNormals() {
+        return vNormaDimension > 0;
+    }
+
+    public boolean isIndexed() {
+        return iBuffer != null;
+    }
+
+    public boolean isUploaded() {
+        return mVertexBufferId != NO_BUFFER;
+    }
+
+    public int getVertexBufferId() {
+        return mVertexBufferId;
+    }
+
+    public int getIndexBufferId() {
+        return mIndexBufferId;
+    }
+
+    /**
+     * Uploads the vertex and index data into buffer objects so that they can be drawn without copying
+     * the data from client memory every frame. Must be called on the GL thread.
+     * <p/>
+     * Notice: the buffers are left unbound afterwards.
+     *
+     * @param gl    The backend to issue the GL calls on.
+     * @param usage The usage hint, e.g. {@link android.opengl.GLES20#GL_STATIC_DRAW}.
+     */
+    public void uploadBuffers(GlBackend gl, int usage) {
+        if (isUploaded()) {
+            return;
+        }
+
+        final int[] ids = new int[isIndexed() ? 2 : 1];
+        gl.glGenBuffers(ids.length, ids, 0);
+
+        mVertexBufferId = ids[0];
+        gl.glBindBuffer(GL_ARRAY_BUFFER, mVertexBufferId);
+        // Compact vertex types are packed on the way to graphics memory, unless the data was loaded packed
+        final Buffer vertexData;
+        if (vPackedBuffer != null) {
+            vertexData = vPackedBuffer.position(0);
+        } else if (vertexType.isPacked()) {
+            vertexData = GlObjectFactory.packVertices(vertexType, vBuffer, vCount);
+        } else {
+            vertexData = vBuffer.position(0);
+        }
+        gl.glBufferData(GL_ARRAY_BUFFER, vCount * vDataStride, vertexData, usage);
+        gl.glBindBuffer(GL_ARRAY_BUFFER, NO_BUFFER);
+
+        if (isIndexed()) {
+            final int bytesPerIndex = iType == GL_UNSIGNED_SHORT ? 2 : 4;
+            mIndexBufferId = ids[1];
+            gl.glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, mIndexBufferId);
+            gl.glBufferData(GL_ELEMENT_ARRAY_BUFFER, iCount * bytesPerIndex, iBuffer.position(0), usage);
+            gl.glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, NO_BUFFER);
+        }
+    }
+
+    /**
+     * Deletes the buffer objects, e.g. when the object is removed. Must be called on the GL thread.
+     *
+     * @param gl The backend to issue the GL calls on.
+     */
+    public void releaseBuffers(GlBackend gl) {
+        if (!isUploaded()) {
+            return;
+        }
+
+        if (mIndexBufferId != NO_BUFFER) {
+            gl.glDeleteBuffers(2, new int[]{mVertexBufferId, mIndexBufferId}, 0);
+        } else {
+            gl.glDeleteBuffers(1, new int[]{mVertexBufferId}, 0);
+        }
+
+        invalidateBuffers();
+    }
+
+    /**
+     * Forgets the buffer handles without deleting them. Used when the GL context has been lost since
+     * the buffers are then already gone, the data will be uploaded again on next use.
+     */
+    public void invalidateBuffers() {
+        mVertexBufferId = NO_BUFFER;
+        mIndexBufferId = NO_BUFFER;
+    }
+
+    /**
+     * Called on every step of the animation loop, see {@link com.jayway.oglhelloworld.frame.FrameLoop}.
+     *
+     * @param dt The time since last update, in seconds.
+     */
+    public void update(final float dt) {
+        final float degreesPerSecond = 60;
+        mTransform.storePrevious();
+        mTransform.integrate(degreesPerSecond, degreesPerSecond * 2f, degreesPerSecond * 2f, dt);
+    }
+
+    /**
+     * TODO
+     *
+     * @param vertices The vertices of whom we will allocate data for.
+     * @return The allocated data.
+     */
+    private static FloatBuffer allocateNativeFloatBuffer(float[] vertices) {
+        int bytes_per_float = 4;
+        final FloatBuffer buffer = ByteBuffer.allocateDirect(vertices.length * bytes_per_float)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        buffer.put(vertices).position(0);
+
+        return buffer;
+    }
+
+    /**
+     * Indices are stored as shorts when all vertices can be addressed by them, otherwise as ints.
+     *
+     * @param indices     The indices to allocate data for, may be {@code null}.
+     * @param vertexCount The number of vertices the indices refer to.
+     * @return The allocated data, a {@link ShortBuffer}, an {@link IntBuffer} or {@code null}.
+     */
+    private static Buffer allocateNativeIndexBuffer(int[] indices, int vertexCount) {
+        return indices == null ? null : allocateNativeIndexBuffer(indices, indices.length, vertexCount);
+    }
+
+    /**
+     * @param indices     The indices to allocate data for.
+     * @param indexCount  The number of indices to use from {@code indices}.
+     * @param vertexCount The number of vertices the indices refer to.
+     * @return The allocated data, a {@link ShortBuffer} or an {@link IntBuffer}.
+     */
+    static Buffer allocateNativeIndexBuffer(int[] indices, int indexCount, int vertexCount) {
+        if (vertexCount <= MAX_SHORT_INDEXED_VERTICES) {
+            final int bytes_per_short = 2;
+            final ShortBuffer buffer = ByteBuffer.allocateDirect(indexCount * bytes_per_short)
+                    .order(ByteOrder.nativeOrder())
+                    .asShortBuffer();
+            for (int i = 0; i < indexCount; i++) {
+                buffer.put((short) indices[i]);
+            }
+            buffer.position(0);
+
+            return buffer;
+        } else {
+            final int bytes_per_int = 4;
+            final IntBuffer buffer = ByteBuffer.allocateDirect(indexCount * bytes_per_int)
+                    .order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+            buffer.put(indices, 0, indexCount).position(0);
+
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package com.jayway.oglhelloworld.gl;
+
+import android.opengl.GLES20;
+
+import com.jayway.oglhelloworld.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Notice: This class is written with the intention to give the reader insight in how these objects
+ * should be created. Thus, this implementation might not be suitable for some situations where
+ * memory footprint or performance is crucial.
+ * <p/>
+ *
+ * @author Andreas Nilsson
+ */
+public class GlObjectFactory {
+    private static final Log LOG = new Log(GlObjectFactory.class);
+
+    // Index in array for each coordinate
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int Z = 2;
+    private static final int U = 3;
+    private static final int V = 4;
+    private static final int NX = 5;
+    private static final int NY = 6;
+    private static final int NZ = 7;
+
+    // Unique vertices of a cube with texture coordinates per face
+    private static final int CUBE_VERTEX_COUNT = 24;
+
+    public static GlObject createCube(float width, float height, float depth, boolean useUVs, boolean useNormals) {
+        //    CUBE
+        //    v6----- v5
+        //   /|      /|
+        //  v1------v0|
+        //  | |     | |
+        //  | |v7---|-|v4
+        //  |/      |/
+        //  v2------v3
+
+        final float[] v0 = {width * 0.5f, height * 0.5f, depth * 0.5f, 1, 1, 1 / 3f, 1 / 3f, 1 / 3f};
+        final float[] v1 = {-width * 0.5f, height * 0.5f, depth * 0.5f, 0, 1, -1 / 3f, 1 / 3f, 1 / 3f};
+        final float[] v2 = {-width * 0.5f, -height * 0.5f, depth * 0.5f, 0, 0, -1 / 3f, -1 / 3f, 1 / 3f};
+        final float[] v3 = {width * 0.5f, -height * 0.5f, depth * 0.5f, 1, 0, 1 / 3f, -1 / 3f, 1 / 3f};
+
+        final float[] v4 = {width * 0.5f, -height * 0.5f, -depth * 0.5f, 1, 0, 1 / 3f, -1 / 3f, -1 / 3f};
+        final float[] v5 = {width * 0.5f, height * 0.5f, -depth * 0.5f, 1, 1, 1 / 3f, 1 / 3f, -1 / 3f};
+        final float[] v6 = {-width * 0.5f, height * 0.5f, -depth * 0.5f, 0, 1, -1 / 3f, 1 / 3f, -1 / 3f};
+        final float[] v7 = {-width * 0.5f, -height * 0.5f, -depth * 0.5f, 0, 0, -1 / 3f, -1 / 3f, -1 / 3f};
+
+        final MeshBuilder builder = new MeshBuilder(getVertexType(useUVs, useNormals), CUBE_VERTEX_COUNT, true);
+        // FRONT
+        // v0-v1-v2
+        emit(builder, v0, 1f, 0f);
+        emit(builder, v1, 0f, 0f);
+        emit(builder, v2, 0f, 1f);
+        // v2-v3-v0
+        emit(builder, v2, 0f, 1f);
+        emit(builder, v3, 1f, 1f);
+        emit(builder, v0, 1f, 0f);
+
+        // RIGHT
+        // v0-v3-v4
+        emit(builder, v0, 0f, 0f);
+        emit(builder, v3, 0f, 1f);
+        emit(builder, v4, 1f, 1f);
+        // v4-v5-v0
+        emit(builder, v4, 1f, 1f);
+        emit(builder, v5, 1f, 0f);
+        emit(builder, v0, 0f, 0f);
+
+        // LEFT
+        // v1-v6-v7
+        emit(builder, v1, 1f, 0f);
+        emit(builder, v6, 0f, 0f);
+        emit(builder, v7, 0f, 1f);
+        // v7-v2-v1
+        emit(builder, v7, 0f, 1f);
+        emit(builder, v2, 1f, 1f);
+        emit(builder, v1, 1f, 0f);
+
+        // TOP
+        // v0-v5-v6
+        emit(builder, v0, 1f, 1f);
+        emit(builder, v5, 1f, 0f);
+        emit(builder, v6, 0f, 0f);
+        // v6-v1-v0
+        emit(builder, v6, 0f, 0f);
+        emit(builder, v1, 0f, 1f);
+        emit(builder, v0, 1f, 1f);
+
+        // BOTTOM
+        // v7-v4-v3
+        emit(builder, v7, 0f, 1f);
+        emit(builder, v4, 1f, 1f);
+        emit(builder, v3, 1f, 0f);
+        // v3-v2-v7
+        emit(builder, v3, 1f, 0f);
+        emit(builder, v2, 0f, 0f);
+        emit(builder, v7, 0f, 1f);
+
+        //  BACK
+        // v4-v7-v6
+        emit(builder, v4, 0f, 1f);
+        emit(builder, v7, 1f, 1f);
+        emit(builder, v6, 1f, 0f);
+        // v6-v5-v4
+        emit(builder, v6, 1f, 0f);
+        emit(builder, v5, 0f, 0f);
+        emit(builder, v4, 0f, 1f);
+
+        return builder.build("Cube, soft shaded", GLES20.GL_TRIANGLES);
+    }
+
+    public static GlObject createCubeWithFlatNormals(float width, float height, float depth, boolean useUVs, boolean useNormals) {
+
+        //    CUBE
+        //    v6----- v5
+        //   /|      /|
+        //  v1------v0|
+        //  | |     | |
+        //  | |v7---|-|v4
+        //  |/      |/
+        //  v2------v3
+
+        final float[] v0 = {width * 0.5f, height * 0.5f, depth * 0.5f};
+        final float[] v1 = {-width * 0.5f, height * 0.5f, depth * 0.5f};
+        final float[] v2 = {-width * 0.5f, -height * 0.5f, depth * 0.5f};
+        final float[] v3 = {width * 0.5f, -height * 0.5f, depth * 0.5f};
+
+        final float[] v4 = {width * 0.5f, -height * 0.5f, -depth * 0.5f};
+        final float[] v5 = {width * 0.5f, height * 0.5f, -depth * 0.5f};
+        final float[] v6 = {-width * 0.5f, height * 0.5f, -depth * 0.5f};
+        final float[] v7 = {-width * 0.5f, -height * 0.5f, -depth * 0.5f};
+
+        final MeshBuilder builder = new MeshBuilder(getVertexType(useUVs, useNormals), CUBE_VERTEX_COUNT, true);
+        // FRONT
+        // v0-v1-v2
+        emit(builder, v0, 1f, 0f, 0, 0, 1);
+        emit(builder, v1, 0f, 0f, 0, 0, 1);
+        emit(builder, v2, 0f, 1f, 0, 0, 1);
+        // v2-v3-v0
+        emit(builder, v2, 0f, 1f, 0, 0, 1);
+        emit(builder, v3, 1f, 1f, 0, 0, 1);
+        emit(builder, v0, 1f, 0f, 0, 0, 1);
+
+        // RIGHT
+        // v0-v3-v4
+        emit(builder, v0, 0f, 0f, 1, 0, 0);
+        emit(builder, v3, 0f, 1f, 1, 0, 0);
+        emit(builder, v4, 1f, 1f, 1, 0, 0);
+        // v4-v5-v0
+        emit(builder, v4, 1f, 1f, 1, 0, 0);
+        emit(builder, v5, 1f, 0f, 1, 0, 0);
+        emit(builder, v0, 0f, 0f, 1, 0, 0);
+
+        // LEFT
+        // v1-v6-v7
+        emit(builder, v1, 1f, 0f, -1, 0, 0);
+        emit(builder, v6, 0f, 0f, -1, 0, 0);
+        emit(builder, v7, 0f, 1f, -1, 0, 0);
+        // v7-v2-v1
+        emit(builder, v7, 0f, 1f, -1, 0, 0);
+        emit(builder, v2, 1f, 1f, -1, 0, 0);
+        emit(builder, v1, 1f, 0f, -1, 0, 0);
+
+        // TOP
+        // v0-v5-v60, 1, 0,
+        emit(builder, v0, 1f, 1f, 0, 1, 0);
+        emit(builder, v5, 1f, 0f, 0, 1, 0);
+        emit(builder, v6, 0f, 0f, 0, 1, 0);
+        // v6-v1-v0
+        emit(builder, v6, 0f, 0f, 0, 1, 0);
+        emit(builder, v1, 0f, 1f, 0, 1, 0);
+        emit(builder, v0, 1f, 1f, 0, 1, 0);
+
+        // BOTTOM
+        // v7-v4-v3
+        emit(builder, v7, 0f, 1f, 0, -1, 0);
+        emit(builder, v4, 1f, 1f, 0, -1, 0);
+        emit(builder, v3, 1f, 0f, 0, -1, 0);
+        // v3-v2-v7
+        emit(builder, v3, 1f, 0f, 0, -1, 0);
+        emit(builder, v2, 0f, 0f, 0, -1, 0);
+        emit(builder, v7, 0f, 1f, 0, -1, 0);
+
+        // BACK
+        // v4-v7-v6
+        emit(builder, v4, 0f, 1f, 0, 0, -1);
+        emit(builder, v7, 1f, 1f, 0, 0, -1);
+        emit(builder, v6, 1f, 0f, 0, 0, -1);
+        // v6-v5-v4
+        emit(builder, v6, 1f, 0f, 0, 0, -1);
+        emit(builder, v5, 0f, 0f, 0, 0, -1);
+        emit(builder, v4, 0f, 1f, 0, 0, -1);
+
+        return builder.build("Cube, flat shaded", GLES20.GL_TRIANGLES);
+    }
+
+    public static GlObject createSimpleTriangle(final boolean useUVs, final boolean useNormals) {
+
+        // top
+        float[] v0 = {
+                0.0f, 0.622f, 0.0f,  // Position
+                .5f, 0,               // UV
+                0, 0, 1};             // Normal
+
+        // left
+        float[] v1 = {
+                -0.5f, -0.311f, 0.0f, // Position
+                0, 1,                 // UV
+                0, 0, 1};             // Normal
+
+        // right
+        float[] v2 = {
+                0.5f, -0.311f, 0.0f,  // Position
+                1, 1,                 // UV
+                0, 0, 1};             // Normal
+
+        final MeshBuilder builder = new MeshBuilder(getVertexType(useUVs, useNormals), 3, true);
+        emit(builder, v0);
+        emit(builder, v1);
+        emit(builder, v2);
+
+        return builder.build("Triangle", GLES20.GL_TRIANGLES);
+    }
+
+    public static GlObject createSimpleQuad(final boolean useUVs, final boolean useNormals) {
+        // The four vertices of the quad
+        final float v0[] = {-.5f, -.5f, 0, 0, 0, 0, 0, 1};
+        final float v1[] = {.5f, -.5f, 0, 1, 0, 0, 0, 1};
+        final float v2[] = {.5f, .5f, 0, 1, 1, 0, 0, 1};
+        final float v3[] = {-.5f, .5f, 0, 0, 1, 0, 0, 1};
+
+        final MeshBuilder builder = new MeshBuilder(getVertexType(useUVs, useNormals), 4, true);
+        emit(builder, v0);
+        emit(builder, v1);
+        emit(builder, v2);
+        emit(builder, v0);
+        emit(builder, v2);
+        emit(builder, v3);
+
+        return builder.build("Quad", GLES20.GL_TRIANGLES);
+    }
+
+    public static VertexType getVertexType(final boolean useUVs, final boolean useNormals) {
+        if (useNormals) {
+            return VertexType.VERTEX_TYPE_POS_UV_NORMAL;
+        } else if (useUVs) {
+            return VertexType.VERTEX_TYPE_POS_UV;
+        } else {
+            return VertexType.VERTEX_TYPE_POS;
+        }
+    }
+
+    /**
+     * Concatenates vertices into one array, each vertex is truncated to the dimension of the {@code vertexType}.
+     *
+     * @param vertexType The vertex type.
+     * @param vertexList The vertices, each at least {@link VertexType#getDimension()} long.
+     * @return The vertex data.
+     */
+    public static float[] concatVertices(final VertexType vertexType, float[]... vertexList) {
+        final int dimension = vertexType.getDimension();
+        final float[] outArray = new float[vertexList.length * dimension];
+
+        for (int i = 0; i < vertexList.length; i++) {
+            System.arraycopy(vertexList[i], 0, outArray, i * dimension, dimension);
+        }
+
+        return outArray;
+    }
+
+    /**
+     * Creates a torus around the z-axis as one indexed triangle strip, see {@link ParametricSurface#createTorus}.
+     *
+     * @param R The distance from the center to the center of the tube.
+     * @param r The radius of the tube.
+     * @param N The number of segments around the ring.
+     * @param n The number of segments around the tube.
+     */
+    public static GlObject createTorus(float R, float r, int N, int n, boolean useUVs, boolean useNormals) {
+        int maxn = 1000; // max precision
+        n = Math.min(n, maxn - 1);
+        N = Math.min(N, maxn - 1);
+
+        return createSurface("Torus", ParametricSurface.createTorus(R, r), N, n, useUVs, useNormals);
+    }
+
+    /**
+     * Tessellates a parametric surface, in parallel for large grids, see {@link SurfaceGenerator}.
+     *
+     * @param columns The number of segments along u.
+     * @param rows    The number of segments along v.
+     * @return The object drawn as one indexed triangle strip, or {@code null} if the surface failed.
+     */
+    public static GlObject createSurface(String title, ParametricSurface surface, int columns, int rows,
+                                         boolean useUVs, boolean useNormals) {
+        return SurfaceGenerator.generate(title, surface, columns, rows, getVertexType(useUVs, useNormals),
+                                         GLES20.GL_TRIANGLE_STRIP);
+    }
+
+    /**
+     * Creates an indexed {@link GlObject} by welding identical vertices together.
+     * <p/>
+     * Two vertices are considered identical if all their attributes, as defined by the {@code vertexType},
+     * have the same raw float bits. The order of the primitives is kept, so this works for any render mode.
+     *
+     * @param title        The title.
+     * @param vertexType   The vertex type.
+     * @param vertexData   The non-indexed vertex data.
+     * @param glRenderMode The render mode.
+     * @return The indexed object.
+     */
+    public static GlObject weldVertices(String title, VertexType vertexType, float[] vertexData, int glRenderMode) {
+        final int stride = vertexType.getDimension();
+        final int vertexCount = vertexData.length / stride;
+
+        final MeshBuilder builder = new MeshBuilder(vertexType, vertexCount, true);
+        for (int i = 0; i < vertexCount; i++) {
+            builder.emit(vertexData, i * stride);
+        }
+
+        return builder.build(title, glRenderMode);
+    }
+
+    /**
+     * Gives an object a compact vertex type, e.g. {@link VertexType#VERTEX_TYPE_POS_UV_NORMAL_PACKED}. The vertex
+     * data is shared with the source and is packed into the compact format when the object is uploaded.
+     *
+     * @param source     The object to quantize.
+     * @param vertexType The compact vertex type, which must have the same elements as the type of the source.
+     * @return The object with the compact vertex type, or the source if the vertex types are not compatible.
+     */
+    public static GlObject quantize(GlObject source, VertexType vertexType) {
+        final VertexType sourceType = source.vertexType;
+        if (sourceType.getDimension() != vertexType.getDimension()
+                || sourceType.getPositionOffset() != vertexType.getPositionOffset()
+                || sourceType.getUVOffset() != vertexType.getUVOffset()
+                || sourceType.getUVCount() != vertexType.getUVCount()
+                || sourceType.getNormalOffset() != vertexType.getNormalOffset()
+                || sourceType.getNormalCount() != vertexType.getNormalCount()) {
+            LOG.e("Can not quantize " + source.title + ", the vertex types have different elements");
+            return source;
+        }
+
+        final GlObject quantized = new GlObject(source.title, vertexType, source.getFloatVertexData(),
+                                                source.iBuffer, source.glRenderMode, source.bounds);
+        quantized.copyTransform(source);
+        return quantized;
+    }
+
+    /**
+     * Packs float vertex data into the compact layout of a vertex type.
+     *
+     * @param vertexType  The vertex type, its float layout describes {@code vertexData}.
+     * @param vertexData  The vertex data, read from position 0. Its position is left untouched.
+     * @param vertexCount The number of vertices to pack.
+     * @return A direct buffer in native byte order with {@link VertexType#getDataStrideInBytes()} per vertex.
+     */
+    public static ByteBuffer packVertices(VertexType vertexType, FloatBuffer vertexData, int vertexCount) {
+        final int dimension = vertexType.getDimension();
+        final int stride = vertexType.getDataStrideInBytes();
+        final ByteBuffer out = ByteBuffer.allocateDirect(vertexCount * stride).order(ByteOrder.nativeOrder());
+
+        for (int i = 0; i < vertexCount; i++) {
+            final int in = i * dimension;
+            final int base = i * stride;
+
+            packElement(out, base + vertexType.getPositionByteOffset(), vertexType.getPositionType(),
+                        vertexData, in + vertexType.getPositionOffset(), vertexType.getPositionCount());
+            packElement(out, base + vertexType.getUVByteOffset(), vertexType.getUVType(),
+                        vertexData, in + vertexType.getUVOffset(), vertexType.getUVCount());
+            packElement(out, base + vertexType.getNormalByteOffset(), vertexType.getNormalType(),
+                        vertexData, in + vertexType.getNormalOffset(), vertexType.getNormalCount());
+        }
+
+        return out;
+    }
+
+    /**
+     * Unpacks vertex data from the compact layout of a vertex type, the inverse of
+     * {@link #packVertices(VertexType, FloatBuffer, int)} up to its precision.
+     *
+     * @param vertexType  The vertex type, its packed layout describes {@code vertexData}.
+     * @param vertexData  The packed vertex data, read from position 0. Its position is left untouched.
+     * @param vertexCount The number of vertices to unpack.
+     * @return A direct buffer in native byte order with the float layout of the vertex type.
+     */
+    public static FloatBuffer unpackVertices(VertexType vertexType, ByteBuffer vertexData, int vertexCount) {
+        final int dimension = vertexType.getDimension();
+        final int stride = vertexType.getDataStrideInBytes();
+        final FloatBuffer out = ByteBuffer.allocateDirect(vertexCount * dimension * VertexType.SIZE_OF_FLOAT)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+
+        for (int i = 0; i < vertexCount; i++) {
+            final int base = i * stride;
+            final int o = i * dimension;
+
+            unpackElement(vertexData, base + vertexType.getPositionByteOffset(), vertexType.getPositionType(),
+                          out, o + vertexType.getPositionOffset(), vertexType.getPositionCount());
+            unpackElement(vertexData, base + vertexType.getUVByteOffset(), vertexType.getUVType(),
+                          out, o + vertexType.getUVOffset(), vertexType.getUVCount());
+            unpackElement(vertexData, base + vertexType.getNormalByteOffset(), vertexType.getNormalType(),
+                          out, o + vertexType.getNormalOffset(), vertexType.getNormalCount());
+        }
+
+        return out;
+    }
+
+    private static void unpackElement(ByteBuffer in, int byteOffset, VertexType.ComponentType type,
+                                      FloatBuffer out, int offset, int count) {
+        for (int c = 0; c < count; c++) {
+            final float value;
+            switch (type) {
+                case HALF_FLOAT:
+                    value = fromHalfFloat(in.getShort(byteOffset + c * 2));
+                    break;
+                case SHORT_NORMALIZED:
+                    value = (2 * in.getShort(byteOffset + c * 2) + 1) / 65535f;
+                    break;
+                case BYTE_NORMALIZED:
+                    value = (2 * in.get(byteOffset + c) + 1) / 255f;
+                    break;
+                default:
+                    value = in.getFloat(byteOffset + c * 4);
+                    break;
+            }
+            out.put(offset + c, value);
+        }
+    }
+
+    private static void packElement(ByteBuffer out, int byteOffset, VertexType.ComponentType type,
+                                    FloatBuffer in, int offset, int count) {
+        for (int c = 0; c < count; c++) {
+            final float value = in.get(offset + c);
+            switch (type) {
+                case FLOAT:
+                    out.putFloat(byteOffset + c * 4, value);
+                    break;
+                case HALF_FLOAT:
+                    out.putShort(byteOffset + c * 2, toHalfFloat(value));
+                    break;
+                case SHORT_NORMALIZED:
+                    out.putShort(byteOffset + c * 2, toNormalizedShort(value));
+                    break;
+                case BYTE_NORMALIZED:
+                    out.put(byteOffset + c, toNormalizedByte(value));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Converts a float to the bits of an IEEE 754 half float, rounding to nearest. Values too large for a half
+     * float become infinity, values too small become zero or a denormal.
+     */
+    public static short toHalfFloat(float value) {
+        final int bits = Float.floatToRawIntBits(value);
+        final int sign = (bits >>> 16) & 0x8000;
+        final int magnitude = bits & 0x7fffffff;
+
+        // Rounded magnitude
+        int rounded = magnitude + 0x1000;
+
+        if (rounded >= 0x47800000) {
+            if (magnitude >= 0x47800000) {
+                if (magnitude < 0x7f800000) {
+                    // Too large, becomes infinity
+                    return (short) (sign | 0x7c00);
+                }
+                // Infinity or NaN, keep the NaN payload
+                return (short) (sign | 0x7c00 | ((bits & 0x007fffff) >>> 13));
+            }
+            // Rounds up to the largest half float
+            return (short) (sign | 0x7bff);
+        }
+
+        if (rounded >= 0x38800000) {
+            // Normal half float, re-bias the exponent from 127 to 15
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        }
+
+        if (rounded < 0x33000000) {
+            // Too small even for a denormal
+            return (short) sign;
+        }
+
+        // Denormal half float
+        final int exponent = magnitude >>> 23;
+        rounded = ((bits & 0x7fffff) | 0x800000) + (0x800000 >>> (exponent - 102));
+        return (short) (sign | (rounded >>> (126 - exponent)));
+    }
+
+    /**
+     * Converts the bits of an IEEE 754 half float to a float, which is exact.
+     */
+    public static float fromHalfFloat(short half) {
+        final int bits = half & 0xffff;
+        final int sign = (bits & 0x8000) << 16;
+        final int exponent = (bits >>> 10) & 0x1f;
+        final int mantissa = bits & 0x3ff;
+
+        if (exponent == 0) {
+            // Zero or denormal, mantissa * 2^-24
+            final float magnitude = mantissa / 16777216f;
+            return sign != 0 ? -magnitude : magnitude;
+        }
+        if (exponent == 0x1f) {
+            // Infinity or NaN
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+
+        // Normal, re-bias the exponent from 15 to 127
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * Converts a value in [-1, 1] to a normalized short, using the GLES 2.0 mapping f = (2c + 1) / (2^16 - 1).
+     */
+    public static short toNormalizedShort(float value) {
+        final int c = Math.round((value * 65535f - 1f) * 0.5f);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, c));
+    }
+
+    /**
+     * Converts a value in [-1, 1] to a normalized byte, using the GLES 2.0 mapping f = (2c + 1) / (2^8 - 1).
+     */
+    public static byte toNormalizedByte(float value) {
+        final int c = Math.round((value * 255f - 1f) * 0.5f);
+        return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, c));
+    }
+
+    /**
+     * Emits a vertex from an array holding a full {x, y, z, u, v, nx, ny, nz} vertex.
+     */
+    private static void emit(MeshBuilder builder, float[] v) {
+        builder.emit(v[X], v[Y], v[Z], v[U], v[V], v[NX], v[NY], v[NZ]);
+    }
+
+    /**
+     * Emits a vertex from an array holding a full vertex, but with its own texture coordinates.
+     */
+    private static void emit(MeshBuilder builder, float[] v, float u, float t) {
+        builder.emit(v[X], v[Y], v[Z], u, t, v[NX], v[NY], v[NZ]);
+    }
+
+    /**
+     * Emits a vertex from an array holding a position, with its own texture coordinates and normal.
+     */
+    private static void emit(MeshBuilder builder, float[] v, float u, float t, float nx, float ny, float nz) {
+        builder.emit(v[X], v[Y], v[Z], u, t, nx, ny, nz);
+    }
+}
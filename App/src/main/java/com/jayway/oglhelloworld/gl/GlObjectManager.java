@@ -0,0 +1,359 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.frame.Profiler;
+import com.jayway.oglhelloworld.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Observable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A simple singleton of an in memory manager of {@link GlObject}.
+ * <p/>
+ * The objects are registered as {@link MeshDescriptor}s and built on a background thread, the selected object first
+ * and then the others in the order they were added. Until the selected object is built a placeholder is returned,
+ * observers are notified with the object when it is ready.
+ *
+ * @author Andreas Nilsson
+ */
+public class GlObjectManager extends Observable {
+    private static final Log LOG = new Log(GlObjectManager.class);
+
+    private static final boolean USE_UV = true;
+    private static final boolean USE_NORMALs = true;
+
+    // Store the vertices in 20 instead of 32 bytes in graphics memory
+    private static final boolean USE_COMPACT_VERTICES = true;
+
+    // Build all objects in the background after the selected one, instead of only when they are selected
+    private static final boolean PREFETCH = true;
+
+    // Build state of an entry
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_REQUESTED = 1;
+    private static final int STATE_BUILDING = 2;
+    private static final int STATE_DONE = 3;
+
+    private static GlObjectManager sInstance;
+    private static volatile MeshCache sMeshCache;
+    private int mSelectedObject = 0;
+
+    private static final class Entry {
+        final MeshDescriptor descriptor;
+        GlObject object;
+        int state = STATE_IDLE;
+
+        Entry(MeshDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+    }
+
+    // Guarded by this
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+
+    // Shown while the selected object is built
+    private final GlObject mPlaceholder = GlObjectFactory.createSimpleQuad(USE_UV, USE_NORMALs);
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "GlObjectManager");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    // Builds the most wanted object which is requested but not built, one object per run
+    private final Runnable mBuildNext = new Runnable() {
+        @Override
+        public void run() {
+            final int position = takeNextRequest();
+            if (position >= 0) {
+                build(position);
+            }
+        }
+    };
+
+    public GlObjectManager() {
+        add(new MeshDescriptor("Triangle",
+                               MeshCache.key("createSimpleTriangle", USE_UV, USE_NORMALs, USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createSimpleTriangle(USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Quad",
+                               MeshCache.key("createSimpleQuad", USE_UV, USE_NORMALs, USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createSimpleQuad(USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Cube, soft shaded",
+                               MeshCache.key("createCube", 1, 1, 1, USE_UV, USE_NORMALs, USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createCube(1, 1, 1, USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Cube, flat shaded",
+                               MeshCache.key("createCubeWithFlatNormals", 1, 1, 1, USE_UV, USE_NORMALs,
+                                             USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createCubeWithFlatNormals(1, 1, 1, USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Torus",
+                               MeshCache.key("createTorus", 0.7f, 0.4f, 40, 40, USE_UV, USE_NORMALs,
+                                             USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createTorus(0.7f, 0.4f, 40, 40, USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Sphere",
+                               MeshCache.key("createSphere", 0.8f, 48, 24, USE_UV, USE_NORMALs, USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createSurface(title, ParametricSurface.createSphere(0.8f), 48, 24,
+                                                     USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Cylinder",
+                               MeshCache.key("createCylinder", 0.6f, 1.2f, 48, 1, USE_UV, USE_NORMALs,
+                                             USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createSurface(title, ParametricSurface.createCylinder(0.6f, 1.2f), 48, 1,
+                                                     USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Cone",
+                               MeshCache.key("createCone", 0.6f, 1.2f, 48, 8, USE_UV, USE_NORMALs,
+                                             USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createSurface(title, ParametricSurface.createCone(0.6f, 1.2f), 48, 8,
+                                                     USE_UV, USE_NORMALs);
+            }
+        });
+        add(new MeshDescriptor("Superquadric",
+                               MeshCache.key("createSuperquadric", 0.8f, 0.8f, 0.8f, 0.3f, 0.3f, 64, 32, USE_UV,
+                                             USE_NORMALs, USE_COMPACT_VERTICES)) {
+            @Override
+            public GlObject create() {
+                return GlObjectFactory.createSurface(title, ParametricSurface.createSuperquadric(0.8f, 0.8f, 0.8f,
+                                                                                                   0.3f, 0.3f),
+                                                     64, 32, USE_UV, USE_NORMALs);
+            }
+        });
+        // TODO add more objects here
+
+        if (PREFETCH) {
+            for (int i = 0; i < mEntries.size(); i++) {
+                request(i);
+            }
+        }
+    }
+
+    /**
+     * Registers an object, it is built when requested or prefetched.
+     */
+    public synchronized void add(MeshDescriptor descriptor) {
+        mEntries.add(new Entry(descriptor));
+    }
+
+    /**
+     * Lets meshes with a cache key be loaded from, and stored to, a cache instead of generated on every launch.
+     * <p/>
+     * Notice: Set it before the first {@link #getInstance()}, since building starts right away.
+     *
+     * @param meshCache The cache, or {@code null} to always generate the meshes.
+     */
+    public static void setMeshCache(MeshCache meshCache) {
+        sMeshCache = meshCache;
+    }
+
+    public static GlObjectManager getInstance() {
+        if (sInstance == null) {
+            sInstance = new GlObjectManager();
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * @return The selected object, or a placeholder if it is not built yet. Observers are notified when it is.
+     */
+    public synchronized GlObject getSelectedObject() {
+        final GlObject glObject = mEntries.get(mSelectedObject).object;
+        if (glObject != null) {
+            return glObject;
+        }
+
+        request(mSelectedObject);
+        return mPlaceholder;
+    }
+
+    /**
+     * @return true if the object is the placeholder shown while objects are built. It is shared by all objects
+     * which are not built yet, so it should not be moved.
+     */
+    public boolean isPlaceholder(final GlObject glObject) {
+        return glObject == mPlaceholder;
+    }
+
+    /**
+     * @return The object, or {@code null} if it is not built yet.
+     */
+    public synchronized GlObject getObject(final int position) {
+        return mEntries.get(position).object;
+    }
+
+    /**
+     * @return The objects built so far.
+     */
+    public synchronized List<GlObject> getAllObjects() {
+        final ArrayList<GlObject> objects = new ArrayList<>(mEntries.size() + 1);
+        objects.add(mPlaceholder);
+        for (Entry entry : mEntries) {
+            if (entry.object != null) {
+                objects.add(entry.object);
+            }
+        }
+
+        return Collections.unmodifiableList(objects);
+    }
+
+    public synchronized String[] getObjectTitles() {
+        String[] titles = new String[mEntries.size()];
+
+        for (int i = 0; i < mEntries.size(); i++) {
+            titles[i] = mEntries.get(i).descriptor.title;
+        }
+
+        return titles;
+    }
+
+    public synchronized void setSelectedObject(final int position) {
+        mSelectedObject = position;
+
+        // Notified while holding the lock, so that observers can not get this after the built object
+        setChanged();
+        notifyObservers(getSelectedObject());
+    }
+
+    /**
+     * Queues an object to be built, does nothing if it already is.
+     */
+    private synchronized void request(final int position) {
+        final Entry entry = mEntries.get(position);
+        if (entry.state == STATE_IDLE) {
+            entry.state = STATE_REQUESTED;
+            mExecutor.execute(mBuildNext);
+        }
+    }
+
+    /**
+     * @return The selected object if it is requested and not built, otherwise the first such object, or -1.
+     */
+    private synchronized int takeNextRequest() {
+        int position = -1;
+        if (mEntries.get(mSelectedObject).state == STATE_REQUESTED) {
+            position = mSelectedObject;
+        } else {
+            for (int i = 0; i < mEntries.size() && position < 0; i++) {
+                if (mEntries.get(i).state == STATE_REQUESTED) {
+                    position = i;
+                }
+            }
+        }
+
+        // Every request runs mBuildNext once, so each run takes one
+        if (position >= 0) {
+            mEntries.get(position).state = STATE_BUILDING;
+        }
+        return position;
+    }
+
+    /**
+     * Builds an object and marks it done, also when building fails, so that it is never left building.
+     */
+    private void build(final int position) {
+        final MeshDescriptor descriptor;
+        synchronized (this) {
+            descriptor = mEntries.get(position).descriptor;
+        }
+
+        GlObject glObject = null;
+        try {
+            glObject = loadOrCreate(descriptor);
+            if (glObject == null) {
+                // The placeholder stays
+                LOG.e("Failed building " + descriptor.title);
+            }
+        } catch (RuntimeException e) {
+            // Caught so that the executor thread, and with it the process, survives a broken generator
+            LOG.e("Failed building " + descriptor.title, e);
+        } finally {
+            synchronized (this) {
+                final Entry entry = mEntries.get(position);
+                entry.object = glObject;
+                entry.state = STATE_DONE;
+
+                if (glObject != null && position == mSelectedObject) {
+                    setChanged();
+                    notifyObservers(glObject);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The object from the cache, or generated and then cached, or {@code null} if generating failed.
+     */
+    private GlObject loadOrCreate(final MeshDescriptor descriptor) {
+        final MeshCache cache = descriptor.cacheKey != null ? sMeshCache : null;
+
+        GlObject glObject = null;
+        if (cache != null) {
+            Profiler.begin("load mesh");
+            try {
+                glObject = cache.get(descriptor.cacheKey);
+            } catch (RuntimeException e) {
+                LOG.e("Failed loading " + descriptor.title + " from the cache, generating it instead", e);
+            } finally {
+                Profiler.end("load mesh");
+            }
+        }
+
+        if (glObject == null) {
+            Profiler.begin("generate mesh");
+            try {
+                glObject = descriptor.create();
+                if (glObject != null && USE_COMPACT_VERTICES
+                        && glObject.vertexType == VertexType.VERTEX_TYPE_POS_UV_NORMAL) {
+                    glObject = GlObjectFactory.quantize(glObject, VertexType.VERTEX_TYPE_POS_UV_NORMAL_PACKED);
+                }
+            } finally {
+                Profiler.end("generate mesh");
+            }
+
+            if (glObject != null && cache != null) {
+                try {
+                    cache.put(descriptor.cacheKey, glObject);
+                } catch (RuntimeException e) {
+                    // Still shown, only generated again on the next launch
+                    LOG.e("Failed caching " + descriptor.title, e);
+                }
+            }
+        }
+        return glObject;
+    }
+}
@@ -0,0 +1,80 @@
+package com.jayway.oglhelloworld.gl;
+
+/**
+ * Levels of detail of one mesh, from full detail at level 0 to the coarsest level, see
+ * {@link MeshSimplifier#buildLodChain(GlObject, int, float)}.
+ * <p/>
+ * A level is picked per draw from the size the object covers on screen: the coarsest level whose geometric error,
+ * projected to the screen, stays below {@link #DEFAULT_MAX_PIXEL_ERROR} pixels.
+ * <p/>
+ * Notice: All levels share the model matrix of level 0, so moving the object moves every level.
+ */
+public class LodChain {
+    /**
+     * The largest geometric error, in pixels, that a level may show on screen.
+     */
+    public static final float DEFAULT_MAX_PIXEL_ERROR = 1f;
+
+    private final GlObject[] mLevels;
+    private final float[] mErrors;
+    private final float mRadius;
+
+    private float mMaxPixelError = DEFAULT_MAX_PIXEL_ERROR;
+
+    /**
+     * @param levels The levels, from full detail to the coarsest.
+     * @param errors The geometric error of each level compared to level 0, in model space. Must be increasing.
+     */
+    public LodChain(GlObject[] levels, float[] errors) {
+        mLevels = levels;
+        mErrors = errors;
+        mRadius = levels[0].bounds.radius;
+
+        for (int i = 1; i < levels.length; i++) {
+            levels[i].shareModelMatrix(levels[0]);
+        }
+    }
+
+    /**
+     * @param maxPixelError See {@link #DEFAULT_MAX_PIXEL_ERROR}, larger values switch to coarser levels sooner.
+     */
+    public void setMaxPixelError(float maxPixelError) {
+        mMaxPixelError = maxPixelError;
+    }
+
+    public int getLevelCount() {
+        return mLevels.length;
+    }
+
+    public GlObject getLevel(int level) {
+        return mLevels[level];
+    }
+
+    /**
+     * @return The geometric error of a level compared to level 0, in model space.
+     */
+    public float getError(int level) {
+        return mErrors[level];
+    }
+
+    /**
+     * @return The radius of the bounding sphere of level 0, see {@link Bounds#radius}.
+     */
+    public float getRadius() {
+        return mRadius;
+    }
+
+    /**
+     * @param screenSize The projected diameter of the sphere of {@link #getRadius()}, in pixels.
+     * @return The coarsest level that looks the same as level 0 at that size.
+     */
+    public int selectLevel(float screenSize) {
+        final float pixelsPerUnit = screenSize / (2f * mRadius);
+        for (int level = mLevels.length - 1; level > 0; level--) {
+            if (mErrors[level] * pixelsPerUnit <= mMaxPixelError) {
+                return level;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.math.Mat3;
+import com.jayway.oglhelloworld.gl.math.Mat4;
+
+/**
+ * The matrices a {@link SceneRenderer} derives from the model matrix of a {@link GlObject} and its camera, together
+ * with the versions of the inputs they were computed from. They are only recomputed when an input version changed.
+ */
+class MatrixCache {
+    // The renderer whose camera the matrices were computed with
+    final SceneRenderer owner;
+
+    final float[] modelView = new float[Mat4.SIZE];
+    final float[] mvp = new float[Mat4.SIZE];
+    final float[] normal = new float[Mat3.SIZE];
+
+    // Versions of the inputs, -1 until first computed
+    int modelVersion = -1;
+    int viewVersion = -1;
+    int projectionVersion = -1;
+
+    // Bumped whenever the matrices are recomputed, which tells the renderer that the uniforms need to be uploaded
+    int version;
+
+    MatrixCache(SceneRenderer owner) {
+        this.owner = owner;
+    }
+}
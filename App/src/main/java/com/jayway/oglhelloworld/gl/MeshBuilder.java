@@ -0,0 +1,258 @@
+package com.jayway.oglhelloworld.gl;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Builds the data of a {@link GlObject} by streaming vertices straight into a direct, native ordered buffer
+ * laid out according to a {@link VertexType}. Attributes not part of the vertex type are simply skipped,
+ * so the same generator code can be used for every vertex type.
+ * <p/>
+ * The buffer is pre-sized from the expected vertex count and grows geometrically if the estimate was too low.
+ * When welding is enabled identical vertices, compared by their raw float bits, are only stored once.
+ * <p/>
+ * Notice: a builder is meant to build exactly one object, it must not be used after {@link #build(String, int)}.
+ */
+public class MeshBuilder {
+    private static final int MIN_CAPACITY = 16; // In vertices
+    private static final int NO_VERTEX = 0;
+
+    private final VertexType mVertexType;
+    private final int mStride;
+
+    private final int mPosOffset;
+    private final int mUVOffset;
+    private final int mNormOffset;
+    private final boolean mHasUVs;
+    private final boolean mHasNormals;
+
+    // Vertex data
+    private FloatBuffer mVertices;
+    private int mVertexCount;
+    private final float[] mVertex;
+
+    // Index data
+    private int[] mIndices;
+    private int mIndexCount;
+
+    // Welding, open addressing hash table holding (vertex index + 1)
+    private final boolean mWeld;
+    private int[] mWeldTable;
+    private int mWeldMask;
+
+    /**
+     * @param vertexType          The vertex type to lay out the data for.
+     * @param expectedVertexCount The expected number of vertices, used to pre-size the buffers.
+     * @param weld                Whether identical vertices should be welded together.
+     */
+    public MeshBuilder(VertexType vertexType, int expectedVertexCount, boolean weld) {
+        mVertexType = vertexType;
+        mStride = vertexType.getDimension();
+
+        mPosOffset = vertexType.getPositionOffset();
+        mUVOffset = vertexType.getUVOffset();
+        mNormOffset = vertexType.getNormalOffset();
+        mHasUVs = vertexType.getUVCount() > 0;
+        mHasNormals = vertexType.getNormalCount() > 0;
+
+        final int capacity = Math.max(expectedVertexCount, MIN_CAPACITY);
+        mVertices = allocate(capacity * mStride);
+        mVertex = new float[mStride];
+        mIndices = new int[weld ? capacity : MIN_CAPACITY];
+
+        mWeld = weld;
+        if (weld) {
+            mWeldTable = new int[Integer.highestOneBit(capacity) << 2];
+            mWeldMask = mWeldTable.length - 1;
+        }
+    }
+
+    public VertexType getVertexType() {
+        return mVertexType;
+    }
+
+    public int getVertexCount() {
+        return mVertexCount;
+    }
+
+    public int getIndexCount() {
+        return mIndexCount;
+    }
+
+    /**
+     * Adds a vertex, attributes which are not part of the vertex type are ignored.
+     *
+     * @return The index of the vertex, which is an earlier index if it was welded.
+     */
+    public int addVertex(float x, float y, float z, float u, float v, float nx, float ny, float nz) {
+        final float[] vertex = mVertex;
+        vertex[mPosOffset] = x;
+        vertex[mPosOffset + 1] = y;
+        vertex[mPosOffset + 2] = z;
+
+        if (mHasUVs) {
+            vertex[mUVOffset] = u;
+            vertex[mUVOffset + 1] = v;
+        }
+
+        if (mHasNormals) {
+            vertex[mNormOffset] = nx;
+            vertex[mNormOffset + 1] = ny;
+            vertex[mNormOffset + 2] = nz;
+        }
+
+        return addVertex(vertex, 0);
+    }
+
+    /**
+     * Adds a vertex which is already laid out according to the vertex type.
+     *
+     * @param data   The source data.
+     * @param offset The offset of the vertex in {@code data}.
+     * @return The index of the vertex, which is an earlier index if it was welded.
+     */
+    public int addVertex(float[] data, int offset) {
+        if (mWeld) {
+            int slot = hash(data, offset) & mWeldMask;
+            int entry;
+            while ((entry = mWeldTable[slot]) != NO_VERTEX) {
+                if (isSameVertex(entry - 1, data, offset)) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & mWeldMask;
+            }
+
+            mWeldTable[slot] = mVertexCount + 1;
+        }
+
+        ensureVertexCapacity(mVertexCount + 1);
+        mVertices.position(mVertexCount * mStride);
+        mVertices.put(data, offset, mStride);
+
+        final int index = mVertexCount++;
+        if (mWeld && mVertexCount * 2 > mWeldTable.length) {
+            rehash(mWeldTable.length << 1);
+        }
+
+        return index;
+    }
+
+    public void addIndex(int index) {
+        if (mIndexCount == mIndices.length) {
+            mIndices = Arrays.copyOf(mIndices, mIndices.length << 1);
+        }
+        mIndices[mIndexCount++] = index;
+    }
+
+    public void addTriangle(int a, int b, int c) {
+        addIndex(a);
+        addIndex(b);
+        addIndex(c);
+    }
+
+    /**
+     * Convenience for emitting a stream of vertices, which will be drawn in the order they are emitted.
+     * With welding enabled the stream is turned into an indexed mesh, otherwise the vertices are drawn as is.
+     */
+    public void emit(float x, float y, float z, float u, float v, float nx, float ny, float nz) {
+        final int index = addVertex(x, y, z, u, v, nx, ny, nz);
+        if (mWeld) {
+            addIndex(index);
+        }
+    }
+
+    /**
+     * @see #emit(float, float, float, float, float, float, float, float)
+     * @see #addVertex(float[], int)
+     */
+    public void emit(float[] data, int offset) {
+        final int index = addVertex(data, offset);
+        if (mWeld) {
+            addIndex(index);
+        }
+    }
+
+    /**
+     * Creates the {@link GlObject}, which uses the vertex buffer of this builder without copying it.
+     * The object is only indexed if indices have been added, or emitted with welding enabled.
+     *
+     * @param title        The title.
+     * @param glRenderMode The render mode.
+     * @return The object.
+     */
+    public GlObject build(String title, int glRenderMode) {
+        mVertices.limit(mVertexCount * mStride);
+        mVertices.position(0);
+
+        final Buffer indices = mIndexCount > 0
+                ? GlObject.allocateNativeIndexBuffer(mIndices, mIndexCount, mVertexCount)
+                : null;
+
+        // Release the builder state, the vertex buffer is now owned by the object
+        final FloatBuffer vertices = mVertices;
+        mVertices = null;
+        mIndices = null;
+        mWeldTable = null;
+
+        return new GlObject(title, mVertexType, vertices, indices, glRenderMode);
+    }
+
+    private void ensureVertexCapacity(int vertexCount) {
+        if (vertexCount * mStride > mVertices.capacity()) {
+            final FloatBuffer grown = allocate(mVertices.capacity() << 1);
+            mVertices.position(0);
+            mVertices.limit(mVertexCount * mStride);
+            grown.put(mVertices);
+            mVertices = grown;
+        }
+    }
+
+    private void rehash(int size) {
+        mWeldTable = new int[size];
+        mWeldMask = size - 1;
+
+        final float[] vertex = mVertex;
+        for (int i = 0; i < mVertexCount; i++) {
+            mVertices.position(i * mStride);
+            mVertices.get(vertex, 0, mStride);
+
+            int slot = hash(vertex, 0) & mWeldMask;
+            while (mWeldTable[slot] != NO_VERTEX) {
+                slot = (slot + 1) & mWeldMask;
+            }
+            mWeldTable[slot] = i + 1;
+        }
+    }
+
+    private int hash(float[] data, int offset) {
+        int hash = 0;
+        for (int i = 0; i < mStride; i++) {
+            hash = hash * 31 + Float.floatToRawIntBits(data[offset + i]);
+        }
+
+        // Spread the bits since the table size is a power of two
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash;
+    }
+
+    private boolean isSameVertex(int index, float[] data, int offset) {
+        final int start = index * mStride;
+        for (int i = 0; i < mStride; i++) {
+            if (Float.floatToRawIntBits(mVertices.get(start + i)) != Float.floatToRawIntBits(data[offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static FloatBuffer allocate(int floats) {
+        return ByteBuffer.allocateDirect(floats * VertexType.SIZE_OF_FLOAT)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
@@ -0,0 +1,219 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.util.Log;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A disk cache of generated meshes, so that they are loaded instead of generated on the next launch.
+ * <p/>
+ * Each mesh is stored in its own {@link MeshFile}, named by a hash of its key, see {@link #key(String, Object...)},
+ * and tagged with the key itself. A hit is memory mapped, so loading does not copy or parse the data. Meshes with a
+ * packed vertex type, e.g. from {@link GlObjectFactory#quantize(GlObject, VertexType)}, are stored packed and a hit
+ * is uploaded straight from the mapping. When the files exceed the size limit the least recently used are deleted.
+ * <p/>
+ * A file which can not be loaded on this device or has another key is treated as a miss and deleted.
+ * <p/>
+ * Notice: Thread safe, but a mesh being put from two threads at once is stored twice.
+ */
+public class MeshCache {
+    private static final Log LOG = new Log(MeshCache.class);
+
+    /**
+     * Part of every key, bump when the generators change so that old files are no longer hit.
+     */
+    public static final int GENERATOR_VERSION = 1;
+
+    private static final String SUFFIX = ".mesh";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param directory The directory to keep the files in, created if needed.
+     * @param maxBytes  The size the files may take together.
+     */
+    public MeshCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOG.e("Could not create " + directory + ", meshes will not be cached");
+        }
+    }
+
+    /**
+     * Builds a key from how a mesh is generated.
+     *
+     * @param generator  The generator, e.g. the factory method.
+     * @param parameters Everything the mesh depends on.
+     * @return The key, which includes {@link #GENERATOR_VERSION}.
+     */
+    public static String key(String generator, Object... parameters) {
+        final StringBuilder key = new StringBuilder(generator).append('(');
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(parameters[i]);
+        }
+        return key.append(")v").append(GENERATOR_VERSION).toString();
+    }
+
+    /**
+     * @return The cached mesh, or {@code null} on a miss.
+     */
+    public GlObject get(String key) {
+        final File file = getFile(key);
+        if (!file.isFile()) {
+            countMiss();
+            return null;
+        }
+
+        final GlObject glObject = MeshFile.load(file, key);
+        if (glObject == null) {
+            // Stale or corrupt
+            if (!file.delete()) {
+                LOG.w("Could not delete " + file);
+            }
+            countMiss();
+            return null;
+        }
+
+        // Least recently used is judged by the modification time
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            LOG.w("Could not touch " + file);
+        }
+        countHit();
+        return glObject;
+    }
+
+    /**
+     * Stores a mesh, replacing any mesh with the same key, then evicts the least recently used meshes if the cache
+     * is full.
+     *
+     * @return true if the mesh was stored.
+     */
+    public boolean put(String key, GlObject glObject) {
+        final File file = getFile(key);
+        final File temp = new File(mDirectory, file.getName() + ".tmp");
+
+        // Readers never see a half written file
+        final boolean stored = MeshFile.write(temp, glObject, key) && temp.renameTo(file);
+        if (!stored) {
+            LOG.e("Failed caching " + glObject.title);
+            if (temp.exists() && !temp.delete()) {
+                LOG.w("Could not delete " + temp);
+            }
+            return false;
+        }
+
+        evict(file);
+        return true;
+    }
+
+    /**
+     * Deletes all cached meshes.
+     */
+    public void clear() {
+        for (File file : listFiles()) {
+            if (!file.delete()) {
+                LOG.w("Could not delete " + file);
+            }
+        }
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    private synchronized void countHit() {
+        mHitCount++;
+    }
+
+    private synchronized void countMiss() {
+        mMissCount++;
+    }
+
+    // FILES ======================================================================================================================
+
+    private File getFile(String key) {
+        // 64 bit FNV-1a, the key itself is checked on load
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return new File(mDirectory, Long.toHexString(hash) + SUFFIX);
+    }
+
+    private File[] listFiles() {
+        final File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    /**
+     * Deletes the least recently used files until the rest fit in the size limit.
+     *
+     * @param keep The file just stored, kept even if it alone exceeds the limit.
+     */
+    private synchronized void evict(File keep) {
+        final File[] files = listFiles();
+
+        final long[] lastModified = new long[files.length];
+        long totalBytes = 0;
+        for (int i = 0; i < files.length; i++) {
+            totalBytes += files[i].length();
+        }
+        if (totalBytes <= mMaxBytes) {
+            return;
+        }
+
+        // Sort oldest first, reading each time only once
+        final Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            order[i] = i;
+            lastModified[i] = files[i].lastModified();
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                final long lhs = lastModified[a];
+                final long rhs = lastModified[b];
+                return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < order.length && totalBytes > mMaxBytes; i++) {
+            final File file = files[order[i]];
+            if (file.equals(keep)) {
+                continue;
+            }
+            final long bytes = file.length();
+            if (file.delete()) {
+                totalBytes -= bytes;
+            } else {
+                LOG.w("Could not delete " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.jayway.oglhelloworld.gl;
+
+/**
+ * A lightweight entry of the {@link GlObjectManager}, which knows how to build a mesh but does not build it until it
+ * is needed.
+ */
+public abstract class MeshDescriptor {
+    public final String title;
+
+    /**
+     * The key of the mesh in the {@link MeshCache}, or {@code null} if it is not cached.
+     */
+    public final String cacheKey;
+
+    /**
+     * @param title The title to list the mesh by before it is built.
+     */
+    public MeshDescriptor(String title) {
+        this(title, null);
+    }
+
+    /**
+     * @param cacheKey See {@link MeshCache#key(String, Object...)}, it must change whenever the mesh would.
+     */
+    public MeshDescriptor(String title, String cacheKey) {
+        this.title = title;
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * Builds the mesh, called once on a background thread.
+     *
+     * @return The mesh, or {@code null} if it could not be built.
+     */
+    public abstract GlObject create();
+}
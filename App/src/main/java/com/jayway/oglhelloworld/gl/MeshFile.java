@@ -0,0 +1,384 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import static android.opengl.GLES20.GL_UNSIGNED_INT;
+import static android.opengl.GLES20.GL_UNSIGNED_SHORT;
+
+/**
+ * A binary file holding one {@link GlObject}, laid out so that it can be memory mapped and used without copying.
+ * <p/>
+ * The file starts with a header describing the vertex type, render mode, bounds and index type, followed by the
+ * title and a tag, e.g. the key of a {@link MeshCache} entry. The vertex data, in the packed layout of the vertex
+ * type as it is stored in graphics memory, and the indices follow in sections aligned to {@value #SECTION_ALIGNMENT}
+ * bytes. A loaded object's buffers are views into the mapping which are uploaded as they are, so the data is paged
+ * in from storage when it is uploaded and never copied or kept on the Java heap. Objects with a packed vertex type
+ * are loaded with {@link GlObject#vPackedBuffer} only.
+ * <p/>
+ * Everything is written in the byte order of the device. A file written with another byte order or version is
+ * rejected rather than converted, since that would need a copy.
+ */
+public class MeshFile {
+    private static final Log LOG = new Log(MeshFile.class);
+
+    /**
+     * Bump whenever the layout changes.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The alignment of the vertex and index sections, in bytes.
+     */
+    public static final int SECTION_ALIGNMENT = 16;
+
+    private static final int MAGIC = 0x4D455348; // MESH
+    private static final String CHARSET = "UTF-8";
+
+    private static final int BYTES_PER_INT = 4;
+    private static final int BYTES_PER_SHORT = 2;
+
+    // Header, in ints
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 1;
+    private static final int HEADER_FILE_SIZE = 2;
+    private static final int HEADER_POSITION = 3; // count, float offset, gl type
+    private static final int HEADER_UV = 6;
+    private static final int HEADER_NORMAL = 9;
+    private static final int HEADER_RENDER_MODE = 12;
+    private static final int HEADER_VERTEX_COUNT = 13;
+    private static final int HEADER_INDEX_TYPE = 14; // 0 if not indexed
+    private static final int HEADER_INDEX_COUNT = 15;
+    private static final int HEADER_BOUNDS = 16; // center, extent, radius as floats
+    private static final int HEADER_VERTEX_OFFSET = 23; // in bytes
+    private static final int HEADER_INDEX_OFFSET = 24;
+    private static final int HEADER_TITLE_LENGTH = 25; // in bytes, the title and tag follow the header
+    private static final int HEADER_TAG_LENGTH = 26;
+    private static final int HEADER_SIZE = 27 * BYTES_PER_INT;
+
+    // Data is written through a buffer of this size
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    // The vertex types a file can refer to
+    private static final VertexType[] VERTEX_TYPES = {
+            VertexType.VERTEX_TYPE_POS,
+            VertexType.VERTEX_TYPE_POS_UV,
+            VertexType.VERTEX_TYPE_POS_UV_NORMAL,
+            VertexType.VERTEX_TYPE_POS_UV_NORMAL_PACKED,
+            VertexType.VERTEX_TYPE_POS_UV_NORMAL_HALF
+    };
+
+    private MeshFile() {
+    }
+
+    /**
+     * Writes an object.
+     *
+     * @param file      The file, replaced if it exists.
+     * @param glObject  The object.
+     * @param tag       A string to store along the object, see {@link #load(File, String)}, or {@code null}.
+     * @return true if the file was written.
+     */
+    public static boolean write(File file, GlObject glObject, String tag) {
+        FileOutputStream out = null;
+        try {
+            final byte[] title = glObject.title.getBytes(CHARSET);
+            final byte[] tagBytes = (tag != null ? tag : "").getBytes(CHARSET);
+
+            final int vertexBytes = glObject.vCount * glObject.vDataStride;
+            final int bytesPerIndex = glObject.iType == GL_UNSIGNED_SHORT ? BYTES_PER_SHORT : BYTES_PER_INT;
+
+            final int vertexOffset = align(HEADER_SIZE + title.length + tagBytes.length);
+            final int indexOffset = glObject.isIndexed()
+                    ? align(vertexOffset + vertexBytes)
+                    : 0;
+            final int fileSize = glObject.isIndexed()
+                    ? indexOffset + glObject.iCount * bytesPerIndex
+                    : vertexOffset + vertexBytes;
+
+            out = new FileOutputStream(file);
+            final FileChannel channel = out.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+
+            // HEADER =============================================================================================================
+            final VertexType type = glObject.vertexType;
+            final Bounds bounds = glObject.bounds;
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(fileSize);
+            buffer.putInt(type.getPositionCount()).putInt(type.getPositionOffset()).putInt(type.getPositionType().glType);
+            buffer.putInt(type.getUVCount()).putInt(type.getUVOffset()).putInt(type.getUVType().glType);
+            buffer.putInt(type.getNormalCount()).putInt(type.getNormalOffset()).putInt(type.getNormalType().glType);
+            buffer.putInt(glObject.glRenderMode);
+            buffer.putInt(glObject.vCount);
+            buffer.putInt(glObject.isIndexed() ? glObject.iType : 0);
+            buffer.putInt(glObject.iCount);
+            buffer.putFloat(bounds.centerX).putFloat(bounds.centerY).putFloat(bounds.centerZ);
+            buffer.putFloat(bounds.extentX).putFloat(bounds.extentY).putFloat(bounds.extentZ);
+            buffer.putFloat(bounds.radius);
+            buffer.putInt(vertexOffset);
+            buffer.putInt(indexOffset);
+            buffer.putInt(title.length);
+            buffer.putInt(tagBytes.length);
+            buffer.put(title).put(tagBytes);
+            putZeros(buffer, vertexOffset - buffer.position());
+
+            // VERTICES ===========================================================================================================
+            if (glObject.vPackedBuffer != null) {
+                writePacked(channel, buffer, glObject.vPackedBuffer, vertexBytes);
+            } else if (type.isPacked()) {
+                writePacked(channel, buffer, GlObjectFactory.packVertices(type, glObject.vBuffer, glObject.vCount),
+                            vertexBytes);
+            } else {
+                // The packed layout of a float vertex type is its float layout
+                writeFloats(channel, buffer, glObject.vBuffer, vertexBytes / VertexType.SIZE_OF_FLOAT);
+            }
+
+            // INDICES ============================================================================================================
+            if (glObject.isIndexed()) {
+                putZeros(buffer, indexOffset - vertexOffset - vertexBytes);
+                writeIndices(channel, buffer, glObject);
+            }
+            flush(channel, buffer);
+
+            out.close();
+            out = null;
+            return true;
+        } catch (IOException e) {
+            LOG.e("Failed writing " + glObject.title + " to " + file + ": " + e.getMessage());
+            return false;
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * @see #load(File, String)
+     */
+    public static GlObject load(File file) {
+        return load(file, null);
+    }
+
+    /**
+     * Maps a file and creates an object using the mapping, without reading the vertex or index data.
+     *
+     * @param file The file.
+     * @param tag  The tag the file must have been written with, or {@code null} to accept any tag.
+     * @return The object, or {@code null} if the file could not be read, is not a valid mesh file for this device
+     * or has another tag.
+     */
+    public static GlObject load(File file, String tag) {
+        RandomAccessFile in = null;
+        try {
+            in = new RandomAccessFile(file, "r");
+            final long length = in.length();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                LOG.w("Not a mesh file: " + file);
+                return null;
+            }
+
+            // The mapping stays valid after the file is closed
+            final ByteBuffer data = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            data.order(ByteOrder.nativeOrder());
+
+            if (data.getInt(HEADER_MAGIC * BYTES_PER_INT) != MAGIC) {
+                LOG.w("Not a mesh file, or written with another byte order: " + file);
+                return null;
+            }
+            if (data.getInt(HEADER_VERSION * BYTES_PER_INT) != VERSION) {
+                LOG.w("Unsupported version " + data.getInt(HEADER_VERSION * BYTES_PER_INT) + ": " + file);
+                return null;
+            }
+            if (data.getInt(HEADER_FILE_SIZE * BYTES_PER_INT) != length) {
+                LOG.w("Truncated mesh file: " + file);
+                return null;
+            }
+
+            final int titleLength = data.getInt(HEADER_TITLE_LENGTH * BYTES_PER_INT);
+            final int tagLength = data.getInt(HEADER_TAG_LENGTH * BYTES_PER_INT);
+            final int vertexOffset = data.getInt(HEADER_VERTEX_OFFSET * BYTES_PER_INT);
+            if (titleLength < 0 || tagLength < 0 || HEADER_SIZE + titleLength + tagLength > vertexOffset) {
+                LOG.w("Corrupt mesh file: " + file);
+                return null;
+            }
+            if (tag != null && !tag.equals(getString(data, HEADER_SIZE + titleLength, tagLength))) {
+                return null;
+            }
+            final String title = getString(data, HEADER_SIZE, titleLength);
+
+            final VertexType type = findVertexType(data);
+            if (type == null) {
+                LOG.w("Unknown vertex type: " + file);
+                return null;
+            }
+
+            final int vertexCount = data.getInt(HEADER_VERTEX_COUNT * BYTES_PER_INT);
+            final int indexType = data.getInt(HEADER_INDEX_TYPE * BYTES_PER_INT);
+            final int indexCount = data.getInt(HEADER_INDEX_COUNT * BYTES_PER_INT);
+            final int indexOffset = data.getInt(HEADER_INDEX_OFFSET * BYTES_PER_INT);
+
+            final long vertexBytes = (long) vertexCount * type.getDataStrideInBytes();
+            final int bytesPerIndex = indexType == GL_UNSIGNED_SHORT ? BYTES_PER_SHORT : BYTES_PER_INT;
+            final boolean indexed = indexType != 0;
+            if (vertexCount < 0 || vertexOffset % SECTION_ALIGNMENT != 0 || vertexOffset + vertexBytes > length
+                    || (indexed && (indexType != GL_UNSIGNED_SHORT && indexType != GL_UNSIGNED_INT
+                                    || indexCount < 0 || indexOffset % SECTION_ALIGNMENT != 0
+                                    || indexOffset < vertexOffset + vertexBytes
+                                    || indexOffset + (long) indexCount * bytesPerIndex > length))) {
+                LOG.w("Corrupt mesh file: " + file);
+                return null;
+            }
+
+            final ByteBuffer vertices = slice(data, vertexOffset, (int) vertexBytes);
+            Buffer indices = null;
+            if (indexType == GL_UNSIGNED_SHORT) {
+                indices = slice(data, indexOffset, indexCount * BYTES_PER_SHORT).asShortBuffer();
+            } else if (indexType == GL_UNSIGNED_INT) {
+                indices = slice(data, indexOffset, indexCount * BYTES_PER_INT).asIntBuffer();
+            }
+
+            final int b = HEADER_BOUNDS * BYTES_PER_INT;
+            final Bounds bounds = new Bounds(data.getFloat(b), data.getFloat(b + 4), data.getFloat(b + 8),
+                                             data.getFloat(b + 12), data.getFloat(b + 16), data.getFloat(b + 20),
+                                             data.getFloat(b + 24));
+
+            final int glRenderMode = data.getInt(HEADER_RENDER_MODE * BYTES_PER_INT);
+            if (type.isPacked()) {
+                return new GlObject(title, type, vertices, indices, glRenderMode, bounds);
+            }
+            return new GlObject(title, type, vertices.asFloatBuffer(), indices, glRenderMode, bounds);
+        } catch (IOException e) {
+            LOG.e("Failed loading " + file + ": " + e.getMessage());
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private static void writePacked(FileChannel channel, ByteBuffer buffer, ByteBuffer data, int bytes)
+            throws IOException {
+        final ByteBuffer source = data.duplicate();
+        source.position(0).limit(bytes);
+        while (source.hasRemaining()) {
+            final ByteBuffer chunk = source.duplicate();
+            chunk.limit(chunk.position() + Math.min(source.remaining(), buffer.remaining()));
+            buffer.put(chunk);
+            source.position(chunk.position());
+            flush(channel, buffer);
+        }
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, FloatBuffer data, int count)
+            throws IOException {
+        final FloatBuffer vertices = data.duplicate();
+        vertices.position(0).limit(count);
+        while (vertices.hasRemaining()) {
+            final int floats = Math.min(vertices.remaining(), buffer.remaining() / VertexType.SIZE_OF_FLOAT);
+            final FloatBuffer chunk = vertices.duplicate();
+            chunk.limit(chunk.position() + floats);
+            buffer.asFloatBuffer().put(chunk);
+            buffer.position(buffer.position() + floats * VertexType.SIZE_OF_FLOAT);
+            vertices.position(vertices.position() + floats);
+            flush(channel, buffer);
+        }
+    }
+
+    private static void writeIndices(FileChannel channel, ByteBuffer buffer, GlObject glObject) throws IOException {
+        if (glObject.iType == GL_UNSIGNED_SHORT) {
+            final ShortBuffer indices = ((ShortBuffer) glObject.iBuffer).duplicate();
+            indices.position(0).limit(glObject.iCount);
+            while (indices.hasRemaining()) {
+                final int count = Math.min(indices.remaining(), buffer.remaining() / BYTES_PER_SHORT);
+                final ShortBuffer chunk = indices.duplicate();
+                chunk.limit(chunk.position() + count);
+                buffer.asShortBuffer().put(chunk);
+                buffer.position(buffer.position() + count * BYTES_PER_SHORT);
+                indices.position(indices.position() + count);
+                flush(channel, buffer);
+            }
+        } else {
+            final IntBuffer indices = ((IntBuffer) glObject.iBuffer).duplicate();
+            indices.position(0).limit(glObject.iCount);
+            while (indices.hasRemaining()) {
+                final int count = Math.min(indices.remaining(), buffer.remaining() / BYTES_PER_INT);
+                final IntBuffer chunk = indices.duplicate();
+                chunk.limit(chunk.position() + count);
+                buffer.asIntBuffer().put(chunk);
+                buffer.position(buffer.position() + count * BYTES_PER_INT);
+                indices.position(indices.position() + count);
+                flush(channel, buffer);
+            }
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void putZeros(ByteBuffer buffer, int count) {
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + SECTION_ALIGNMENT - 1) & -SECTION_ALIGNMENT;
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int offset, int bytes) {
+        final ByteBuffer slice = data.duplicate();
+        slice.position(offset).limit(offset + bytes);
+        return slice.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private static String getString(ByteBuffer data, int offset, int length) throws UnsupportedEncodingException {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer source = data.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static VertexType findVertexType(ByteBuffer data) {
+        for (VertexType type : VERTEX_TYPES) {
+            if (matches(data, HEADER_POSITION, type.getPositionCount(), type.getPositionOffset(), type.getPositionType())
+                    && matches(data, HEADER_UV, type.getUVCount(), type.getUVOffset(), type.getUVType())
+                    && matches(data, HEADER_NORMAL, type.getNormalCount(), type.getNormalOffset(),
+                               type.getNormalType())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(ByteBuffer data, int header, int count, int offset,
+                                   VertexType.ComponentType componentType) {
+        final int i = header * BYTES_PER_INT;
+        return data.getInt(i) == count && data.getInt(i + 4) == offset && data.getInt(i + 8) == componentType.glType;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOG.w("Failed closing: " + e.getMessage());
+            }
+        }
+    }
+}
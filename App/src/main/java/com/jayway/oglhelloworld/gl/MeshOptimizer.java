@@ -0,0 +1,588 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.util.MeshUtil;
+import com.jayway.oglhelloworld.util.Log;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static android.opengl.GLES20.GL_TRIANGLES;
+
+/**
+ * Reorders the triangles and vertices of a mesh for the GPU, without changing what is drawn.
+ * <p/>
+ * The optimization runs in three steps:
+ * <ol>
+ * <li>Triangles are reordered for the post-transform vertex cache, using Tom Forsyth's linear-speed vertex cache
+ * optimization.</li>
+ * <li>Optionally, the triangles are split into clusters at the points where the vertex cache is cold anyway, and
+ * the clusters are sorted so that the ones facing outwards are drawn first. This lets early-z reject more of the
+ * hidden fragments, at a small cost in vertex cache efficiency bounded by the overdraw threshold.</li>
+ * <li>Vertices are reordered in the order they are first used, so that vertex fetches become sequential.
+ * Vertices that are not used by any triangle are dropped.</li>
+ * </ol>
+ * The efficiency before and after is reported as ACMR, the average number of vertices transformed per triangle,
+ * and ATVR, the average number of times each vertex is transformed. Both are simulated with a FIFO cache, 1.0 is the
+ * best possible ATVR and 0.5 the best possible ACMR for a regular grid.
+ * <p/>
+ * Notice: This is meant to be run once when a mesh is created or imported, not per frame.
+ */
+public class MeshOptimizer {
+    private static final Log LOG = new Log(MeshOptimizer.class);
+
+    /**
+     * The FIFO cache size used to report the efficiency and to find the overdraw clusters, GPUs typically have
+     * between 16 and 32 entries.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    /**
+     * How much worse than the vertex cache order the ACMR of an overdraw cluster may be.
+     */
+    public static final float DEFAULT_OVERDRAW_THRESHOLD = 1.05f;
+
+    // Forsyth scoring, the values from the original paper
+    private static final int SCORE_CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    private static final int VALENCE_TABLE_SIZE = 32;
+
+    private static final float[] CACHE_SCORES = new float[SCORE_CACHE_SIZE];
+    private static final float[] VALENCE_SCORES = new float[VALENCE_TABLE_SIZE];
+
+    static {
+        for (int i = 0; i < SCORE_CACHE_SIZE; i++) {
+            if (i < 3) {
+                // The vertices of the last triangle get a fixed score, so that it is not simply repeated
+                CACHE_SCORES[i] = LAST_TRIANGLE_SCORE;
+            } else {
+                final float scaler = 1f / (SCORE_CACHE_SIZE - 3);
+                CACHE_SCORES[i] = (float) Math.pow(1f - (i - 3) * scaler, CACHE_DECAY_POWER);
+            }
+        }
+        for (int i = 1; i < VALENCE_TABLE_SIZE; i++) {
+            VALENCE_SCORES[i] = valenceScore(i);
+        }
+    }
+
+    private final int mCacheSize;
+    private boolean mOptimizeOverdraw;
+    private float mOverdrawThreshold = DEFAULT_OVERDRAW_THRESHOLD;
+
+    // Statistics of the last optimization
+    private float mAcmrBefore;
+    private float mAtvrBefore;
+    private float mAcmrAfter;
+    private float mAtvrAfter;
+
+    public MeshOptimizer() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize The FIFO cache size to simulate for the statistics and the overdraw clusters.
+     */
+    public MeshOptimizer(int cacheSize) {
+        mCacheSize = cacheSize;
+    }
+
+    /**
+     * @param optimizeOverdraw Whether the triangles should also be clustered for overdraw, off by default.
+     * @param threshold        How much worse than the vertex cache order the ACMR of a cluster may be, e.g.
+     *                         {@link #DEFAULT_OVERDRAW_THRESHOLD}.
+     */
+    public void setOptimizeOverdraw(boolean optimizeOverdraw, float threshold) {
+        mOptimizeOverdraw = optimizeOverdraw;
+        mOverdrawThreshold = threshold;
+    }
+
+    /**
+     * Optimizes a mesh. Non-indexed meshes are welded first, strips and fans are converted to triangle lists.
+     *
+     * @param source The mesh, any {@link GlObject} made of triangles.
+     * @return An indexed {@link android.opengl.GLES20#GL_TRIANGLES} object with the same vertex type and
+     * placement, see {@link GlObject#copyTransform(GlObject)}, or the source if it is not made of triangles.
+     */
+    public GlObject optimize(GlObject source) {
+        if (!MeshUtil.isTriangleMode(source.glRenderMode)) {
+            LOG.w("Can not optimize " + source.title + ", render mode " + source.glRenderMode + " is not made of triangles");
+            return source;
+        }
+
+        final int[] sourceTriangles = MeshUtil.getTriangleList(source);
+        final int triangleCount = sourceTriangles.length / 3;
+
+        final GlObject indexed = source.isIndexed()
+                ? source
+                : GlObjectFactory.weldVertices(source.title, source.vertexType, MeshUtil.getVertexData(source),
+                                               source.glRenderMode);
+
+        if (source.isIndexed()) {
+            final int misses = countCacheMisses(sourceTriangles, 0, sourceTriangles.length, mCacheSize);
+            mAcmrBefore = ratio(misses, triangleCount);
+            mAtvrBefore = ratio(misses, countUsedVertices(sourceTriangles, source.vCount));
+        } else {
+            // Without indices every drawn vertex is transformed, including each copy of a shared vertex
+            mAcmrBefore = ratio(source.vCount, triangleCount);
+            mAtvrBefore = ratio(source.vCount, indexed.vCount);
+        }
+        final float[] vertices = MeshUtil.getVertexData(indexed);
+        final int vertexCount = indexed.vCount;
+
+        int[] triangles = source.isIndexed() ? sourceTriangles : MeshUtil.getTriangleList(indexed);
+        triangles = optimizeVertexCache(triangles, vertexCount);
+
+        if (mOptimizeOverdraw) {
+            triangles = optimizeOverdraw(triangles, vertices, indexed.vertexType, mCacheSize, mOverdrawThreshold);
+        }
+
+        final GlObject optimized = optimizeVertexFetch(indexed.title, indexed.vertexType, vertices, vertexCount,
+                                                       triangles);
+        optimized.copyTransform(source);
+
+        final int misses = countCacheMisses(triangles, 0, triangles.length, mCacheSize);
+        mAcmrAfter = ratio(misses, triangles.length / 3);
+        mAtvrAfter = ratio(misses, optimized.vCount);
+
+        return optimized;
+    }
+
+    /**
+     * @return The average cache miss ratio of the source of the last optimization.
+     */
+    public float getAcmrBefore() {
+        return mAcmrBefore;
+    }
+
+    /**
+     * @return The average transform to vertex ratio of the source of the last optimization.
+     */
+    public float getAtvrBefore() {
+        return mAtvrBefore;
+    }
+
+    /**
+     * @return The average cache miss ratio of the result of the last optimization.
+     */
+    public float getAcmrAfter() {
+        return mAcmrAfter;
+    }
+
+    /**
+     * @return The average transform to vertex ratio of the result of the last optimization.
+     */
+    public float getAtvrAfter() {
+        return mAtvrAfter;
+    }
+
+    /**
+     * Computes the average cache miss ratio of a triangle list.
+     *
+     * @param triangles Three vertex indices per triangle.
+     * @param cacheSize The size of the simulated FIFO cache.
+     * @return The number of vertices transformed per triangle, between 0.5 and 3.
+     */
+    public static float computeAcmr(int[] triangles, int cacheSize) {
+        return ratio(countCacheMisses(triangles, 0, triangles.length, cacheSize), triangles.length / 3);
+    }
+
+    // VERTEX CACHE ===============================================================================================================
+
+    /**
+     * Forsyth's linear-speed vertex cache optimization. Each vertex is scored by its position in a simulated LRU
+     * cache and by the number of triangles still using it, the triangle with the highest score is emitted next.
+     */
+    static int[] optimizeVertexCache(int[] triangles, int vertexCount) {
+        final int triangleCount = triangles.length / 3;
+        final int[] result = new int[triangles.length];
+        if (triangleCount == 0) {
+            return result;
+        }
+
+        // Triangles using each vertex, the first liveCounts[v] entries are the ones that are not emitted yet
+        final int[] liveCounts = new int[vertexCount];
+        for (int index : triangles) {
+            liveCounts[index]++;
+        }
+        final int[] adjacencyOffsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyOffsets[v + 1] = adjacencyOffsets[v] + liveCounts[v];
+        }
+        final int[] adjacency = new int[triangles.length];
+        final int[] fill = new int[vertexCount];
+        for (int i = 0; i < triangles.length; i++) {
+            final int v = triangles[i];
+            adjacency[adjacencyOffsets[v] + fill[v]++] = i / 3;
+        }
+
+        final int[] cachePositions = new int[vertexCount];
+        Arrays.fill(cachePositions, -1);
+
+        final float[] vertexScores = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertexScores[v] = vertexScore(-1, liveCounts[v]);
+        }
+
+        final float[] triangleScores = new float[triangleCount];
+        final boolean[] emitted = new boolean[triangleCount];
+        int bestTriangle = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            triangleScores[t] = vertexScores[triangles[t * 3]]
+                                + vertexScores[triangles[t * 3 + 1]]
+                                + vertexScores[triangles[t * 3 + 2]];
+            if (triangleScores[t] > triangleScores[bestTriangle]) {
+                bestTriangle = t;
+            }
+        }
+
+        int[] cache = new int[SCORE_CACHE_SIZE + 3];
+        int[] nextCache = new int[SCORE_CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int scanPosition = 0;
+
+        for (int emittedCount = 0; emittedCount < triangleCount; emittedCount++) {
+            if (bestTriangle < 0) {
+                // Nothing in the cache has triangles left, continue with the next triangle not yet emitted
+                while (emitted[scanPosition]) {
+                    scanPosition++;
+                }
+                bestTriangle = scanPosition;
+            }
+
+            final int a = triangles[bestTriangle * 3];
+            final int b = triangles[bestTriangle * 3 + 1];
+            final int c = triangles[bestTriangle * 3 + 2];
+            result[emittedCount * 3] = a;
+            result[emittedCount * 3 + 1] = b;
+            result[emittedCount * 3 + 2] = c;
+            emitted[bestTriangle] = true;
+
+            removeTriangle(adjacency, adjacencyOffsets, liveCounts, a, bestTriangle);
+            removeTriangle(adjacency, adjacencyOffsets, liveCounts, b, bestTriangle);
+            removeTriangle(adjacency, adjacencyOffsets, liveCounts, c, bestTriangle);
+
+            // The emitted vertices move to the front of the LRU cache
+            int nextCount = 0;
+            nextCache[nextCount++] = a;
+            nextCache[nextCount++] = b;
+            nextCache[nextCount++] = c;
+            for (int i = 0; i < cacheCount; i++) {
+                final int v = cache[i];
+                if (v != a && v != b && v != c) {
+                    nextCache[nextCount++] = v;
+                }
+            }
+
+            for (int i = 0; i < nextCount; i++) {
+                final int v = nextCache[i];
+                cachePositions[v] = i < SCORE_CACHE_SIZE ? i : -1;
+                vertexScores[v] = vertexScore(cachePositions[v], liveCounts[v]);
+            }
+
+            // Only the triangles of the vertices whose score changed have to be rescored
+            bestTriangle = -1;
+            float bestScore = -1f;
+            for (int i = 0; i < nextCount; i++) {
+                final int v = nextCache[i];
+                final int start = adjacencyOffsets[v];
+                for (int j = start; j < start + liveCounts[v]; j++) {
+                    final int t = adjacency[j];
+                    final float score = vertexScores[triangles[t * 3]]
+                                        + vertexScores[triangles[t * 3 + 1]]
+                                        + vertexScores[triangles[t * 3 + 2]];
+                    triangleScores[t] = score;
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestTriangle = t;
+                    }
+                }
+            }
+
+            final int[] swap = cache;
+            cache = nextCache;
+            nextCache = swap;
+            cacheCount = Math.min(nextCount, SCORE_CACHE_SIZE);
+        }
+
+        return result;
+    }
+
+    private static void removeTriangle(int[] adjacency, int[] adjacencyOffsets, int[] liveCounts, int v, int t) {
+        final int start = adjacencyOffsets[v];
+        final int last = start + liveCounts[v] - 1;
+        for (int j = start; j <= last; j++) {
+            if (adjacency[j] == t) {
+                adjacency[j] = adjacency[last];
+                adjacency[last] = t;
+                liveCounts[v]--;
+                return;
+            }
+        }
+    }
+
+    private static float vertexScore(int cachePosition, int liveCount) {
+        if (liveCount == 0) {
+            // No triangles left, the vertex is of no use
+            return -1f;
+        }
+
+        float score = cachePosition >= 0 ? CACHE_SCORES[cachePosition] : 0f;
+        score += liveCount < VALENCE_TABLE_SIZE ? VALENCE_SCORES[liveCount] : valenceScore(liveCount);
+        return score;
+    }
+
+    /**
+     * Vertices with few triangles left get a boost, so that they are finished off instead of left behind.
+     */
+    private static float valenceScore(int liveCount) {
+        return VALENCE_BOOST_SCALE * (float) Math.pow(liveCount, -VALENCE_BOOST_POWER);
+    }
+
+    // OVERDRAW ===================================================================================================================
+
+    /**
+     * Splits the triangles into clusters and sorts the clusters so that the ones facing away from the center of the
+     * mesh are drawn first, since those are the ones most likely to occlude the rest.
+     */
+    static int[] optimizeOverdraw(int[] triangles, float[] vertices, VertexType vertexType, int cacheSize,
+                                  float threshold) {
+        final int triangleCount = triangles.length / 3;
+        if (triangleCount == 0) {
+            return triangles;
+        }
+
+        final int[] clusterStarts = findClusters(triangles, cacheSize, threshold);
+        final int clusterCount = clusterStarts.length;
+
+        final int dimension = vertexType.getDimension();
+        final int pos = vertexType.getPositionOffset();
+
+        // Area weighted centroids and normals of the clusters and of the whole mesh
+        final float[] centroids = new float[clusterCount * 3];
+        final float[] normals = new float[clusterCount * 3];
+        final float[] meshCentroid = new float[3];
+        float meshArea = 0f;
+
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            final int start = clusterStarts[cluster];
+            final int end = cluster + 1 < clusterCount ? clusterStarts[cluster + 1] : triangleCount;
+            float clusterArea = 0f;
+
+            for (int t = start; t < end; t++) {
+                final int a = triangles[t * 3] * dimension + pos;
+                final int b = triangles[t * 3 + 1] * dimension + pos;
+                final int c = triangles[t * 3 + 2] * dimension + pos;
+
+                final float e1x = vertices[b] - vertices[a];
+                final float e1y = vertices[b + 1] - vertices[a + 1];
+                final float e1z = vertices[b + 2] - vertices[a + 2];
+                final float e2x = vertices[c] - vertices[a];
+                final float e2y = vertices[c + 1] - vertices[a + 1];
+                final float e2z = vertices[c + 2] - vertices[a + 2];
+
+                // The length of the cross product is twice the area
+                final float nx = e1y * e2z - e1z * e2y;
+                final float ny = e1z * e2x - e1x * e2z;
+                final float nz = e1x * e2y - e1y * e2x;
+                final float area = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+                final float cx = (vertices[a] + vertices[b] + vertices[c]) / 3f;
+                final float cy = (vertices[a + 1] + vertices[b + 1] + vertices[c + 1]) / 3f;
+                final float cz = (vertices[a + 2] + vertices[b + 2] + vertices[c + 2]) / 3f;
+
+                centroids[cluster * 3] += cx * area;
+                centroids[cluster * 3 + 1] += cy * area;
+                centroids[cluster * 3 + 2] += cz * area;
+                normals[cluster * 3] += nx;
+                normals[cluster * 3 + 1] += ny;
+                normals[cluster * 3 + 2] += nz;
+                clusterArea += area;
+            }
+
+            meshCentroid[0] += centroids[cluster * 3];
+            meshCentroid[1] += centroids[cluster * 3 + 1];
+            meshCentroid[2] += centroids[cluster * 3 + 2];
+            meshArea += clusterArea;
+
+            if (clusterArea > 0f) {
+                centroids[cluster * 3] /= clusterArea;
+                centroids[cluster * 3 + 1] /= clusterArea;
+                centroids[cluster * 3 + 2] /= clusterArea;
+            }
+        }
+
+        if (meshArea > 0f) {
+            meshCentroid[0] /= meshArea;
+            meshCentroid[1] /= meshArea;
+            meshCentroid[2] /= meshArea;
+        }
+
+        final float[] sortKeys = new float[clusterCount];
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            final float nx = normals[cluster * 3];
+            final float ny = normals[cluster * 3 + 1];
+            final float nz = normals[cluster * 3 + 2];
+            final float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+            final float dx = centroids[cluster * 3] - meshCentroid[0];
+            final float dy = centroids[cluster * 3 + 1] - meshCentroid[1];
+            final float dz = centroids[cluster * 3 + 2] - meshCentroid[2];
+            sortKeys[cluster] = length > 0f ? (dx * nx + dy * ny + dz * nz) / length : 0f;
+        }
+
+        // Outwards facing clusters first
+        final Integer[] order = new Integer[clusterCount];
+        for (int cluster = 0; cluster < clusterCount; cluster++) {
+            order[cluster] = cluster;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return Float.compare(sortKeys[rhs], sortKeys[lhs]);
+            }
+        });
+
+        final int[] result = new int[triangles.length];
+        int size = 0;
+        for (Integer cluster : order) {
+            final int start = clusterStarts[cluster];
+            final int end = cluster + 1 < clusterCount ? clusterStarts[cluster + 1] : triangleCount;
+            System.arraycopy(triangles, start * 3, result, size, (end - start) * 3);
+            size += (end - start) * 3;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the clusters in the vertex cache order. A cluster always ends where every vertex of the next triangle
+     * misses the cache, since the cache is cold there anyway. It may also end earlier if its ACMR, starting from
+     * a cold cache, is within the threshold of the ACMR of the whole mesh.
+     *
+     * @return The first triangle of each cluster.
+     */
+    private static int[] findClusters(int[] triangles, int cacheSize, float threshold) {
+        final int triangleCount = triangles.length / 3;
+        final float limit = computeAcmr(triangles, cacheSize) * threshold;
+
+        int vertexCount = 0;
+        for (int index : triangles) {
+            vertexCount = Math.max(vertexCount, index + 1);
+        }
+
+        final int[] starts = new int[triangleCount];
+        int clusterCount = 0;
+
+        final int[] stamps = new int[vertexCount];
+        int time = cacheSize + 1;
+
+        int clusterStart = 0;
+        int clusterMisses = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            int misses = 0;
+            for (int k = 0; k < 3; k++) {
+                final int v = triangles[t * 3 + k];
+                if (time - stamps[v] > cacheSize) {
+                    stamps[v] = time++;
+                    misses++;
+                }
+            }
+
+            final boolean hardBoundary = misses == 3;
+            final boolean softBoundary = misses >= 2 && t > clusterStart
+                                         && (float) clusterMisses / (t - clusterStart) <= limit;
+            if (t == 0 || hardBoundary || softBoundary) {
+                starts[clusterCount++] = t;
+                clusterStart = t;
+                clusterMisses = 0;
+
+                // The new cluster may be drawn after any other, so it starts with a cold cache
+                if (t > 0 && !hardBoundary) {
+                    time += cacheSize + 1;
+                    misses = 0;
+                    for (int k = 0; k < 3; k++) {
+                        stamps[triangles[t * 3 + k]] = time++;
+                        misses++;
+                    }
+                }
+            }
+            clusterMisses += misses;
+        }
+
+        return Arrays.copyOf(starts, clusterCount);
+    }
+
+    // VERTEX FETCH ===============================================================================================================
+
+    /**
+     * Orders the vertices by first use and builds the optimized object.
+     */
+    private static GlObject optimizeVertexFetch(String title, VertexType vertexType, float[] vertices, int vertexCount,
+                                                int[] triangles) {
+        final int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+
+        final int[] order = new int[vertexCount];
+        int usedCount = 0;
+        for (int index : triangles) {
+            if (remap[index] == -1) {
+                remap[index] = usedCount;
+                order[usedCount++] = index;
+            }
+        }
+
+        final int dimension = vertexType.getDimension();
+        final MeshBuilder builder = new MeshBuilder(vertexType, usedCount, false);
+        for (int i = 0; i < usedCount; i++) {
+            builder.addVertex(vertices, order[i] * dimension);
+        }
+        for (int index : triangles) {
+            builder.addIndex(remap[index]);
+        }
+
+        return builder.build(title, GL_TRIANGLES);
+    }
+
+    // STATISTICS =================================================================================================================
+
+    /**
+     * Simulates a FIFO cache over the indices in [start, end).
+     */
+    private static int countCacheMisses(int[] indices, int start, int end, int cacheSize) {
+        int vertexCount = 0;
+        for (int i = start; i < end; i++) {
+            vertexCount = Math.max(vertexCount, indices[i] + 1);
+        }
+
+        // A vertex is in the cache if fewer than cacheSize vertices have been added since it was
+        final int[] stamps = new int[vertexCount];
+        int time = cacheSize + 1;
+        int misses = 0;
+
+        for (int i = start; i < end; i++) {
+            final int v = indices[i];
+            if (time - stamps[v] > cacheSize) {
+                stamps[v] = time++;
+                misses++;
+            }
+        }
+        return misses;
+    }
+
+    private static int countUsedVertices(int[] indices, int vertexCount) {
+        final boolean[] used = new boolean[vertexCount];
+        int count = 0;
+        for (int index : indices) {
+            if (!used[index]) {
+                used[index] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static float ratio(int count, int total) {
+        return total > 0 ? (float) count / total : 0f;
+    }
+}
@@ -0,0 +1,680 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.util.MeshUtil;
+import com.jayway.oglhelloworld.util.Log;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static android.opengl.GLES20.GL_TRIANGLES;
+
+/**
+ * Reduces the triangle count of a mesh with quadric error metric edge collapses (Garland and Heckbert).
+ * <p/>
+ * Vertices sharing a position, e.g. along a texture seam, are collapsed together. Each collapse moves one position
+ * onto a neighbouring one, so that no new vertices have to be interpolated. The cost of a collapse is the area
+ * weighted squared distance to the planes of the original surrounding triangles, plus a penalty for how much the
+ * texture coordinates and normals of the removed vertices differ from the ones they are merged into.
+ * <p/>
+ * Borders and non-manifold edges are never collapsed, so open meshes keep their outline. Collapses that would flip
+ * a triangle or pinch the surface into a non-manifold edge are rejected.
+ * <p/>
+ * Notice: This is meant to be run once when a mesh is created or imported, not per frame.
+ */
+public class MeshSimplifier {
+    private static final Log LOG = new Log(MeshSimplifier.class);
+
+    /**
+     * Weight of the attribute penalty relative to the geometric error, for unit differences in the attributes
+     * of a mesh with unit radius.
+     */
+    public static final float DEFAULT_ATTRIBUTE_WEIGHT = 0.5f;
+
+    /**
+     * The reduction between two levels of a LOD chain.
+     */
+    public static final float DEFAULT_LOD_REDUCTION = 0.5f;
+
+    // Positions closer than this, relative to the mesh radius, are considered the same
+    private static final float WELD_EPSILON = 1e-5f;
+
+    // Quadric: the upper triangle of the symmetric 4x4 plane matrix followed by the accumulated area
+    private static final int QUADRIC_SIZE = 11;
+    private static final int QUADRIC_WEIGHT = 10;
+
+    // A level of a LOD chain has to remove at least this fraction of the triangles to be worth keeping
+    private static final float MIN_LOD_REDUCTION = 0.1f;
+
+    private float mAttributeWeight = DEFAULT_ATTRIBUTE_WEIGHT;
+
+    // Statistics of the last simplification
+    private float mError;
+
+    /**
+     * @param attributeWeight Weight of the attribute penalty, see {@link #DEFAULT_ATTRIBUTE_WEIGHT}.
+     *                        0 ignores the attributes.
+     */
+    public void setAttributeWeight(float attributeWeight) {
+        mAttributeWeight = attributeWeight;
+    }
+
+    /**
+     * @return The largest geometric error introduced by the last simplification, as an approximate distance in
+     * model space.
+     */
+    public float getError() {
+        return mError;
+    }
+
+    /**
+     * Builds a chain of levels of detail, each with about {@code reduction} times the triangles of the previous.
+     * Building stops early when a level can not be reduced any further.
+     *
+     * @param source    The full detail mesh, which becomes level 0.
+     * @param maxLevels The maximum number of levels including the source.
+     * @param reduction The fraction of triangles to keep per level, e.g. {@link #DEFAULT_LOD_REDUCTION}.
+     * @return The chain, see {@link GlObject#setLodChain(LodChain)}.
+     */
+    public LodChain buildLodChain(GlObject source, int maxLevels, float reduction) {
+        final GlObject[] levels = new GlObject[Math.max(1, maxLevels)];
+        final float[] errors = new float[levels.length];
+        levels[0] = source;
+
+        int levelCount = 1;
+        int triangleCount = MeshUtil.getTriangleList(source).length / 3;
+        while (levelCount < levels.length) {
+            final int target = (int) (triangleCount * reduction);
+            final GlObject level = simplify(levels[levelCount - 1], target);
+            final int levelTriangles = level.iCount / 3;
+
+            if (level == levels[levelCount - 1] || levelTriangles == 0
+                    || levelTriangles > triangleCount * (1f - MIN_LOD_REDUCTION)) {
+                break;
+            }
+
+            // Errors add up since each level is simplified from the previous one
+            errors[levelCount] = errors[levelCount - 1] + mError;
+            levels[levelCount++] = level;
+            triangleCount = levelTriangles;
+        }
+
+        return new LodChain(Arrays.copyOf(levels, levelCount), Arrays.copyOf(errors, levelCount));
+    }
+
+    /**
+     * Simplifies a mesh. Non-indexed meshes are welded first, strips and fans are converted to triangle lists.
+     *
+     * @param source              The mesh, any {@link GlObject} made of triangles.
+     * @param targetTriangleCount The triangle count to reduce to, the result may have more triangles if the mesh
+     *                            can not be reduced further without collapsing borders or flipping triangles.
+     * @return An indexed {@link android.opengl.GLES20#GL_TRIANGLES} object with the same vertex type and
+     * placement, see {@link GlObject#copyTransform(GlObject)}, or the source if it is not made of triangles.
+     */
+    public GlObject simplify(GlObject source, int targetTriangleCount) {
+        mError = 0f;
+
+        if (!MeshUtil.isTriangleMode(source.glRenderMode)) {
+            LOG.w("Can not simplify " + source.title + ", render mode " + source.glRenderMode + " is not made of triangles");
+            return source;
+        }
+
+        final GlObject indexed = source.isIndexed()
+                ? source
+                : GlObjectFactory.weldVertices(source.title, source.vertexType, MeshUtil.getVertexData(source),
+                                               source.glRenderMode);
+
+        final Mesh mesh = new Mesh(indexed, mAttributeWeight);
+        mError = mesh.simplify(targetTriangleCount);
+
+        final GlObject simplified = mesh.build(indexed.title);
+        simplified.copyTransform(source);
+        return simplified;
+    }
+
+    /**
+     * The working state of one simplification.
+     * <p/>
+     * Vertices are grouped by position, a collapse always merges all vertices of one group into the nearest vertices
+     * of a neighbouring group.
+     */
+    private static class Mesh {
+        private final VertexType mVertexType;
+        private final int mDimension;
+        private final int mPositionOffset;
+        private final float[] mVertices;
+        private final int mVertexCount;
+
+        private int[] mTriangles;
+        private int mTriangleCount;
+
+        // Position groups
+        private final int[] mGroupOf;
+        private final int mGroupCount;
+        private final int[] mGroupVertexOffsets;
+        private final int[] mGroupVertices;
+        private final float[] mGroupPositions;
+        private final boolean[] mLocked;
+
+        private final double[] mQuadrics;
+        private final float mAttributeScale;
+
+        // Collapsed vertices point at the vertex they were merged into
+        private final int[] mVertexRemap;
+
+        // Scratch data for validating collapses
+        private final float[] mNormalBefore = new float[3];
+        private final float[] mNormalAfter = new float[3];
+        private final int[] mNeighbourStamps;
+        private final int[] mSharedStamps;
+        private int mStamp;
+
+        Mesh(GlObject glObject, float attributeWeight) {
+            mVertexType = glObject.vertexType;
+            mDimension = mVertexType.getDimension();
+            mPositionOffset = mVertexType.getPositionOffset();
+            mVertices = MeshUtil.getVertexData(glObject);
+            mVertexCount = glObject.vCount;
+
+            mVertexRemap = new int[mVertexCount];
+            for (int v = 0; v < mVertexCount; v++) {
+                mVertexRemap[v] = v;
+            }
+
+            final float radius = computeRadius();
+            mAttributeScale = attributeWeight * radius * radius;
+
+            mGroupOf = new int[mVertexCount];
+            mGroupCount = groupByPosition(radius * WELD_EPSILON);
+
+            // Vertices per group
+            mGroupVertexOffsets = new int[mGroupCount + 1];
+            for (int v = 0; v < mVertexCount; v++) {
+                mGroupVertexOffsets[mGroupOf[v] + 1]++;
+            }
+            for (int g = 0; g < mGroupCount; g++) {
+                mGroupVertexOffsets[g + 1] += mGroupVertexOffsets[g];
+            }
+            mGroupVertices = new int[mVertexCount];
+            final int[] fill = new int[mGroupCount];
+            mGroupPositions = new float[mGroupCount * 3];
+            for (int v = 0; v < mVertexCount; v++) {
+                final int g = mGroupOf[v];
+                if (fill[g] == 0) {
+                    System.arraycopy(mVertices, v * mDimension + mPositionOffset, mGroupPositions, g * 3, 3);
+                }
+                mGroupVertices[mGroupVertexOffsets[g] + fill[g]++] = v;
+            }
+
+            // Triangles, without the ones that are degenerate once the positions are grouped
+            final int[] triangles = MeshUtil.getTriangleList(glObject);
+            mTriangles = new int[triangles.length];
+            for (int i = 0; i < triangles.length; i += 3) {
+                final int a = triangles[i];
+                final int b = triangles[i + 1];
+                final int c = triangles[i + 2];
+                if (mGroupOf[a] != mGroupOf[b] && mGroupOf[b] != mGroupOf[c] && mGroupOf[a] != mGroupOf[c]) {
+                    mTriangles[mTriangleCount * 3] = a;
+                    mTriangles[mTriangleCount * 3 + 1] = b;
+                    mTriangles[mTriangleCount * 3 + 2] = c;
+                    mTriangleCount++;
+                }
+            }
+
+            mLocked = findLockedGroups();
+            mQuadrics = computeQuadrics();
+            mNeighbourStamps = new int[mGroupCount];
+            mSharedStamps = new int[mGroupCount];
+        }
+
+        /**
+         * @return The largest geometric error of the collapses.
+         */
+        float simplify(int targetTriangleCount) {
+            double maxError = 0;
+
+            // Each pass collapses the cheapest edges whose neighbourhoods do not overlap, until the target is met
+            while (mTriangleCount > targetTriangleCount) {
+                final int[] groupTriangleOffsets = new int[mGroupCount + 1];
+                final int[] groupTriangles = buildGroupTriangles(groupTriangleOffsets);
+
+                final long[] edges = findEdges();
+                final int[] from = new int[edges.length];
+                final int[] to = new int[edges.length];
+                final double[] geometricErrors = new double[edges.length];
+                final long[] candidates = new long[edges.length];
+                int candidateCount = 0;
+
+                for (int e = 0; e < edges.length; e++) {
+                    final int a = (int) (edges[e] >>> 32);
+                    final int b = (int) edges[e];
+
+                    final double costAB = mLocked[a] ? Double.MAX_VALUE : collapseCost(a, b);
+                    final double costBA = mLocked[b] ? Double.MAX_VALUE : collapseCost(b, a);
+                    if (costAB == Double.MAX_VALUE && costBA == Double.MAX_VALUE) {
+                        continue;
+                    }
+
+                    final double cost;
+                    if (costAB <= costBA) {
+                        from[e] = a;
+                        to[e] = b;
+                        cost = costAB;
+                    } else {
+                        from[e] = b;
+                        to[e] = a;
+                        cost = costBA;
+                    }
+                    geometricErrors[e] = geometricError(from[e], to[e]);
+
+                    // Non-negative floats sort like their bits, so cost and edge can be sorted as one long
+                    candidates[candidateCount++] = ((long) Float.floatToIntBits((float) cost) << 32) | e;
+                }
+                Arrays.sort(candidates, 0, candidateCount);
+
+                final boolean[] touched = new boolean[mGroupCount];
+                int remaining = mTriangleCount;
+                int collapses = 0;
+
+                for (int i = 0; i < candidateCount && remaining > targetTriangleCount; i++) {
+                    final int e = (int) candidates[i];
+                    final int u = from[e];
+                    final int v = to[e];
+
+                    if (touched[u] || touched[v] || !isValidCollapse(u, v, groupTriangleOffsets, groupTriangles)) {
+                        continue;
+                    }
+
+                    remaining -= collapse(u, v, groupTriangleOffsets, groupTriangles, touched);
+                    maxError = Math.max(maxError, geometricErrors[e]);
+                    collapses++;
+                }
+
+                if (collapses == 0) {
+                    break;
+                }
+                removeCollapsedTriangles();
+            }
+
+            return (float) Math.sqrt(maxError);
+        }
+
+        GlObject build(String title) {
+            final int[] remap = new int[mVertexCount];
+            Arrays.fill(remap, -1);
+
+            final MeshBuilder builder = new MeshBuilder(mVertexType, mVertexCount, false);
+            for (int i = 0; i < mTriangleCount * 3; i++) {
+                final int v = mTriangles[i];
+                if (remap[v] == -1) {
+                    remap[v] = builder.addVertex(mVertices, v * mDimension);
+                }
+            }
+            for (int i = 0; i < mTriangleCount * 3; i++) {
+                builder.addIndex(remap[mTriangles[i]]);
+            }
+            return builder.build(title, GL_TRIANGLES);
+        }
+
+        // COLLAPSE ===============================================================================================================
+
+        /**
+         * The collapse of group u onto group v, its geometric error plus the attribute penalty.
+         */
+        private double collapseCost(int u, int v) {
+            double attributeError = 0;
+            for (int i = mGroupVertexOffsets[u]; i < mGroupVertexOffsets[u + 1]; i++) {
+                final int vertex = mGroupVertices[i];
+                attributeError += attributeDistance(vertex, nearestVertex(vertex, v));
+            }
+            attributeError /= mGroupVertexOffsets[u + 1] - mGroupVertexOffsets[u];
+
+            return geometricError(u, v) + mAttributeScale * attributeError;
+        }
+
+        /**
+         * The mean squared distance from the position of v to the planes of the triangles around both groups.
+         */
+        private double geometricError(int u, int v) {
+            final double[] q = mQuadrics;
+            final int qu = u * QUADRIC_SIZE;
+            final int qv = v * QUADRIC_SIZE;
+
+            final double x = mGroupPositions[v * 3];
+            final double y = mGroupPositions[v * 3 + 1];
+            final double z = mGroupPositions[v * 3 + 2];
+
+            double error = 0;
+            for (int k = 0; k < 2; k++) {
+                final int o = k == 0 ? qu : qv;
+                error += q[o] * x * x + 2 * q[o + 1] * x * y + 2 * q[o + 2] * x * z + 2 * q[o + 3] * x
+                         + q[o + 4] * y * y + 2 * q[o + 5] * y * z + 2 * q[o + 6] * y
+                         + q[o + 7] * z * z + 2 * q[o + 8] * z
+                         + q[o + 9];
+            }
+
+            final double weight = q[qu + QUADRIC_WEIGHT] + q[qv + QUADRIC_WEIGHT];
+            return weight > 0 ? Math.max(0, error / weight) : 0;
+        }
+
+        /**
+         * A collapse is rejected if any remaining triangle around u would flip, or if the surface would be pinched:
+         * u and v may only have the two neighbours opposite the edge in common, and u needs more than three
+         * triangles since the one triangle left by collapsing it could close a tetrahedron.
+         */
+        private boolean isValidCollapse(int u, int v, int[] groupTriangleOffsets, int[] groupTriangles) {
+            if (groupTriangleOffsets[u + 1] - groupTriangleOffsets[u] <= 3) {
+                return false;
+            }
+
+            final float[] p = mGroupPositions;
+            final float[] before = mNormalBefore;
+            final float[] after = mNormalAfter;
+
+            // Stamp the neighbours of v
+            final int stamp = ++mStamp;
+            for (int i = groupTriangleOffsets[v]; i < groupTriangleOffsets[v + 1]; i++) {
+                final int t = groupTriangles[i];
+                for (int k = 0; k < 3; k++) {
+                    mNeighbourStamps[mGroupOf[mTriangles[t * 3 + k]]] = stamp;
+                }
+            }
+
+            int sharedNeighbours = 0;
+            for (int i = groupTriangleOffsets[u]; i < groupTriangleOffsets[u + 1]; i++) {
+                final int t = groupTriangles[i];
+                final int a = mGroupOf[mTriangles[t * 3]];
+                final int b = mGroupOf[mTriangles[t * 3 + 1]];
+                final int c = mGroupOf[mTriangles[t * 3 + 2]];
+
+                for (int k = 0; k < 3; k++) {
+                    final int g = mGroupOf[mTriangles[t * 3 + k]];
+                    if (g != u && g != v && mNeighbourStamps[g] == stamp && mSharedStamps[g] != stamp) {
+                        mSharedStamps[g] = stamp;
+                        sharedNeighbours++;
+                    }
+                }
+
+                if (a == v || b == v || c == v) {
+                    // Removed by the collapse
+                    continue;
+                }
+
+                normal(p, a * 3, b * 3, c * 3, before);
+                normal(p, (a == u ? v : a) * 3, (b == u ? v : b) * 3, (c == u ? v : c) * 3, after);
+
+                if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0f) {
+                    return false;
+                }
+            }
+            return sharedNeighbours <= 2;
+        }
+
+        /**
+         * Merges group u into group v.
+         *
+         * @return The number of triangles which became degenerate.
+         */
+        private int collapse(int u, int v, int[] groupTriangleOffsets, int[] groupTriangles, boolean[] touched) {
+            for (int i = mGroupVertexOffsets[u]; i < mGroupVertexOffsets[u + 1]; i++) {
+                final int vertex = mGroupVertices[i];
+                mVertexRemap[vertex] = nearestVertex(vertex, v);
+            }
+
+            for (int k = 0; k < QUADRIC_SIZE; k++) {
+                mQuadrics[v * QUADRIC_SIZE + k] += mQuadrics[u * QUADRIC_SIZE + k];
+            }
+
+            // The triangles around u change, so their groups are left alone for the rest of the pass
+            int removed = 0;
+            touched[u] = true;
+            touched[v] = true;
+            for (int i = groupTriangleOffsets[u]; i < groupTriangleOffsets[u + 1]; i++) {
+                final int t = groupTriangles[i];
+                boolean hasV = false;
+                for (int k = 0; k < 3; k++) {
+                    final int g = mGroupOf[mTriangles[t * 3 + k]];
+                    touched[g] = true;
+                    hasV |= g == v;
+                }
+                if (hasV) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Applies the vertex remap of the pass and drops the degenerate triangles.
+         */
+        private void removeCollapsedTriangles() {
+            int count = 0;
+            for (int t = 0; t < mTriangleCount; t++) {
+                final int a = mVertexRemap[mTriangles[t * 3]];
+                final int b = mVertexRemap[mTriangles[t * 3 + 1]];
+                final int c = mVertexRemap[mTriangles[t * 3 + 2]];
+                if (mGroupOf[a] != mGroupOf[b] && mGroupOf[b] != mGroupOf[c] && mGroupOf[a] != mGroupOf[c]) {
+                    mTriangles[count * 3] = a;
+                    mTriangles[count * 3 + 1] = b;
+                    mTriangles[count * 3 + 2] = c;
+                    count++;
+                }
+            }
+            mTriangleCount = count;
+        }
+
+        private int nearestVertex(int vertex, int group) {
+            int nearest = mGroupVertices[mGroupVertexOffsets[group]];
+            double nearestDistance = Double.MAX_VALUE;
+            for (int i = mGroupVertexOffsets[group]; i < mGroupVertexOffsets[group + 1]; i++) {
+                final int candidate = mGroupVertices[i];
+                final double distance = attributeDistance(vertex, candidate);
+                if (distance < nearestDistance) {
+                    nearest = candidate;
+                    nearestDistance = distance;
+                }
+            }
+            return nearest;
+        }
+
+        /**
+         * The squared distance between all attributes except the positions.
+         */
+        private double attributeDistance(int a, int b) {
+            double distance = 0;
+            for (int k = 0; k < mDimension; k++) {
+                if (k >= mPositionOffset && k < mPositionOffset + 3) {
+                    continue;
+                }
+                final double d = mVertices[a * mDimension + k] - mVertices[b * mDimension + k];
+                distance += d * d;
+            }
+            return distance;
+        }
+
+        // SETUP ==================================================================================================================
+
+        private float computeRadius() {
+            float maxSquared = 0f;
+            for (int v = 0; v < mVertexCount; v++) {
+                final int p = v * mDimension + mPositionOffset;
+                final float x = mVertices[p];
+                final float y = mVertices[p + 1];
+                final float z = mVertices[p + 2];
+                maxSquared = Math.max(maxSquared, x * x + y * y + z * z);
+            }
+            return maxSquared > 0f ? (float) Math.sqrt(maxSquared) : 1f;
+        }
+
+        /**
+         * Fills {@link #mGroupOf} by sorting the vertices on their quantized positions.
+         *
+         * @return The number of groups.
+         */
+        private int groupByPosition(float cellSize) {
+            final int[] quantized = new int[mVertexCount * 3];
+            final Integer[] order = new Integer[mVertexCount];
+            for (int v = 0; v < mVertexCount; v++) {
+                for (int k = 0; k < 3; k++) {
+                    quantized[v * 3 + k] = Math.round(mVertices[v * mDimension + mPositionOffset + k] / cellSize);
+                }
+                order[v] = v;
+            }
+
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer lhs, Integer rhs) {
+                    for (int k = 0; k < 3; k++) {
+                        final int l = quantized[lhs * 3 + k];
+                        final int r = quantized[rhs * 3 + k];
+                        if (l != r) {
+                            return l < r ? -1 : 1;
+                        }
+                    }
+                    return 0;
+                }
+            });
+
+            int groupCount = 0;
+            for (int i = 0; i < mVertexCount; i++) {
+                final int v = order[i];
+                if (i > 0) {
+                    final int previous = order[i - 1];
+                    if (quantized[v * 3] != quantized[previous * 3]
+                            || quantized[v * 3 + 1] != quantized[previous * 3 + 1]
+                            || quantized[v * 3 + 2] != quantized[previous * 3 + 2]) {
+                        groupCount++;
+                    }
+                }
+                mGroupOf[v] = groupCount;
+            }
+            return mVertexCount > 0 ? groupCount + 1 : 0;
+        }
+
+        /**
+         * Borders, edges used by a single triangle, and non-manifold edges, used by more than two, are locked.
+         */
+        private boolean[] findLockedGroups() {
+            final boolean[] locked = new boolean[mGroupCount];
+            final long[] edges = new long[mTriangleCount * 3];
+            for (int t = 0; t < mTriangleCount; t++) {
+                for (int k = 0; k < 3; k++) {
+                    edges[t * 3 + k] = edgeKey(mGroupOf[mTriangles[t * 3 + k]], mGroupOf[mTriangles[t * 3 + (k + 1) % 3]]);
+                }
+            }
+            Arrays.sort(edges);
+
+            for (int start = 0; start < edges.length; ) {
+                int end = start + 1;
+                while (end < edges.length && edges[end] == edges[start]) {
+                    end++;
+                }
+                if (end - start != 2) {
+                    locked[(int) (edges[start] >>> 32)] = true;
+                    locked[(int) edges[start]] = true;
+                }
+                start = end;
+            }
+            return locked;
+        }
+
+        private double[] computeQuadrics() {
+            final double[] quadrics = new double[mGroupCount * QUADRIC_SIZE];
+            final float[] n = new float[3];
+            final float[] p = mGroupPositions;
+
+            for (int t = 0; t < mTriangleCount; t++) {
+                final int a = mGroupOf[mTriangles[t * 3]];
+                final int b = mGroupOf[mTriangles[t * 3 + 1]];
+                final int c = mGroupOf[mTriangles[t * 3 + 2]];
+
+                normal(p, a * 3, b * 3, c * 3, n);
+                final double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+                if (length == 0) {
+                    continue;
+                }
+
+                // Plane through the triangle, weighted by its area
+                final double nx = n[0] / length;
+                final double ny = n[1] / length;
+                final double nz = n[2] / length;
+                final double d = -(nx * p[a * 3] + ny * p[a * 3 + 1] + nz * p[a * 3 + 2]);
+                final double area = length * 0.5;
+
+                for (int k = 0; k < 3; k++) {
+                    final int o = mGroupOf[mTriangles[t * 3 + k]] * QUADRIC_SIZE;
+                    quadrics[o] += area * nx * nx;
+                    quadrics[o + 1] += area * nx * ny;
+                    quadrics[o + 2] += area * nx * nz;
+                    quadrics[o + 3] += area * nx * d;
+                    quadrics[o + 4] += area * ny * ny;
+                    quadrics[o + 5] += area * ny * nz;
+                    quadrics[o + 6] += area * ny * d;
+                    quadrics[o + 7] += area * nz * nz;
+                    quadrics[o + 8] += area * nz * d;
+                    quadrics[o + 9] += area * d * d;
+                    quadrics[o + QUADRIC_WEIGHT] += area;
+                }
+            }
+            return quadrics;
+        }
+
+        // TOPOLOGY ===============================================================================================================
+
+        /**
+         * @return The triangles around each group, indexed by {@code offsets}.
+         */
+        private int[] buildGroupTriangles(int[] offsets) {
+            for (int i = 0; i < mTriangleCount * 3; i++) {
+                offsets[mGroupOf[mTriangles[i]] + 1]++;
+            }
+            for (int g = 0; g < mGroupCount; g++) {
+                offsets[g + 1] += offsets[g];
+            }
+
+            final int[] triangles = new int[mTriangleCount * 3];
+            final int[] fill = new int[mGroupCount];
+            for (int i = 0; i < mTriangleCount * 3; i++) {
+                final int g = mGroupOf[mTriangles[i]];
+                triangles[offsets[g] + fill[g]++] = i / 3;
+            }
+            return triangles;
+        }
+
+        /**
+         * @return The unique edges between groups, see {@link #edgeKey(int, int)}.
+         */
+        private long[] findEdges() {
+            final long[] edges = new long[mTriangleCount * 3];
+            for (int t = 0; t < mTriangleCount; t++) {
+                for (int k = 0; k < 3; k++) {
+                    edges[t * 3 + k] = edgeKey(mGroupOf[mTriangles[t * 3 + k]], mGroupOf[mTriangles[t * 3 + (k + 1) % 3]]);
+                }
+            }
+            Arrays.sort(edges);
+
+            int count = 0;
+            for (int i = 0; i < edges.length; i++) {
+                if (i == 0 || edges[i] != edges[i - 1]) {
+                    edges[count++] = edges[i];
+                }
+            }
+            return Arrays.copyOf(edges, count);
+        }
+
+        private static long edgeKey(int a, int b) {
+            return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        }
+
+        private static void normal(float[] p, int a, int b, int c, float[] out) {
+            final float e1x = p[b] - p[a];
+            final float e1y = p[b + 1] - p[a + 1];
+            final float e1z = p[b + 2] - p[a + 2];
+            final float e2x = p[c] - p[a];
+            final float e2y = p[c + 1] - p[a + 1];
+            final float e2z = p[c + 2] - p[a + 2];
+            out[0] = e1y * e2z - e1z * e2y;
+            out[1] = e1z * e2x - e1x * e2z;
+            out[2] = e1x * e2y - e1y * e2x;
+        }
+    }
+}
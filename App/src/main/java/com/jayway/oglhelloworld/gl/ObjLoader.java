@@ -0,0 +1,684 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.util.MeshUtil;
+import com.jayway.oglhelloworld.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import static android.opengl.GLES20.GL_TRIANGLES;
+
+/**
+ * Loads meshes from Wavefront OBJ files. The file is streamed through a small buffer and parsed byte by byte, so
+ * even large files are loaded without holding their text in memory or creating any objects per line.
+ * <p/>
+ * The geometry of the format is supported: positions, texture coordinates, normals and polygonal faces, which are
+ * triangulated as fans. Each distinct position, texture coordinate and normal combination used by the faces becomes
+ * one vertex, written by a {@link MeshBuilder} straight into a direct buffer, and the result is an indexed
+ * {@link android.opengl.GLES20#GL_TRIANGLES} object. Everything else, e.g. groups and materials, is ignored.
+ * <p/>
+ * Attributes the vertex type needs but the file lacks are filled in: texture coordinates with zeros and normals
+ * smoothed over the faces around each position. Texture coordinates are flipped vertically since OBJ has its origin
+ * in the bottom left corner while textures are uploaded top row first.
+ * <p/>
+ * Numbers are parsed by hand, which is much faster than {@link Float#parseFloat(String)} and gives the same
+ * result. The few numbers which can not be rounded correctly that way, e.g. with more than 17 significant digits
+ * or a large exponent, are handed to {@link Float#parseFloat(String)}.
+ */
+public class ObjLoader {
+    private static final Log LOG = new Log(ObjLoader.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final int NO_VERTEX = 0;
+    private static final int NONE = -1; // A corner without texture coordinate or normal
+
+    // Mantissas are kept below this so that one more digit never overflows a long
+    private static final long MAX_MANTISSA = 100000000000000000L;
+    private static final int MAX_EXPONENT = 10000;
+
+    // Mantissas up to this are exact as doubles
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // The powers of ten which are exact as doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ReadableByteChannel mChannel;
+    private final MeshBuilder mBuilder;
+    private final boolean mHasUVs;
+    private final boolean mHasNormals;
+
+    // Read buffer, the current line is between mPosition and mLineEnd
+    private byte[] mBuffer = new byte[BUFFER_SIZE];
+
+    // The current number, for the numbers which are handed to Float.parseFloat()
+    private final char[] mNumber = new char[64];
+    private int mPosition;
+    private int mLimit;
+    private int mLineEnd = -1;
+    private int mLineNumber;
+    private boolean mEndOfInput;
+
+    // The attributes as listed in the file
+    private float[] mPositions = new float[MIN_CAPACITY * 3];
+    private int mPositionCount;
+    private float[] mUVs = new float[MIN_CAPACITY * 2];
+    private int mUVCount;
+    private float[] mNormals = new float[MIN_CAPACITY * 3];
+    private int mNormalCount;
+
+    // The (position, uv, normal) indices of each vertex, found through an open addressing hash table
+    // holding (vertex index + 1)
+    private int[] mVertexKeys = new int[MIN_CAPACITY * 3];
+    private int mVertexCount;
+    private int[] mVertexTable = new int[MIN_CAPACITY * 2];
+    private int mVertexMask = mVertexTable.length - 1;
+    private boolean mMissingNormals;
+
+    private ObjLoader(ReadableByteChannel channel, VertexType vertexType) {
+        mChannel = channel;
+        mBuilder = new MeshBuilder(vertexType, MIN_CAPACITY, false);
+        mHasUVs = vertexType.getUVCount() > 0;
+        mHasNormals = vertexType.getNormalCount() > 0;
+    }
+
+    /**
+     * @see #load(String, ReadableByteChannel, VertexType)
+     */
+    public static GlObject load(String title, File file, VertexType vertexType) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            return load(title, in.getChannel(), vertexType);
+        } catch (IOException e) {
+            LOG.e("Failed loading " + title + ": " + e.getMessage());
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Loads a mesh from a stream, e.g. an asset. The stream is not closed.
+     *
+     * @see #load(String, ReadableByteChannel, VertexType)
+     */
+    public static GlObject load(String title, InputStream in, VertexType vertexType) {
+        return load(title, Channels.newChannel(in), vertexType);
+    }
+
+    /**
+     * Loads a mesh, reading the channel until its end. The channel is not closed.
+     *
+     * @param title      The title of the object.
+     * @param channel    The OBJ data.
+     * @param vertexType The vertex type of the object, which does not have to match the attributes in the file.
+     * @return The object, or {@code null} if the data could not be read or is not a valid OBJ mesh.
+     */
+    public static GlObject load(String title, ReadableByteChannel channel, VertexType vertexType) {
+        try {
+            return new ObjLoader(channel, vertexType).parse(title);
+        } catch (IOException e) {
+            LOG.e("Failed loading " + title + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private GlObject parse(String title) throws IOException {
+        while (nextLine()) {
+            parseLine();
+        }
+
+        if (mBuilder.getIndexCount() == 0) {
+            throw new IOException("No faces");
+        }
+
+        final GlObject glObject = mBuilder.build(title, GL_TRIANGLES);
+        if (mMissingNormals) {
+            computeNormals(glObject);
+        }
+
+        LOG.d("Loaded " + title + ": " + glObject.vCount + " vertices, " + glObject.iCount / 3 + " triangles");
+        return glObject;
+    }
+
+    // LINES ======================================================================================================================
+
+    private void parseLine() throws IOException {
+        if (!hasMoreTokens()) {
+            return;
+        }
+
+        final byte[] b = mBuffer;
+        final int p = mPosition;
+        switch (b[p]) {
+            case 'v':
+                if (isKeyword(1)) {
+                    mPosition += 1;
+                    addPosition();
+                } else if (b[p + 1] == 't' && isKeyword(2)) {
+                    mPosition += 2;
+                    addUV();
+                } else if (b[p + 1] == 'n' && isKeyword(2)) {
+                    mPosition += 2;
+                    addNormal();
+                }
+                break;
+            case 'f':
+                if (isKeyword(1)) {
+                    mPosition += 1;
+                    parseFace();
+                }
+                break;
+            default:
+                // Comments, groups, materials...
+                break;
+        }
+    }
+
+    private void addPosition() throws IOException {
+        if ((mPositionCount + 1) * 3 > mPositions.length) {
+            mPositions = Arrays.copyOf(mPositions, mPositions.length << 1);
+        }
+
+        // An optional w follows, which is ignored
+        final int i = mPositionCount * 3;
+        mPositions[i] = nextFloat();
+        mPositions[i + 1] = nextFloat();
+        mPositions[i + 2] = nextFloat();
+        mPositionCount++;
+    }
+
+    private void addUV() throws IOException {
+        if ((mUVCount + 1) * 2 > mUVs.length) {
+            mUVs = Arrays.copyOf(mUVs, mUVs.length << 1);
+        }
+
+        final int i = mUVCount * 2;
+        mUVs[i] = nextFloat();
+        mUVs[i + 1] = 1 - (hasMoreTokens() ? nextFloat() : 0);
+        mUVCount++;
+    }
+
+    private void addNormal() throws IOException {
+        if ((mNormalCount + 1) * 3 > mNormals.length) {
+            mNormals = Arrays.copyOf(mNormals, mNormals.length << 1);
+        }
+
+        final int i = mNormalCount * 3;
+        mNormals[i] = nextFloat();
+        mNormals[i + 1] = nextFloat();
+        mNormals[i + 2] = nextFloat();
+        mNormalCount++;
+    }
+
+    private void parseFace() throws IOException {
+        int first = NONE;
+        int previous = NONE;
+        int corners = 0;
+
+        while (hasMoreTokens()) {
+            final int vertex = parseCorner();
+            if (corners == 0) {
+                first = vertex;
+            } else if (corners >= 2) {
+                mBuilder.addTriangle(first, previous, vertex);
+            }
+            previous = vertex;
+            corners++;
+        }
+        // Faces with less than three corners have no area and are skipped
+    }
+
+    /**
+     * Parses one corner of a face, {@code v}, {@code v/vt}, {@code v//vn} or {@code v/vt/vn}.
+     *
+     * @return The vertex index.
+     */
+    private int parseCorner() throws IOException {
+        final byte[] b = mBuffer;
+
+        final int position = nextIndex(mPositionCount);
+        int uv = NONE;
+        int normal = NONE;
+
+        if (mPosition < mLineEnd && b[mPosition] == '/') {
+            mPosition++;
+            if (mPosition < mLineEnd && b[mPosition] != '/') {
+                uv = nextIndex(mUVCount);
+            }
+            if (mPosition < mLineEnd && b[mPosition] == '/') {
+                mPosition++;
+                normal = nextIndex(mNormalCount);
+            }
+        }
+
+        if (mPosition < mLineEnd && !isSpace(b[mPosition])) {
+            throw error("Malformed face");
+        }
+
+        // Attributes not in the vertex type must not split vertices
+        return getVertex(position, mHasUVs ? uv : NONE, mHasNormals ? normal : NONE);
+    }
+
+    // VERTICES ===================================================================================================================
+
+    private int getVertex(int position, int uv, int normal) {
+        final int[] keys = mVertexKeys;
+
+        int slot = hash(position, uv, normal) & mVertexMask;
+        int entry;
+        while ((entry = mVertexTable[slot]) != NO_VERTEX) {
+            final int key = (entry - 1) * 3;
+            if (keys[key] == position && keys[key + 1] == uv && keys[key + 2] == normal) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mVertexMask;
+        }
+
+        // A new combination
+        float u = 0;
+        float v = 0;
+        if (uv != NONE) {
+            u = mUVs[uv * 2];
+            v = mUVs[uv * 2 + 1];
+        }
+
+        float nx = 0;
+        float ny = 0;
+        float nz = 0;
+        if (normal != NONE) {
+            nx = mNormals[normal * 3];
+            ny = mNormals[normal * 3 + 1];
+            nz = mNormals[normal * 3 + 2];
+        } else if (mHasNormals) {
+            mMissingNormals = true;
+        }
+
+        final int p = position * 3;
+        final int vertex = mBuilder.addVertex(mPositions[p], mPositions[p + 1], mPositions[p + 2], u, v, nx, ny, nz);
+        mVertexTable[slot] = vertex + 1;
+
+        if ((vertex + 1) * 3 > mVertexKeys.length) {
+            mVertexKeys = Arrays.copyOf(mVertexKeys, mVertexKeys.length << 1);
+        }
+        final int key = vertex * 3;
+        mVertexKeys[key] = position;
+        mVertexKeys[key + 1] = uv;
+        mVertexKeys[key + 2] = normal;
+
+        mVertexCount = vertex + 1;
+        if (mVertexCount * 2 > mVertexTable.length) {
+            rehash(mVertexTable.length << 1);
+        }
+        return vertex;
+    }
+
+    private void rehash(int size) {
+        mVertexTable = new int[size];
+        mVertexMask = size - 1;
+
+        final int[] keys = mVertexKeys;
+        for (int i = 0; i < mVertexCount; i++) {
+            int slot = hash(keys[i * 3], keys[i * 3 + 1], keys[i * 3 + 2]) & mVertexMask;
+            while (mVertexTable[slot] != NO_VERTEX) {
+                slot = (slot + 1) & mVertexMask;
+            }
+            mVertexTable[slot] = i + 1;
+        }
+    }
+
+    private static int hash(int position, int uv, int normal) {
+        int hash = position * 0x9E3779B1 + uv * 0x85EBCA6B + normal * 0xC2B2AE35;
+
+        // Spread the bits since the table size is a power of two
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash;
+    }
+
+    /**
+     * Gives the vertices without a normal in the file the area weighted average of the faces around their position,
+     * so that the surface is smooth across texture seams.
+     */
+    private void computeNormals(GlObject glObject) {
+        final float[] positions = mPositions;
+        final int[] keys = mVertexKeys;
+        final float[] sums = new float[mPositionCount * 3];
+
+        for (int i = 0; i + 2 < glObject.iCount; i += 3) {
+            final int a = keys[MeshUtil.getIndex(glObject, i) * 3] * 3;
+            final int b = keys[MeshUtil.getIndex(glObject, i + 1) * 3] * 3;
+            final int c = keys[MeshUtil.getIndex(glObject, i + 2) * 3] * 3;
+
+            final float e1x = positions[b] - positions[a];
+            final float e1y = positions[b + 1] - positions[a + 1];
+            final float e1z = positions[b + 2] - positions[a + 2];
+            final float e2x = positions[c] - positions[a];
+            final float e2y = positions[c + 1] - positions[a + 1];
+            final float e2z = positions[c + 2] - positions[a + 2];
+
+            // Twice the area in length
+            final float nx = e1y * e2z - e1z * e2y;
+            final float ny = e1z * e2x - e1x * e2z;
+            final float nz = e1x * e2y - e1y * e2x;
+
+            addNormal(sums, a, nx, ny, nz);
+            addNormal(sums, b, nx, ny, nz);
+            addNormal(sums, c, nx, ny, nz);
+        }
+
+        final FloatBuffer vertices = glObject.vBuffer;
+        final int stride = glObject.vertexType.getDimension();
+        for (int i = 0; i < mVertexCount; i++) {
+            if (keys[i * 3 + 2] != NONE) {
+                continue;
+            }
+
+            final int sum = keys[i * 3] * 3;
+            final float length = (float) Math.sqrt(sums[sum] * sums[sum] + sums[sum + 1] * sums[sum + 1]
+                                                   + sums[sum + 2] * sums[sum + 2]);
+            if (length > 0) {
+                final int n = i * stride + glObject.vNormOffset;
+                vertices.put(n, sums[sum] / length);
+                vertices.put(n + 1, sums[sum + 1] / length);
+                vertices.put(n + 2, sums[sum + 2] / length);
+            }
+        }
+    }
+
+    private static void addNormal(float[] sums, int i, float nx, float ny, float nz) {
+        sums[i] += nx;
+        sums[i + 1] += ny;
+        sums[i + 2] += nz;
+    }
+
+    // TOKENS =====================================================================================================================
+
+    /**
+     * Moves to the next line, reading more data if needed.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean nextLine() throws IOException {
+        mPosition = mLineEnd + 1;
+
+        int scan = mPosition;
+        while (true) {
+            final byte[] b = mBuffer;
+            final int limit = mLimit;
+            for (; scan < limit; scan++) {
+                if (b[scan] == '\n') {
+                    mLineEnd = scan;
+                    mLineNumber++;
+                    return true;
+                }
+            }
+
+            if (mEndOfInput) {
+                // The last line need not end with a line break
+                if (mPosition < mLimit) {
+                    mLineEnd = mLimit;
+                    mLineNumber++;
+                    return true;
+                }
+                return false;
+            }
+
+            scan -= fill();
+        }
+    }
+
+    /**
+     * Moves the current line to the start of the buffer, growing it if the line does not fit, and reads more data
+     * after it.
+     *
+     * @return How far the data was moved.
+     */
+    private int fill() throws IOException {
+        final int shift = mPosition;
+        final int remaining = mLimit - mPosition;
+
+        if (remaining == mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, mBuffer.length << 1);
+        } else if (shift > 0) {
+            System.arraycopy(mBuffer, shift, mBuffer, 0, remaining);
+        }
+        mPosition = 0;
+        mLimit = remaining;
+
+        final int read = mChannel.read(ByteBuffer.wrap(mBuffer, mLimit, mBuffer.length - mLimit));
+        if (read < 0) {
+            mEndOfInput = true;
+        } else {
+            mLimit += read;
+        }
+        return shift;
+    }
+
+    /**
+     * Skips white space.
+     *
+     * @return true if there is another token on the current line.
+     */
+    private boolean hasMoreTokens() {
+        final byte[] b = mBuffer;
+        final int end = mLineEnd;
+        int p = mPosition;
+        while (p < end && isSpace(b[p])) {
+            p++;
+        }
+        mPosition = p;
+        return p < end;
+    }
+
+    /**
+     * @return true if the token at the current position is as long as a keyword.
+     */
+    private boolean isKeyword(int length) {
+        final int end = mPosition + length;
+        return end == mLineEnd || (end < mLineEnd && isSpace(mBuffer[end]));
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    /**
+     * Parses a decimal number such as {@code -12}, {@code 0.5} or {@code 1.5e-3}.
+     */
+    private float nextFloat() throws IOException {
+        if (!hasMoreTokens()) {
+            throw error("Expected a number");
+        }
+
+        final byte[] b = mBuffer;
+        final int end = mLineEnd;
+        final int start = mPosition;
+        int p = start;
+
+        boolean negative = false;
+        if (b[p] == '-' || b[p] == '+') {
+            negative = b[p] == '-';
+            p++;
+        }
+
+        // The digits as an integer, digits beyond the precision of a long only move the decimal point
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean truncated = false;
+
+        for (; p < end; p++, digits++) {
+            final int digit = b[p] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (mantissa < MAX_MANTISSA) {
+                mantissa = mantissa * 10 + digit;
+            } else {
+                exponent++;
+                truncated |= digit != 0;
+            }
+        }
+
+        if (p < end && b[p] == '.') {
+            p++;
+            for (; p < end; p++, digits++) {
+                final int digit = b[p] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (mantissa < MAX_MANTISSA) {
+                    mantissa = mantissa * 10 + digit;
+                    exponent--;
+                } else {
+                    truncated |= digit != 0;
+                }
+            }
+        }
+
+        if (digits == 0) {
+            throw error("Expected a number");
+        }
+
+        if (p < end && (b[p] == 'e' || b[p] == 'E')) {
+            p++;
+            boolean negativeExponent = false;
+            if (p < end && (b[p] == '-' || b[p] == '+')) {
+                negativeExponent = b[p] == '-';
+                p++;
+            }
+
+            int value = 0;
+            final int exponentStart = p;
+            for (; p < end; p++) {
+                final int digit = b[p] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (value < MAX_EXPONENT) {
+                    value = value * 10 + digit;
+                }
+            }
+            if (p == exponentStart) {
+                throw error("Expected an exponent");
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (p < end && !isSpace(b[p])) {
+            throw error("Malformed number");
+        }
+        mPosition = p;
+
+        if (mantissa == 0) {
+            return negative ? -0f : 0f;
+        }
+
+        // FAST PATH: One correctly rounded double operation on exact operands ====================================================
+        if (!truncated && mantissa <= MAX_EXACT_MANTISSA && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            double value = mantissa;
+            if (exponent > 0) {
+                value *= POWERS_OF_TEN[exponent];
+            } else if (exponent < 0) {
+                value /= POWERS_OF_TEN[-exponent];
+            }
+
+            // Rounding the double to a float again is only wrong when it lies exactly halfway between two floats,
+            // those halfway points are doubles themselves so the exact value can not be on their other side
+            final float rounded = (float) value;
+            if (value == rounded || value != ((double) rounded + Math.nextAfter(rounded, value)) / 2) {
+                return negative ? -rounded : rounded;
+            }
+        }
+
+        return parseFloat(start, p);
+    }
+
+    /**
+     * Parses a number the slow way, as a string.
+     */
+    private float parseFloat(int start, int end) throws IOException {
+        final int length = end - start;
+        if (length > mNumber.length) {
+            return Float.parseFloat(new String(mBuffer, start, length, "US-ASCII"));
+        }
+
+        for (int i = 0; i < length; i++) {
+            mNumber[i] = (char) mBuffer[start + i];
+        }
+        return Float.parseFloat(new String(mNumber, 0, length));
+    }
+
+    /**
+     * Parses an index, which counts from 1 or, if negative, backwards from the last element read so far.
+     *
+     * @param count The number of elements read so far.
+     * @return The index counting from 0.
+     */
+    private int nextIndex(int count) throws IOException {
+        final byte[] b = mBuffer;
+        final int end = mLineEnd;
+        int p = mPosition;
+
+        final boolean negative = p < end && b[p] == '-';
+        if (negative) {
+            p++;
+        }
+
+        int value = 0;
+        final int start = p;
+        for (; p < end; p++) {
+            final int digit = b[p] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value > count) {
+                throw error("Index out of range");
+            }
+            value = value * 10 + digit;
+        }
+        if (p == start) {
+            throw error("Expected an index");
+        }
+        mPosition = p;
+
+        final int index = negative ? count - value : value - 1;
+        if (value == 0 || index < 0 || index >= count) {
+            throw error("Index out of range");
+        }
+        return index;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " on line " + mLineNumber);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOG.w("Failed closing: " + e.getMessage());
+            }
+        }
+    }
+}
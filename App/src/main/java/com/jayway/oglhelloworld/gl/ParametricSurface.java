@@ -0,0 +1,145 @@
+package com.jayway.oglhelloworld.gl;
+
+/**
+ * A surface given by a function of two parameters, tessellated by {@link SurfaceGenerator}.
+ * <p/>
+ * The parameters u and v run over a rectangular domain. The generator passes the cosine and sine of both, looked up
+ * in tables computed once per column and row, so surfaces which use the parameters as angles do not have to compute
+ * any trigonometry per vertex.
+ * <p/>
+ * Notice: The generator evaluates the surface from several threads at once, so {@link #evaluate} must not modify
+ * any state.
+ */
+public abstract class ParametricSurface {
+    public final float uMin;
+    public final float uMax;
+    public final float vMin;
+    public final float vMax;
+
+    /**
+     * Triangles wind counter-clockwise, i.e. face the viewer, when the cross product of the derivatives along u
+     * and v points in the direction of the normal.
+     */
+    protected ParametricSurface(float uMin, float uMax, float vMin, float vMax) {
+        this.uMin = uMin;
+        this.uMax = uMax;
+        this.vMin = vMin;
+        this.vMax = vMax;
+    }
+
+    /**
+     * Evaluates the surface at one point.
+     *
+     * @param out Position x, y and z followed by the normal, which does not have to be of unit length.
+     */
+    public abstract void evaluate(float u, float cosU, float sinU, float v, float cosV, float sinV, float[] out);
+
+    // Surfaces
+
+    /**
+     * A torus around the z-axis, u goes around the ring and v around the tube.
+     *
+     * @param R The distance from the center to the center of the tube.
+     * @param r The radius of the tube.
+     */
+    public static ParametricSurface createTorus(final float R, final float r) {
+        return new ParametricSurface(0, (float) (2 * Math.PI), 0, (float) (2 * Math.PI)) {
+            @Override
+            public void evaluate(float u, float cosU, float sinU, float v, float cosV, float sinV, float[] out) {
+                final float ring = R + r * cosV;
+                out[0] = ring * cosU;
+                out[1] = ring * sinU;
+                out[2] = r * sinV;
+                out[3] = cosV * cosU;
+                out[4] = cosV * sinU;
+                out[5] = sinV;
+            }
+        };
+    }
+
+    /**
+     * A sphere around the origin, u is the longitude and v the latitude from the south to the north pole.
+     */
+    public static ParametricSurface createSphere(final float radius) {
+        return new ParametricSurface(0, (float) (2 * Math.PI), (float) (-Math.PI / 2), (float) (Math.PI / 2)) {
+            @Override
+            public void evaluate(float u, float cosU, float sinU, float v, float cosV, float sinV, float[] out) {
+                out[3] = cosV * cosU;
+                out[4] = cosV * sinU;
+                out[5] = sinV;
+                out[0] = radius * out[3];
+                out[1] = radius * out[4];
+                out[2] = radius * out[5];
+            }
+        };
+    }
+
+    /**
+     * An open cylinder around the z-axis, centered at the origin. u goes around the axis and v from the bottom, at 0,
+     * to the top, at 1.
+     */
+    public static ParametricSurface createCylinder(final float radius, final float height) {
+        return new ParametricSurface(0, (float) (2 * Math.PI), 0, 1) {
+            @Override
+            public void evaluate(float u, float cosU, float sinU, float v, float cosV, float sinV, float[] out) {
+                out[0] = radius * cosU;
+                out[1] = radius * sinU;
+                out[2] = height * (v - 0.5f);
+                out[3] = cosU;
+                out[4] = sinU;
+                out[5] = 0;
+            }
+        };
+    }
+
+    /**
+     * An open cone around the z-axis, with its base at the origin. u goes around the axis and v from the base, at
+     * 0, to the apex, at 1.
+     */
+    public static ParametricSurface createCone(final float radius, final float height) {
+        return new ParametricSurface(0, (float) (2 * Math.PI), 0, 1) {
+            @Override
+            public void evaluate(float u, float cosU, float sinU, float v, float cosV, float sinV, float[] out) {
+                final float ring = radius * (1 - v);
+                out[0] = ring * cosU;
+                out[1] = ring * sinU;
+                out[2] = height * v;
+                out[3] = height * cosU;
+                out[4] = height * sinU;
+                out[5] = radius;
+            }
+        };
+    }
+
+    /**
+     * A superellipsoid around the origin, u is the longitude and v the latitude.
+     *
+     * @param a  The radius along the x-axis.
+     * @param b  The radius along the y-axis.
+     * @param c  The radius along the z-axis.
+     * @param e1 The squareness along the latitude, 1 is round, towards 0 is square, 2 is a double cone.
+     * @param e2 The squareness along the longitude.
+     */
+    public static ParametricSurface createSuperquadric(final float a, final float b, final float c,
+                                                       final float e1, final float e2) {
+        return new ParametricSurface((float) -Math.PI, (float) Math.PI, (float) (-Math.PI / 2), (float) (Math.PI / 2)) {
+            @Override
+            public void evaluate(float u, float cosU, float sinU, float v, float cosV, float sinV, float[] out) {
+                final float cv = signedPow(cosV, e1);
+                out[0] = a * cv * signedPow(cosU, e2);
+                out[1] = b * cv * signedPow(sinU, e2);
+                out[2] = c * signedPow(sinV, e1);
+
+                final float ncv = signedPow(cosV, 2 - e1);
+                out[3] = ncv * signedPow(cosU, 2 - e2) / a;
+                out[4] = ncv * signedPow(sinU, 2 - e2) / b;
+                out[5] = signedPow(sinV, 2 - e1) / c;
+            }
+        };
+    }
+
+    private static float signedPow(float value, float exponent) {
+        final float magnitude = (float) Math.pow(Math.abs(value), exponent);
+        return value < 0 ? -magnitude : magnitude;
+    }
+}
@@ -0,0 +1,517 @@
+package com.jayway.oglhelloworld.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static android.opengl.GLES20.GL_EXTENSIONS;
+import static android.opengl.GLES20.GL_NO_ERROR;
+import static android.opengl.GLES20.GL_TRUE;
+
+/**
+ * {@link GlBackend} stand-in which does not draw anything. It counts every call and optionally logs it with
+ * its arguments, which makes it possible to run and time the render path without a GPU, e.g. on the JVM.
+ * <p/>
+ * Calls which create objects return unique handles, compile and link always succeed and every uniform or
+ * attribute name gets its own location.
+ */
+public class RecordingGlBackend implements GlBackend {
+
+    /**
+     * One constant per {@link GlBackend} method.
+     */
+    public enum Call {
+        CLEAR_COLOR,
+        CLEAR,
+        ENABLE,
+        DISABLE,
+        VIEWPORT,
+        DEPTH_FUNC,
+        DEPTH_MASK,
+        BLEND_FUNC,
+        GET_ERROR,
+        GET_STRING,
+        CREATE_SHADER,
+        SHADER_SOURCE,
+        COMPILE_SHADER,
+        GET_SHADER_IV,
+        GET_SHADER_INFO_LOG,
+        DELETE_SHADER,
+        CREATE_PROGRAM,
+        ATTACH_SHADER,
+        LINK_PROGRAM,
+        GET_PROGRAM_IV,
+        GET_PROGRAM_INFO_LOG,
+        DELETE_PROGRAM,
+        USE_PROGRAM,
+        GET_UNIFORM_LOCATION,
+        GET_ATTRIB_LOCATION,
+        UNIFORM_MATRIX_3FV,
+        UNIFORM_MATRIX_4FV,
+        ENABLE_VERTEX_ATTRIB_ARRAY,
+        DISABLE_VERTEX_ATTRIB_ARRAY,
+        VERTEX_ATTRIB_POINTER,
+        GEN_TEXTURES,
+        DELETE_TEXTURES,
+        ACTIVE_TEXTURE,
+        BIND_TEXTURE,
+        TEX_PARAMETER_F,
+        TEX_IMAGE_2D,
+        GEN_BUFFERS,
+        DELETE_BUFFERS,
+        BIND_BUFFER,
+        BUFFER_DATA,
+        DRAW_ARRAYS,
+        DRAW_ELEMENTS
+    }
+
+    private final int[] mCounts = new int[Call.values().length];
+
+    private boolean mLogging;
+    private final List<String> mLog = new ArrayList<>();
+
+    private int mNextHandle = 1;
+    private final Map<String, Integer> mLocations = new HashMap<>();
+
+    private String mExtensions = "";
+
+    /**
+     * @param logging Whether calls should be logged with their arguments, see {@link #getLog()}.
+     */
+    public RecordingGlBackend(boolean logging) {
+        mLogging = logging;
+    }
+
+    public void setLogging(boolean logging) {
+        mLogging = logging;
+    }
+
+    /**
+     * @param extensions The space separated extensions returned for {@link android.opengl.GLES20#GL_EXTENSIONS}.
+     */
+    public void setExtensions(String extensions) {
+        mExtensions = extensions;
+    }
+
+    public int getCount(Call call) {
+        return mCounts[call.ordinal()];
+    }
+
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : mCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return The logged calls, one entry per call e.g. {@code glUseProgram(1)}.
+     */
+    public List<String> getLog() {
+        return mLog;
+    }
+
+    /**
+     * Resets the counters and the log, the handles and locations handed out so far remain valid.
+     */
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mLog.clear();
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        count(Call.CLEAR_COLOR);
+        if (mLogging) {
+            log("glClearColor", red, green, blue, alpha);
+        }
+    }
+
+    @Override
+    public void glClear(int mask) {
+        count(Call.CLEAR);
+        if (mLogging) {
+            log("glClear", mask);
+        }
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        count(Call.ENABLE);
+        if (mLogging) {
+            log("glEnable", cap);
+        }
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        count(Call.DISABLE);
+        if (mLogging) {
+            log("glDisable", cap);
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        count(Call.VIEWPORT);
+        if (mLogging) {
+            log("glViewport", x, y, width, height);
+        }
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+        count(Call.DEPTH_FUNC);
+        if (mLogging) {
+            log("glDepthFunc", func);
+        }
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        count(Call.DEPTH_MASK);
+        if (mLogging) {
+            log("glDepthMask", flag);
+        }
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        count(Call.BLEND_FUNC);
+        if (mLogging) {
+            log("glBlendFunc", sfactor, dfactor);
+        }
+    }
+
+    @Override
+    public int glGetError() {
+        count(Call.GET_ERROR);
+        if (mLogging) {
+            log("glGetError");
+        }
+        return GL_NO_ERROR;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        count(Call.GET_STRING);
+        if (mLogging) {
+            log("glGetString", name);
+        }
+        return name == GL_EXTENSIONS ? mExtensions : "";
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        count(Call.CREATE_SHADER);
+        if (mLogging) {
+            log("glCreateShader", type);
+        }
+        return nextHandle();
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        count(Call.SHADER_SOURCE);
+        if (mLogging) {
+            log("glShaderSource", shader, source);
+        }
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        count(Call.COMPILE_SHADER);
+        if (mLogging) {
+            log("glCompileShader", shader);
+        }
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        count(Call.GET_SHADER_IV);
+        params[offset] = GL_TRUE;
+        if (mLogging) {
+            log("glGetShaderiv", shader, pname, params, offset);
+        }
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        count(Call.GET_SHADER_INFO_LOG);
+        if (mLogging) {
+            log("glGetShaderInfoLog", shader);
+        }
+        return "";
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        count(Call.DELETE_SHADER);
+        if (mLogging) {
+            log("glDeleteShader", shader);
+        }
+    }
+
+    @Override
+    public int glCreateProgram() {
+        count(Call.CREATE_PROGRAM);
+        if (mLogging) {
+            log("glCreateProgram");
+        }
+        return nextHandle();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        count(Call.ATTACH_SHADER);
+        if (mLogging) {
+            log("glAttachShader", program, shader);
+        }
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        count(Call.LINK_PROGRAM);
+        if (mLogging) {
+            log("glLinkProgram", program);
+        }
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        count(Call.GET_PROGRAM_IV);
+        params[offset] = GL_TRUE;
+        if (mLogging) {
+            log("glGetProgramiv", program, pname, params, offset);
+        }
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        count(Call.GET_PROGRAM_INFO_LOG);
+        if (mLogging) {
+            log("glGetProgramInfoLog", program);
+        }
+        return "";
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        count(Call.DELETE_PROGRAM);
+        if (mLogging) {
+            log("glDeleteProgram", program);
+        }
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        count(Call.USE_PROGRAM);
+        if (mLogging) {
+            log("glUseProgram", program);
+        }
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        count(Call.GET_UNIFORM_LOCATION);
+        if (mLogging) {
+            log("glGetUniformLocation", program, name);
+        }
+        return getLocation(name);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        count(Call.GET_ATTRIB_LOCATION);
+        if (mLogging) {
+            log("glGetAttribLocation", program, name);
+        }
+        return getLocation(name);
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+        count(Call.UNIFORM_MATRIX_3FV);
+        if (mLogging) {
+            log("glUniformMatrix3fv", location, count, transpose, value, offset);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        count(Call.UNIFORM_MATRIX_4FV);
+        if (mLogging) {
+            log("glUniformMatrix4fv", location, count, transpose, value, offset);
+        }
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        count(Call.ENABLE_VERTEX_ATTRIB_ARRAY);
+        if (mLogging) {
+            log("glEnableVertexAttribArray", index);
+        }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        count(Call.DISABLE_VERTEX_ATTRIB_ARRAY);
+        if (mLogging) {
+            log("glDisableVertexAttribArray", index);
+        }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        count(Call.VERTEX_ATTRIB_POINTER);
+        if (mLogging) {
+            log("glVertexAttribPointer", index, size, type, normalized, stride, offset);
+        }
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        count(Call.GEN_TEXTURES);
+        generateHandles(n, textures, offset);
+        if (mLogging) {
+            log("glGenTextures", n, textures, offset);
+        }
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        count(Call.DELETE_TEXTURES);
+        if (mLogging) {
+            log("glDeleteTextures", n, textures, offset);
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        count(Call.ACTIVE_TEXTURE);
+        if (mLogging) {
+            log("glActiveTexture", texture);
+        }
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        count(Call.BIND_TEXTURE);
+        if (mLogging) {
+            log("glBindTexture", target, texture);
+        }
+    }
+
+    @Override
+    public void glTexParameterf(int target, int pname, float param) {
+        count(Call.TEX_PARAMETER_F);
+        if (mLogging) {
+            log("glTexParameterf", target, pname, param);
+        }
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        count(Call.TEX_IMAGE_2D);
+        if (mLogging) {
+            log("texImage2D", target, level, bitmap, border);
+        }
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        count(Call.GEN_BUFFERS);
+        generateHandles(n, buffers, offset);
+        if (mLogging) {
+            log("glGenBuffers", n, buffers, offset);
+        }
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        count(Call.DELETE_BUFFERS);
+        if (mLogging) {
+            log("glDeleteBuffers", n, buffers, offset);
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        count(Call.BIND_BUFFER);
+        if (mLogging) {
+            log("glBindBuffer", target, buffer);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        count(Call.BUFFER_DATA);
+        if (mLogging) {
+            log("glBufferData", target, size, data, usage);
+        }
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        count(Call.DRAW_ARRAYS);
+        if (mLogging) {
+            log("glDrawArrays", mode, first, count);
+        }
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        count(Call.DRAW_ELEMENTS);
+        if (mLogging) {
+            log("glDrawElements", mode, count, type, offset);
+        }
+    }
+
+    private void count(Call call) {
+        mCounts[call.ordinal()]++;
+    }
+
+    private void log(String name, Object... args) {
+        final StringBuilder sb = new StringBuilder(name).append('(');
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            final Object arg = args[i];
+            if (arg instanceof float[]) {
+                sb.append(Arrays.toString((float[]) arg));
+            } else if (arg instanceof int[]) {
+                sb.append(Arrays.toString((int[]) arg));
+            } else {
+                sb.append(arg);
+            }
+        }
+        mLog.add(sb.append(')').toString());
+    }
+
+    private int nextHandle() {
+        return mNextHandle++;
+    }
+
+    private void generateHandles(int n, int[] handles, int offset) {
+        for (int i = 0; i < n; i++) {
+            handles[offset + i] = nextHandle();
+        }
+    }
+
+    private int getLocation(String name) {
+        Integer location = mLocations.get(name);
+        if (location == null) {
+            location = mLocations.size();
+            mLocations.put(name, location);
+        }
+        return location;
+    }
+}
@@ -0,0 +1,329 @@
+package com.jayway.oglhelloworld.gl;
+
+/**
+ * Collects the draws of a frame and orders them by a 64 bit sort key, so that draws sharing state are submitted
+ * after each other and opaque geometry is drawn front-to-back.
+ * <p/>
+ * The key is laid out from the most to the least significant bit as:
+ * <pre>
+ * | unused (1) | program (11) | texture (12) | vertex layout (8) | depth (24) | unused (8) |
+ * </pre>
+ * The sign bit is kept clear so that keys compare the same signed and unsigned.
+ * Only the low bits of the program and texture handles are used in the key, two handles sharing them are still
+ * drawn correctly but might not end up next to each other.
+ * <p/>
+ * The keys are sorted with a least significant digit radix sort on preallocated arrays, so a frame does not
+ * allocate unless the queue has to grow. Small queues are insertion sorted instead.
+ * <p/>
+ * Notice: The queue is not thread safe and is meant to be filled and drained on the GL thread.
+ */
+public class RenderQueue {
+    private static final int PROGRAM_BITS = 11;
+    private static final int TEXTURE_BITS = 12;
+    private static final int LAYOUT_BITS  = 8;
+    private static final int DEPTH_BITS   = 24;
+
+    private static final int DEPTH_SHIFT   = 8;
+    private static final int LAYOUT_SHIFT  = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int TEXTURE_SHIFT = LAYOUT_SHIFT + LAYOUT_BITS;
+    private static final int PROGRAM_SHIFT = TEXTURE_SHIFT + TEXTURE_BITS;
+
+    private static final int DEPTH_MAX = (1 << DEPTH_BITS) - 1;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX      = 1 << RADIX_BITS;
+    private static final int RADIX_MASK = RADIX - 1;
+    private static final int RADIX_PASSES = Long.SIZE / RADIX_BITS;
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // Submitted draws, indexed in submission order
+    private GlObject[] mObjects;
+    private int[] mPrograms;
+    private int[] mTextures;
+    private long[] mKeys;
+
+    // Submission indices in draw order and the radix sort scratch space
+    private int[] mOrder;
+    private int[] mOrderScratch;
+    private long[] mSortKeys;
+    private long[] mSortKeysScratch;
+    private final int[] mHistograms = new int[RADIX_PASSES * RADIX];
+
+    private int mSize;
+
+    // Statistics of the last sort
+    private int mStateSwitchCount;
+    private long mSortTimeNanos;
+
+    public RenderQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of draws the queue can hold before it has to grow.
+     */
+    public RenderQueue(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Removes all draws, must be called at the start of each frame.
+     */
+    public void clear() {
+        // Release the references so that removed objects can be collected
+        for (int i = 0; i < mSize; i++) {
+            mObjects[i] = null;
+        }
+        mSize = 0;
+    }
+
+    /**
+     * Adds a draw to the queue.
+     *
+     * @param glObject The object to draw.
+     * @param program  The shader program to draw it with.
+     * @param texture  The texture to draw it with.
+     * @param depth    The normalized view depth of the object, where 0 is the near plane and 1 the far plane.
+     *                 Values outside of the range are clamped.
+     */
+    public void submit(GlObject glObject, int program, int texture, float depth) {
+        if (mSize == mObjects.length) {
+            grow();
+        }
+
+        final float clamped = depth < 0f ? 0f : (depth > 1f ? 1f : depth);
+
+        mObjects[mSize] = glObject;
+        mPrograms[mSize] = program;
+        mTextures[mSize] = texture;
+        mKeys[mSize] = createSortKey(program, texture, glObject.vertexType.getId(), (int) (clamped * DEPTH_MAX));
+        mSize++;
+    }
+
+    /**
+     * Orders the submitted draws by their sort key, after this {@link #getObject(int)} and friends return the
+     * draws in sorted order.
+     */
+    public void sort() {
+        final long start = System.nanoTime();
+
+        final int size = mSize;
+        for (int i = 0; i < size; i++) {
+            mOrder[i] = i;
+        }
+
+        // The keys are sorted in copies, so that they stay indexed by submission
+        System.arraycopy(mKeys, 0, mSortKeys, 0, size);
+
+        if (size <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(mSortKeys, mOrder, size);
+        } else {
+            radixSort(size);
+        }
+
+        mSortTimeNanos = System.nanoTime() - start;
+        mStateSwitchCount = countStateSwitches();
+    }
+
+    /**
+     * @return The number of draws in the queue.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param i The position in draw order.
+     * @return The object to draw.
+     */
+    public GlObject getObject(int i) {
+        return mObjects[mOrder[i]];
+    }
+
+    /**
+     * @param i The position in draw order.
+     * @return The shader program to draw with.
+     */
+    public int getProgram(int i) {
+        return mPrograms[mOrder[i]];
+    }
+
+    /**
+     * @param i The position in draw order.
+     * @return The texture to draw with.
+     */
+    public int getTexture(int i) {
+        return mTextures[mOrder[i]];
+    }
+
+    /**
+     * @return The number of draws in the last sorted frame.
+     */
+    public int getDrawCount() {
+        return mSize;
+    }
+
+    /**
+     * The number of program, texture and vertex buffer changes needed to draw the queue in sorted order.
+     * The first draw counts as a change of each of them.
+     *
+     * @return The number of state switches in the last sorted frame.
+     */
+    public int getStateSwitchCount() {
+        return mStateSwitchCount;
+    }
+
+    /**
+     * @return The time the last call to {@link #sort()} took, in nanoseconds.
+     */
+    public long getSortTimeNanos() {
+        return mSortTimeNanos;
+    }
+
+    /**
+     * @param depth The quantized depth, between 0 and 2^24 - 1.
+     * @return The sort key of a draw.
+     */
+    static long createSortKey(int program, int texture, int layout, int depth) {
+        return ((long) (program & ((1 << PROGRAM_BITS) - 1)) << PROGRAM_SHIFT)
+               | ((long) (texture & ((1 << TEXTURE_BITS) - 1)) << TEXTURE_SHIFT)
+               | ((long) (layout & ((1 << LAYOUT_BITS) - 1)) << LAYOUT_SHIFT)
+               | ((long) (depth & DEPTH_MAX) << DEPTH_SHIFT);
+    }
+
+    /**
+     * Least significant digit radix sort of {@link #mSortKeys}, carrying {@link #mOrder} along.
+     */
+    private void radixSort(int size) {
+        long[] keys = mSortKeys;
+        long[] keysOut = mSortKeysScratch;
+        int[] order = mOrder;
+        int[] orderOut = mOrderScratch;
+
+        // Count the digits of every pass in one go
+        final int[] histograms = mHistograms;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            final long key = keys[i];
+            for (int pass = 0; pass < RADIX_PASSES; pass++) {
+                histograms[(pass << RADIX_BITS) + ((int) (key >>> (pass * RADIX_BITS)) & RADIX_MASK)]++;
+            }
+        }
+
+        for (int pass = 0; pass < RADIX_PASSES; pass++) {
+            final int shift = pass * RADIX_BITS;
+            final int base = pass << RADIX_BITS;
+
+            // Every key has the same digit, the pass would not change the order
+            if (histograms[base + ((int) (keys[0] >>> shift) & RADIX_MASK)] == size) {
+                continue;
+            }
+
+            // Turn the histogram into start positions
+            int position = 0;
+            for (int digit = base; digit < base + RADIX; digit++) {
+                final int count = histograms[digit];
+                histograms[digit] = position;
+                position += count;
+            }
+
+            for (int i = 0; i < size; i++) {
+                final long key = keys[i];
+                final int target = histograms[base + ((int) (key >>> shift) & RADIX_MASK)]++;
+                keysOut[target] = key;
+                orderOut[target] = order[i];
+            }
+
+            long[] swapKeys = keys;
+            keys = keysOut;
+            keysOut = swapKeys;
+
+            int[] swapOrder = order;
+            order = orderOut;
+            orderOut = swapOrder;
+        }
+
+        mSortKeys = keys;
+        mSortKeysScratch = keysOut;
+        mOrder = order;
+        mOrderScratch = orderOut;
+    }
+
+    /**
+     * Stable sort for small queues, where clearing and scanning the radix histograms costs more than the sort.
+     * The keys never have the sign bit set, so signed comparison gives the same order as the radix sort.
+     */
+    private static void insertionSort(long[] keys, int[] order, int size) {
+        for (int i = 1; i < size; i++) {
+            final long key = keys[i];
+            final int index = order[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            order[j + 1] = index;
+        }
+    }
+
+    private int countStateSwitches() {
+        int switches = 0;
+        int program = 0;
+        int texture = 0;
+        GlObject previous = null;
+
+        for (int i = 0; i < mSize; i++) {
+            final int index = mOrder[i];
+            final GlObject glObject = mObjects[index];
+
+            if (i == 0 || mPrograms[index] != program) {
+                program = mPrograms[index];
+                switches++;
+            }
+            if (i == 0 || mTextures[index] != texture) {
+                texture = mTextures[index];
+                switches++;
+            }
+            if (previous == null || previous.vBuffer != glObject.vBuffer
+                    || previous.vPackedBuffer != glObject.vPackedBuffer) {
+                switches++;
+            }
+            previous = glObject;
+        }
+
+        return switches;
+    }
+
+    private void grow() {
+        final int size = mSize;
+        final GlObject[] objects = mObjects;
+        final int[] programs = mPrograms;
+        final int[] textures = mTextures;
+        final long[] keys = mKeys;
+
+        allocate(objects.length * 2);
+
+        System.arraycopy(objects, 0, mObjects, 0, size);
+        System.arraycopy(programs, 0, mPrograms, 0, size);
+        System.arraycopy(textures, 0, mTextures, 0, size);
+        System.arraycopy(keys, 0, mKeys, 0, size);
+    }
+
+    private void allocate(int capacity) {
+        mObjects = new GlObject[capacity];
+        mPrograms = new int[capacity];
+        mTextures = new int[capacity];
+        mKeys = new long[capacity];
+        mSortKeys = new long[capacity];
+        mSortKeysScratch = new long[capacity];
+        mOrder = new int[capacity];
+        mOrderScratch = new int[capacity];
+    }
+}
@@ -0,0 +1,592 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.frame.Profiler;
+import com.jayway.oglhelloworld.gl.math.Mat3;
+import com.jayway.oglhelloworld.gl.math.Mat4;
+import com.jayway.oglhelloworld.gl.scene.SceneGraph;
+import com.jayway.oglhelloworld.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static android.opengl.GLES20.GL_ARRAY_BUFFER;
+import static android.opengl.GLES20.GL_COLOR_BUFFER_BIT;
+import static android.opengl.GLES20.GL_DEPTH_BUFFER_BIT;
+import static android.opengl.GLES20.GL_DEPTH_TEST;
+import static android.opengl.GLES20.GL_ELEMENT_ARRAY_BUFFER;
+import static android.opengl.GLES20.GL_EXTENSIONS;
+import static android.opengl.GLES20.GL_STATIC_DRAW;
+import static android.opengl.GLES20.GL_TEXTURE0;
+import static android.opengl.GLES20.GL_TEXTURE_2D;
+
+/**
+ * Draws the {@link GlObject}s of a scene through a {@link GlBackend}.
+ * <p/>
+ * Each frame the objects are submitted to a {@link RenderQueue}, which orders them so that draws sharing state
+ * follow each other and opaque geometry is drawn front-to-back. Objects whose {@link Bounds} are outside of the view
+ * frustum are culled before they are submitted. Combined with a {@link StateCachingGlBackend} the
+ * state shared between consecutive draws is only set once.
+ * <p/>
+ * The model, view and projection matrices are versioned. The matrices derived from them per object are only
+ * recomputed, and their uniforms only uploaded, when one of the versions changed, see
+ * {@link GlObject#invalidateModelMatrix()}.
+ * <p/>
+ * This is the platform independent part of {@link com.jayway.oglhelloworld.main.GLES20Renderer}, which
+ * compiles the shaders and loads the textures. Since all GL calls go through the backend the render path can
+ * also be run without a GPU, e.g. with a {@link RecordingGlBackend}.
+ */
+public class SceneRenderer {
+    private static final Log LOG = new Log(SceneRenderer.class);
+
+    public static final int NO_PROGRAM = 0;
+
+    // Constants
+    public static final float[] CLEAR_COLOR = {0.5f, 0.5f, 0.5f, 1f}; // 50% Grey
+
+    // Camera/View related
+    private static final float NEAR_PLANE    = .1f;
+    private static final float FAR_PLANE     = 100f;
+    private static final float FIELD_OF_VIEW = 45;
+
+    private static final float[] UP     = {0f, 1f, 0f};
+    private static final float[] EYE    = {0f, 0f, 5f};
+    private static final float[] CENTER = {0f, 0f, 0f};
+
+    // Shader source uniform/attribute variable names
+    public static final String U_MVP_MATRIX         = "mvp_matrix";
+    public static final String U_NORMAL_MATRIX      = "normal_matrix";
+    public static final String U_TEXTURE_01         = "texture01";
+
+    public static final String A_POSITION           = "a_position";
+    public static final String A_TEXTURE_COORDINATE = "a_texcoord";
+    public static final String A_NORMAL             = "a_normal";
+
+    private final GlBackend mGl;
+
+    // Matrices
+    private float[] mProjectionMatrix = new float[16];
+    private float[] mViewMatrix = new float[16];
+    private float[] mViewProjectionMatrix = new float[16];
+
+    // Versions of the camera matrices, bumped whenever they are set
+    private int mViewVersion;
+    private int mProjectionVersion;
+    private boolean mViewProjectionDirty = true;
+
+    // The derived matrices last uploaded to the uniforms, the uploads are skipped while they are unchanged
+    private MatrixCache mUploadedMatrices;
+    private int mUploadedVersion;
+    private int mUploadedProgram = NO_PROGRAM;
+
+    private final Frustum mFrustum = new Frustum();
+
+    // Shader program
+    private int mShaderProgram = NO_PROGRAM;
+
+    // Shader Handles
+    private int mMVPMatrixHandle;
+    private int mNormalMatrixHandle;
+    private int mPositionHandle;
+    private int mUVHandle;
+    private int mNormalHandle;
+
+    // Texture ids
+    private int mTextureId = -1;
+
+    // Whether vertex types with half float attributes can be drawn
+    private boolean mHalfFloatSupported;
+
+    // Viewport height in pixels, for the screen size of objects when picking levels of detail
+    private int mViewportHeight;
+
+    // Scene
+    private final ArrayList<GlObject> mScene = new ArrayList<>();
+    private SceneGraph mSceneGraph;
+    private final RenderQueue mRenderQueue = new RenderQueue();
+
+    // Statistics of the last frame
+    private int mVisibleCount;
+    private int mCulledCount;
+    private int mMatrixUpdateCount;
+    private int mUniformUploadCount;
+
+    public SceneRenderer(GlBackend gl) {
+        mGl = gl;
+
+        Mat4.setIdentity(mProjectionMatrix, 0);
+        Mat4.setIdentity(mViewMatrix, 0);
+    }
+
+    public GlBackend getBackend() {
+        return mGl;
+    }
+
+    /**
+     * Sets up the global GL state for a new context.
+     *
+     * @param glObjects The objects that might have been uploaded to a previous context.
+     */
+    public void onSurfaceCreated(Iterable<GlObject> glObjects) {
+        // Setup OpenGL
+        mGl.glClearColor(CLEAR_COLOR[0], CLEAR_COLOR[1], CLEAR_COLOR[2], CLEAR_COLOR[3]);
+        mGl.glEnable(GL_DEPTH_TEST);
+
+        final String extensions = mGl.glGetString(GL_EXTENSIONS);
+        mHalfFloatSupported = extensions != null && extensions.contains(VertexType.EXTENSION_HALF_FLOAT);
+
+        // A new context means that previously uploaded buffers are gone
+        for (GlObject glObject : glObjects) {
+            invalidateBuffers(glObject);
+
+            final LodChain lodChain = glObject.getLodChain();
+            if (lodChain != null) {
+                for (int level = 0; level < lodChain.getLevelCount(); level++) {
+                    invalidateBuffers(lodChain.getLevel(level));
+                }
+            }
+        }
+
+        Mat4.setIdentity(mProjectionMatrix, 0);
+        Mat4.setIdentity(mViewMatrix, 0);
+        mViewVersion++;
+        mProjectionVersion++;
+        mViewProjectionDirty = true;
+
+        // The uniforms of the new context have not been set
+        mUploadedMatrices = null;
+
+        mShaderProgram = NO_PROGRAM;
+        mTextureId = -1;
+    }
+
+    private static void invalidateBuffers(GlObject glObject) {
+        glObject.invalidateBuffers();
+        if (glObject.mFallback != null) {
+            glObject.mFallback.invalidateBuffers();
+        }
+    }
+
+    /**
+     * Sets the linked shader program to draw with and binds its qualifiers.
+     */
+    public void setShaderProgram(int program, final boolean useTextures, final boolean useNormals) {
+        mShaderProgram = program;
+
+        // Bind Qualifiers to shader program
+        getQualifierHandles(program, useTextures, useNormals);
+
+        // Setup view matrix
+        Mat4.setLookAt(mViewMatrix, 0,
+                       EYE[0],    EYE[1],    EYE[2],
+                       CENTER[0], CENTER[1], CENTER[2],
+                       UP[0],     UP[1],     UP[2]);
+        mViewVersion++;
+        mViewProjectionDirty = true;
+
+        // The uniform locations belong to the program
+        mUploadedMatrices = null;
+    }
+
+    public void setTexture(int textureId) {
+        mTextureId = textureId;
+    }
+
+    public void onSurfaceChanged(int width, int height) {
+        mGl.glViewport(0, 0, width, height);
+        mViewportHeight = height;
+
+        // Setup projection
+        final float aspectRatio = (float) width / height;
+        Mat4.setPerspective(mProjectionMatrix, 0, FIELD_OF_VIEW, aspectRatio, NEAR_PLANE, FAR_PLANE);
+        mProjectionVersion++;
+        mViewProjectionDirty = true;
+    }
+
+    /**
+     * Set the {@link GlObject} target to render, replacing the current scene.
+     *
+     * @param target The target.
+     */
+    public void setTarget(final GlObject target) {
+        mScene.clear();
+        mSceneGraph = null;
+        if (target != null) {
+            mScene.add(target);
+        }
+    }
+
+    /**
+     * Sets the {@link GlObject}s to render, replacing the current scene.
+     *
+     * @param glObjects The objects, each placed by its {@link GlObject#modelMatrix}.
+     */
+    public void setScene(final Collection<GlObject> glObjects) {
+        mScene.clear();
+        mScene.addAll(glObjects);
+        mSceneGraph = null;
+    }
+
+    /**
+     * Sets a scene graph to render, replacing the current scene. The graph is updated at the start of every frame
+     * and the meshes attached to its nodes are drawn with the world matrices of the nodes.
+     *
+     * @param sceneGraph The graph.
+     */
+    public void setSceneGraph(final SceneGraph sceneGraph) {
+        mScene.clear();
+        mSceneGraph = sceneGraph;
+    }
+
+    /**
+     * @return The queue of the last frame, holding the draw, state switch and sort time statistics.
+     */
+    public RenderQueue getRenderQueue() {
+        return mRenderQueue;
+    }
+
+    /**
+     * @return The number of objects of the last frame which intersected the view frustum and were submitted to be
+     * drawn.
+     */
+    public int getVisibleCount() {
+        return mVisibleCount;
+    }
+
+    /**
+     * @return The number of objects of the last frame which were outside of the view frustum and not drawn.
+     */
+    public int getCulledCount() {
+        return mCulledCount;
+    }
+
+    /**
+     * @return The number of objects of the last frame whose derived matrices had to be recomputed.
+     */
+    public int getMatrixUpdateCount() {
+        return mMatrixUpdateCount;
+    }
+
+    /**
+     * @return The number of draws of the last frame which uploaded their matrix uniforms.
+     */
+    public int getUniformUploadCount() {
+        return mUniformUploadCount;
+    }
+
+    public void drawFrame() {
+        // If we have no object there is no point in drawing anything
+        if (mScene.isEmpty() && mSceneGraph == null) {
+            LOG.w("There is no object selected to draw!");
+            return;
+        }
+
+        mGl.glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+        // FRUSTUM: Extract planes ================================================================================================
+        Profiler.begin("frustum");
+        if (mViewProjectionDirty) {
+            Mat4.multiply(mViewProjectionMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
+            mFrustum.set(mViewProjectionMatrix);
+            mViewProjectionDirty = false;
+        }
+        mVisibleCount = 0;
+        mCulledCount = 0;
+        mMatrixUpdateCount = 0;
+        mUniformUploadCount = 0;
+        Profiler.end("frustum");
+
+        // QUEUE: Fill and sort ===================================================================================================
+        Profiler.begin("queue");
+        final RenderQueue queue = mRenderQueue;
+        queue.clear();
+
+        final int sceneSize = mScene.size();
+        for (int i = 0; i < sceneSize; i++) {
+            submit(queue, mScene.get(i));
+        }
+
+        if (mSceneGraph != null) {
+            mSceneGraph.update();
+
+            final int nodeCount = mSceneGraph.getNodeCount();
+            for (int node = 0; node < nodeCount; node++) {
+                final GlObject mesh = mSceneGraph.getMesh(node);
+                if (mesh != null) {
+                    submit(queue, mesh);
+                }
+            }
+        }
+
+        queue.sort();
+        Profiler.end("queue");
+        // QUEUE: END =============================================================================================================
+
+        final int drawCount = queue.size();
+        for (int i = 0; i < drawCount; i++) {
+            drawObject(queue.getObject(i), queue.getProgram(i), queue.getTexture(i));
+        }
+    }
+
+    /**
+     * Culls an object against the view frustum and submits the level of detail to draw to the queue.
+     */
+    private void submit(RenderQueue queue, GlObject glObject) {
+        glObject.updateModelMatrix();
+
+        final float[] m = glObject.modelMatrix;
+        final Bounds bounds = glObject.bounds;
+
+        // Bounding sphere in world space
+        final float x = m[0] * bounds.centerX + m[4] * bounds.centerY + m[8] * bounds.centerZ + m[12];
+        final float y = m[1] * bounds.centerX + m[5] * bounds.centerY + m[9] * bounds.centerZ + m[13];
+        final float z = m[2] * bounds.centerX + m[6] * bounds.centerY + m[10] * bounds.centerZ + m[14];
+        final float radius = bounds.radius * Bounds.getMaxScale(m);
+
+        if (!isVisible(bounds, m, x, y, z, radius)) {
+            mCulledCount++;
+            return;
+        }
+
+        final float viewDistance = computeViewDistance(x, y, z);
+        GlObject drawn = selectLevelOfDetail(glObject, viewDistance, radius);
+        if (!mHalfFloatSupported && drawn.vertexType.requiresHalfFloat()) {
+            drawn = getHalfFloatFallback(drawn);
+        }
+
+        queue.submit(drawn, mShaderProgram, mTextureId, (viewDistance - NEAR_PLANE) / (FAR_PLANE - NEAR_PLANE));
+        mVisibleCount++;
+    }
+
+    /**
+     * Creates, the first time, a copy of an object with half float attributes which stores its positions as floats
+     * instead. It shares the vertex data and the model matrix of the object, only the packing on upload differs.
+     */
+    private GlObject getHalfFloatFallback(GlObject glObject) {
+        if (glObject.mFallback == null) {
+            LOG.w("Drawing " + glObject.title + " with float positions, " + VertexType.EXTENSION_HALF_FLOAT
+                  + " is not supported");
+
+            final GlObject fallback = GlObjectFactory.quantize(glObject, VertexType.VERTEX_TYPE_POS_UV_NORMAL_PACKED);
+            fallback.shareModelMatrix(glObject);
+            glObject.mFallback = fallback;
+        }
+        return glObject.mFallback;
+    }
+
+    /**
+     * Tests the bounds of an object against the view frustum. The sphere test is enough for most objects, only the
+     * ones intersecting a plane are tested again with the tighter box.
+     *
+     * @param x      The center of the bounds in world space.
+     * @param radius The radius of the bounding sphere in world space.
+     */
+    private boolean isVisible(Bounds bounds, float[] m, float x, float y, float z, float radius) {
+        final int result = mFrustum.testSphere(x, y, z, radius);
+        if (result != Frustum.INTERSECTING) {
+            return result == Frustum.INSIDE;
+        }
+
+        // The world space extents of the transformed box
+        final float extentX = Math.abs(m[0]) * bounds.extentX + Math.abs(m[4]) * bounds.extentY + Math.abs(m[8]) * bounds.extentZ;
+        final float extentY = Math.abs(m[1]) * bounds.extentX + Math.abs(m[5]) * bounds.extentY + Math.abs(m[9]) * bounds.extentZ;
+        final float extentZ = Math.abs(m[2]) * bounds.extentX + Math.abs(m[6]) * bounds.extentY + Math.abs(m[10]) * bounds.extentZ;
+        return mFrustum.intersectsBox(x, y, z, extentX, extentY, extentZ);
+    }
+
+    /**
+     * The distance from the eye to a point along the view direction, e.g. the center of an object.
+     */
+    private float computeViewDistance(float x, float y, float z) {
+        final float[] v = mViewMatrix;
+        final float viewZ = v[2] * x + v[6] * y + v[10] * z + v[14];
+
+        // The camera looks down the negative z-axis
+        return -viewZ;
+    }
+
+    /**
+     * Picks the level of detail to draw from the projected size of the object on screen.
+     *
+     * @param radius The radius of the bounding sphere in world space.
+     */
+    private GlObject selectLevelOfDetail(GlObject glObject, float viewDistance, float radius) {
+        final LodChain lodChain = glObject.getLodChain();
+        if (lodChain == null || viewDistance <= NEAR_PLANE) {
+            return glObject;
+        }
+
+        // The projection scales y by cot(fov / 2), which maps [-1, 1] to the viewport height
+        final float screenSize = radius * mProjectionMatrix[5] * mViewportHeight / viewDistance;
+        return lodChain.getLevel(lodChain.selectLevel(screenSize));
+    }
+
+    private void drawObject(final GlObject glObject, final int program, final int textureId) {
+        // MATRIX: Computations ===================================================================================================
+        Profiler.begin("matrix");
+        final MatrixCache matrices = updateMatrices(glObject);
+        Profiler.end("matrix");
+        // MATRIX: END ============================================================================================================
+
+
+        // SHADER PROGRAM: BIND ===================================================================================================
+        Profiler.begin("shader program");
+        mGl.glUseProgram(program);
+        Profiler.end("shader program");
+
+
+        // UNIFORMS: Bind =========================================================================================================
+        Profiler.begin("uniforms");
+        // activate texture unit (Not needed if you are only using 1 texture)
+        mGl.glActiveTexture(GL_TEXTURE0);
+        mGl.glBindTexture(GL_TEXTURE_2D, textureId);
+
+        // Set Uniform data, unless the program still holds exactly these matrices
+        if (matrices != mUploadedMatrices || matrices.version != mUploadedVersion || program != mUploadedProgram) {
+            mGl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, matrices.mvp, 0);
+            mGl.glUniformMatrix3fv(mNormalMatrixHandle, 1, false, matrices.normal, 0);
+
+            mUploadedMatrices = matrices;
+            mUploadedVersion = matrices.version;
+            mUploadedProgram = program;
+            mUniformUploadCount++;
+        }
+        Profiler.end("uniforms");
+        // UNIFORMS: End ==========================================================================================================
+
+
+        // ATTRIBUTES: Bind =======================================================================================================
+        Profiler.begin("attributes");
+        // Upload once, after that the data is already resident in graphics memory and is only referenced by offset
+        if (!glObject.isUploaded()) {
+            glObject.uploadBuffers(mGl, GL_STATIC_DRAW);
+        }
+        mGl.glBindBuffer(GL_ARRAY_BUFFER, glObject.getVertexBufferId());
+
+        // Bind position coordinates, e.g. x,y and z.
+        mGl.glEnableVertexAttribArray(mPositionHandle);
+        mGl.glVertexAttribPointer(mPositionHandle,
+                                  glObject.vPosDimension,
+                                  glObject.vPosType,
+                                  glObject.vPosNormalized,
+                                  glObject.vDataStride,
+                                  glObject.vPosByteOffset);
+
+        if (glObject.hasTextureCoordinates()) {
+            // Bind texture coordinates, e.g. u and v.
+            mGl.glEnableVertexAttribArray(mUVHandle);
+            mGl.glVertexAttribPointer(mUVHandle,
+                                      glObject.vUVDimension,
+                                      glObject.vUVType,
+                                      glObject.vUVNormalized,
+                                      glObject.vDataStride,
+                                      glObject.vUVByteOffset);
+        } else if (mUVHandle != -1) {
+            // Left enabled it would read past the end of this object's buffer, with the stride of a previous one
+            mGl.glDisableVertexAttribArray(mUVHandle);
+        }
+
+        if (glObject.hasNormals()) {
+            // Bind normals, e.g. nx, ny and nz.
+            mGl.glEnableVertexAttribArray(mNormalHandle);
+            mGl.glVertexAttribPointer(mNormalHandle,
+                                      glObject.vNormaDimension,
+                                      glObject.vNormType,
+                                      glObject.vNormNormalized,
+                                      glObject.vDataStride,
+                                      glObject.vNormByteOffset);
+        } else if (mNormalHandle != -1) {
+            mGl.glDisableVertexAttribArray(mNormalHandle);
+        }
+        Profiler.end("attributes");
+        // ATTRIBUTES: End ========================================================================================================
+
+
+        // DRAW VERTICES ==========================================================================================================
+        Profiler.begin("draw");
+        if (glObject.isIndexed()) {
+            mGl.glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, glObject.getIndexBufferId());
+            mGl.glDrawElements(glObject.glRenderMode, glObject.iCount, glObject.iType, 0);
+        } else {
+            mGl.glDrawArrays(glObject.glRenderMode, 0, glObject.vCount);
+        }
+        Profiler.end("draw");
+    }
+
+    /**
+     * Brings the derived matrices of an object up to date with its model matrix and the camera.
+     */
+    private MatrixCache updateMatrices(GlObject glObject) {
+        MatrixCache matrices = glObject.mMatrixCache;
+        if (matrices == null || matrices.owner != this) {
+            matrices = new MatrixCache(this);
+            glObject.mMatrixCache = matrices;
+        }
+
+        final int modelVersion = glObject.getModelMatrixVersion();
+        final boolean modelViewChanged = matrices.modelVersion != modelVersion || matrices.viewVersion != mViewVersion;
+
+        // Due to how matrix multiplications work(Not commutative) we have to multiply them in this order: P*(V*M)
+        if (modelViewChanged) {
+            // Compute Model-View Matrix, both are affine
+            Mat4.multiplyAffine(matrices.modelView, 0, mViewMatrix, 0, glObject.modelMatrix, 0);
+
+            // Compute Normal matrix, the inverse-transpose of the upper 3x3 is all the shader needs
+            if (!Mat3.normalMatrix(matrices.normal, 0, matrices.modelView, 0)) {
+                LOG.e("Could not invert ModelView matrix, using identity");
+            }
+
+            matrices.modelVersion = modelVersion;
+            matrices.viewVersion = mViewVersion;
+        }
+
+        if (modelViewChanged || matrices.projectionVersion != mProjectionVersion) {
+            // Compute Model-View-Projection Matrix
+            Mat4.multiply(matrices.mvp, 0, mProjectionMatrix, 0, matrices.modelView, 0);
+
+            matrices.projectionVersion = mProjectionVersion;
+            matrices.version++;
+            mMatrixUpdateCount++;
+        }
+        return matrices;
+    }
+
+    private void getQualifierHandles(int program, final boolean useTextures, final boolean useNormals) {
+        // Setup uniform and attributes
+        if (program != NO_PROGRAM) {
+            mGl.glUseProgram(program);
+
+            // Bind uniforms
+            mMVPMatrixHandle = mGl.glGetUniformLocation(program, U_MVP_MATRIX);
+            if (mMVPMatrixHandle == -1) {
+                LOG.e("Failed binding: " + U_MVP_MATRIX);
+            }
+
+            mNormalMatrixHandle = mGl.glGetUniformLocation(program, U_NORMAL_MATRIX);
+            if (mNormalHandle == -1) {
+                LOG.e("Failed getting handle for: " + U_NORMAL_MATRIX);
+            }
+
+            // Bind attributes
+            mPositionHandle = mGl.glGetAttribLocation(program, A_POSITION);
+            if (mPositionHandle == -1) {
+                LOG.e("Failed getting handle for: " + A_POSITION);
+            }
+
+            mUVHandle = -1;
+            if (useTextures) {
+                mUVHandle = mGl.glGetAttribLocation(program, A_TEXTURE_COORDINATE);
+                if (mUVHandle == -1) {
+                    LOG.e("Failed getting handle for: " + A_TEXTURE_COORDINATE);
+                }
+            }
+
+            mNormalHandle = -1;
+            if (useNormals) {
+                mNormalHandle = mGl.glGetAttribLocation(program, A_NORMAL);
+                if (mNormalHandle == -1) {
+                    LOG.e("Failed getting handle for: " + A_NORMAL);
+                }
+            }
+        }
+    }
+}
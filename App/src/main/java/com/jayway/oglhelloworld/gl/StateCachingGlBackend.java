@@ -0,0 +1,524 @@
+package com.jayway.oglhelloworld.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+import java.util.Arrays;
+
+import static android.opengl.GLES20.GL_ARRAY_BUFFER;
+import static android.opengl.GLES20.GL_BLEND;
+import static android.opengl.GLES20.GL_CULL_FACE;
+import static android.opengl.GLES20.GL_DEPTH_TEST;
+import static android.opengl.GLES20.GL_DITHER;
+import static android.opengl.GLES20.GL_ELEMENT_ARRAY_BUFFER;
+import static android.opengl.GLES20.GL_POLYGON_OFFSET_FILL;
+import static android.opengl.GLES20.GL_SCISSOR_TEST;
+import static android.opengl.GLES20.GL_STENCIL_TEST;
+import static android.opengl.GLES20.GL_TEXTURE0;
+import static android.opengl.GLES20.GL_TEXTURE_2D;
+
+/**
+ * {@link GlBackend} decorator which shadows the bound GL state and drops the state changes that would not change
+ * anything, e.g. binding the program that is already in use.
+ * <p/>
+ * The tracked state is: the current program, the 2D texture bound to each texture unit, the active texture unit,
+ * the enabled vertex attribute arrays and their pointers, the bound array and element array buffers, the
+ * enable caps, the depth and blend functions, the depth mask, the viewport and the clear color. All other calls are
+ * passed straight through to the delegate.
+ * <p/>
+ * Notice: The shadow state is only valid as long as every GL call goes through this backend. Call
+ * {@link #invalidate()} when a new context has been created or when the GL state might have been changed
+ * elsewhere, after that each tracked state is issued once before it is filtered again.
+ */
+public class StateCachingGlBackend implements GlBackend {
+    private static final int UNKNOWN = -1;
+
+    private static final int STATE_FALSE = 0;
+    private static final int STATE_TRUE  = 1;
+
+    // GLES 2.0 guarantees at least 8 texture units and 8 vertex attributes, anything above that is passed through
+    private static final int MAX_TRACKED_TEXTURE_UNITS = 16;
+    private static final int MAX_TRACKED_ATTRIBUTES    = 16;
+
+    private static final int[] TRACKED_CAPS = {
+            GL_DEPTH_TEST, GL_BLEND, GL_CULL_FACE, GL_SCISSOR_TEST, GL_STENCIL_TEST, GL_DITHER, GL_POLYGON_OFFSET_FILL
+    };
+
+    private final GlBackend mDelegate;
+
+    // Shadow state
+    private int mProgram;
+    private int mActiveTextureUnit;
+    private final int[] mBoundTextures = new int[MAX_TRACKED_TEXTURE_UNITS];
+    private int mArrayBuffer;
+    private int mElementArrayBuffer;
+    private final int[] mCaps = new int[TRACKED_CAPS.length];
+    private int mDepthFunc;
+    private int mDepthMask;
+    private int mBlendSrcFactor;
+    private int mBlendDstFactor;
+    private final int[] mViewport = new int[4];
+    private final float[] mClearColor = new float[4];
+    private boolean mClearColorKnown;
+
+    // Vertex attribute state, the pointer is only known while mAttribBuffer is not UNKNOWN
+    private final int[] mAttribEnabled = new int[MAX_TRACKED_ATTRIBUTES];
+    private final int[] mAttribBuffer = new int[MAX_TRACKED_ATTRIBUTES];
+    private final int[] mAttribSize = new int[MAX_TRACKED_ATTRIBUTES];
+    private final int[] mAttribType = new int[MAX_TRACKED_ATTRIBUTES];
+    private final boolean[] mAttribNormalized = new boolean[MAX_TRACKED_ATTRIBUTES];
+    private final int[] mAttribStride = new int[MAX_TRACKED_ATTRIBUTES];
+    private final int[] mAttribOffset = new int[MAX_TRACKED_ATTRIBUTES];
+
+    // Counters
+    private long mIssuedCount;
+    private long mSkippedCount;
+
+    /**
+     * @param delegate The backend which the state changes that are not redundant are forwarded to.
+     */
+    public StateCachingGlBackend(GlBackend delegate) {
+        mDelegate = delegate;
+        invalidate();
+    }
+
+    public GlBackend getDelegate() {
+        return mDelegate;
+    }
+
+    /**
+     * Forgets all shadowed state, must be called when a new context has been created.
+     */
+    public void invalidate() {
+        mProgram = UNKNOWN;
+        mActiveTextureUnit = UNKNOWN;
+        Arrays.fill(mBoundTextures, UNKNOWN);
+        mArrayBuffer = UNKNOWN;
+        mElementArrayBuffer = UNKNOWN;
+        Arrays.fill(mCaps, UNKNOWN);
+        mDepthFunc = UNKNOWN;
+        mDepthMask = UNKNOWN;
+        mBlendSrcFactor = UNKNOWN;
+        mBlendDstFactor = UNKNOWN;
+        Arrays.fill(mViewport, UNKNOWN);
+        mClearColorKnown = false;
+        Arrays.fill(mAttribEnabled, UNKNOWN);
+        Arrays.fill(mAttribBuffer, UNKNOWN);
+    }
+
+    /**
+     * @return The number of filtered state changes that were forwarded to the delegate.
+     */
+    public long getIssuedCount() {
+        return mIssuedCount;
+    }
+
+    /**
+     * @return The number of filtered state changes that were dropped since they would not change anything.
+     */
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    public void resetCounters() {
+        mIssuedCount = 0;
+        mSkippedCount = 0;
+    }
+
+    // Global state
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        if (mClearColorKnown
+                && mClearColor[0] == red && mClearColor[1] == green && mClearColor[2] == blue && mClearColor[3] == alpha) {
+            mSkippedCount++;
+            return;
+        }
+        mClearColor[0] = red;
+        mClearColor[1] = green;
+        mClearColor[2] = blue;
+        mClearColor[3] = alpha;
+        mClearColorKnown = true;
+        mIssuedCount++;
+        mDelegate.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        mDelegate.glClear(mask);
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        if (setCap(cap, STATE_TRUE)) {
+            mDelegate.glEnable(cap);
+        }
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        if (setCap(cap, STATE_FALSE)) {
+            mDelegate.glDisable(cap);
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        if (mViewport[0] == x && mViewport[1] == y && mViewport[2] == width && mViewport[3] == height) {
+            mSkippedCount++;
+            return;
+        }
+        mViewport[0] = x;
+        mViewport[1] = y;
+        mViewport[2] = width;
+        mViewport[3] = height;
+        mIssuedCount++;
+        mDelegate.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+        if (mDepthFunc == func) {
+            mSkippedCount++;
+            return;
+        }
+        mDepthFunc = func;
+        mIssuedCount++;
+        mDelegate.glDepthFunc(func);
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        final int state = flag ? STATE_TRUE : STATE_FALSE;
+        if (mDepthMask == state) {
+            mSkippedCount++;
+            return;
+        }
+        mDepthMask = state;
+        mIssuedCount++;
+        mDelegate.glDepthMask(flag);
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        if (mBlendSrcFactor == sfactor && mBlendDstFactor == dfactor) {
+            mSkippedCount++;
+            return;
+        }
+        mBlendSrcFactor = sfactor;
+        mBlendDstFactor = dfactor;
+        mIssuedCount++;
+        mDelegate.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public int glGetError() {
+        return mDelegate.glGetError();
+    }
+
+    @Override
+    public String glGetString(int name) {
+        return mDelegate.glGetString(name);
+    }
+
+    // Shaders
+
+    @Override
+    public int glCreateShader(int type) {
+        return mDelegate.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        mDelegate.glShaderSource(shader, source);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        mDelegate.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        mDelegate.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return mDelegate.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        mDelegate.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        return mDelegate.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        mDelegate.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        mDelegate.glLinkProgram(program);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        mDelegate.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return mDelegate.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        // A program that is in use is only flagged for deletion, so the name can not be reused until it has been
+        // replaced and the cached binding stays valid.
+        mDelegate.glDeleteProgram(program);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (mProgram == program) {
+            mSkippedCount++;
+            return;
+        }
+        mProgram = program;
+        mIssuedCount++;
+        mDelegate.glUseProgram(program);
+    }
+
+    // Uniforms and attributes
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        return mDelegate.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        return mDelegate.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mDelegate.glUniformMatrix3fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mDelegate.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (setAttribEnabled(index, STATE_TRUE)) {
+            mDelegate.glEnableVertexAttribArray(index);
+        }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        if (setAttribEnabled(index, STATE_FALSE)) {
+            mDelegate.glDisableVertexAttribArray(index);
+        }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        if (index < 0 || index >= MAX_TRACKED_ATTRIBUTES || mArrayBuffer == UNKNOWN) {
+            if (index >= 0 && index < MAX_TRACKED_ATTRIBUTES) {
+                mAttribBuffer[index] = UNKNOWN;
+            }
+            mIssuedCount++;
+            mDelegate.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+            return;
+        }
+
+        // The pointer refers to the buffer that was bound when it was set
+        if (mAttribBuffer[index] == mArrayBuffer
+                && mAttribSize[index] == size
+                && mAttribType[index] == type
+                && mAttribNormalized[index] == normalized
+                && mAttribStride[index] == stride
+                && mAttribOffset[index] == offset) {
+            mSkippedCount++;
+            return;
+        }
+        mAttribBuffer[index] = mArrayBuffer;
+        mAttribSize[index] = size;
+        mAttribType[index] = type;
+        mAttribNormalized[index] = normalized;
+        mAttribStride[index] = stride;
+        mAttribOffset[index] = offset;
+        mIssuedCount++;
+        mDelegate.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    // Textures
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        mDelegate.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        mDelegate.glDeleteTextures(n, textures, offset);
+
+        // Deleting a bound texture reverts the binding to 0 on every unit it was bound to
+        for (int i = offset; i < offset + n; i++) {
+            for (int unit = 0; unit < MAX_TRACKED_TEXTURE_UNITS; unit++) {
+                if (mBoundTextures[unit] == textures[i]) {
+                    mBoundTextures[unit] = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        if (mActiveTextureUnit == texture) {
+            mSkippedCount++;
+            return;
+        }
+        mActiveTextureUnit = texture;
+        mIssuedCount++;
+        mDelegate.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        final int unit = mActiveTextureUnit - GL_TEXTURE0;
+        if (target != GL_TEXTURE_2D || mActiveTextureUnit == UNKNOWN || unit < 0 || unit >= MAX_TRACKED_TEXTURE_UNITS) {
+            mIssuedCount++;
+            mDelegate.glBindTexture(target, texture);
+            return;
+        }
+
+        if (mBoundTextures[unit] == texture) {
+            mSkippedCount++;
+            return;
+        }
+        mBoundTextures[unit] = texture;
+        mIssuedCount++;
+        mDelegate.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glTexParameterf(int target, int pname, float param) {
+        mDelegate.glTexParameterf(target, pname, param);
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        mDelegate.texImage2D(target, level, bitmap, border);
+    }
+
+    // Buffers
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        mDelegate.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        mDelegate.glDeleteBuffers(n, buffers, offset);
+
+        // Deleting a bound buffer reverts the binding to 0, including the binding held by the attribute pointers
+        for (int i = offset; i < offset + n; i++) {
+            final int buffer = buffers[i];
+            if (mArrayBuffer == buffer) {
+                mArrayBuffer = 0;
+            }
+            if (mElementArrayBuffer == buffer) {
+                mElementArrayBuffer = 0;
+            }
+            for (int index = 0; index < MAX_TRACKED_ATTRIBUTES; index++) {
+                if (mAttribBuffer[index] == buffer) {
+                    mAttribBuffer[index] = UNKNOWN;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (target == GL_ARRAY_BUFFER) {
+            if (mArrayBuffer == buffer) {
+                mSkippedCount++;
+                return;
+            }
+            mArrayBuffer = buffer;
+        } else if (target == GL_ELEMENT_ARRAY_BUFFER) {
+            if (mElementArrayBuffer == buffer) {
+                mSkippedCount++;
+                return;
+            }
+            mElementArrayBuffer = buffer;
+        }
+        mIssuedCount++;
+        mDelegate.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        mDelegate.glBufferData(target, size, data, usage);
+    }
+
+    // Drawing
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        mDelegate.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        mDelegate.glDrawElements(mode, count, type, offset);
+    }
+
+    // Helpers
+
+    /**
+     * @return true if the cap change has to be issued.
+     */
+    private boolean setCap(int cap, int state) {
+        for (int i = 0; i < TRACKED_CAPS.length; i++) {
+            if (TRACKED_CAPS[i] == cap) {
+                if (mCaps[i] == state) {
+                    mSkippedCount++;
+                    return false;
+                }
+                mCaps[i] = state;
+                break;
+            }
+        }
+        mIssuedCount++;
+        return true;
+    }
+
+    /**
+     * @return true if the attribute array change has to be issued.
+     */
+    private boolean setAttribEnabled(int index, int state) {
+        if (index >= 0 && index < MAX_TRACKED_ATTRIBUTES) {
+            if (mAttribEnabled[index] == state) {
+                mSkippedCount++;
+                return false;
+            }
+            mAttribEnabled[index] = state;
+        }
+        mIssuedCount++;
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jayway.oglhelloworld.gl;
+
+/**
+ * The result of a {@link StaticBatcher}, a merged {@link GlObject} and the range of indices each source
+ * ended up in.
+ * <p/>
+ * The merged object is drawn like any other {@link GlObject}, its model matrix starts out as identity since the
+ * sources have already been transformed.
+ */
+public class StaticBatch {
+
+    // Exposed directly for performance reasons
+    public final GlObject glObject;
+
+    private final GlObject[] mSources;
+    private final int[] mFirstIndices;
+    private final int[] mIndexCounts;
+
+    StaticBatch(GlObject glObject, GlObject[] sources, int[] firstIndices, int[] indexCounts) {
+        this.glObject = glObject;
+        mSources = sources;
+        mFirstIndices = firstIndices;
+        mIndexCounts = indexCounts;
+    }
+
+    public int getSourceCount() {
+        return mSources.length;
+    }
+
+    /**
+     * @param i The source in the order it was added to the batcher.
+     * @return The source object, as it was when the batch was built.
+     */
+    public GlObject getSource(int i) {
+        return mSources[i];
+    }
+
+    /**
+     * @param i The source in the order it was added to the batcher.
+     * @return The first index of the source in {@link GlObject#iBuffer} of the merged object.
+     */
+    public int getFirstIndex(int i) {
+        return mFirstIndices[i];
+    }
+
+    /**
+     * @param i The source in the order it was added to the batcher.
+     * @return The number of indices of the source, always a multiple of 3.
+     */
+    public int getIndexCount(int i) {
+        return mIndexCounts[i];
+    }
+}
@@ -0,0 +1,184 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.math.Mat3;
+import com.jayway.oglhelloworld.gl.math.Mat4;
+import com.jayway.oglhelloworld.gl.util.MeshUtil;
+import com.jayway.oglhelloworld.util.Log;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import static android.opengl.GLES20.GL_TRIANGLES;
+
+/**
+ * Merges static {@link GlObject}s sharing a {@link VertexType} into one indexed triangle list, which is drawn
+ * with a single draw call.
+ * <p/>
+ * The vertices of each source are pre-transformed by its current model matrix, see
+ * {@link GlObject#getModelMatrix(float[])}, normals by the inverse-transpose of it. Triangle strips and fans are converted to lists, dropping the degenerate triangles
+ * used to stitch strips together, so that e.g. the torus can join a batch of cubes.
+ * <p/>
+ * Notice: The sources are only read when {@link #build(String)} is called, later changes to them are not
+ * reflected in the batch. Call it on the thread changing the transforms of the sources.
+ */
+public class StaticBatcher {
+    private static final Log LOG = new Log(StaticBatcher.class);
+
+    private final VertexType mVertexType;
+    private final ArrayList<GlObject> mSources = new ArrayList<>();
+
+    /**
+     * @param vertexType The vertex type all sources must have.
+     */
+    public StaticBatcher(VertexType vertexType) {
+        mVertexType = vertexType;
+    }
+
+    /**
+     * Adds a source to the batch.
+     *
+     * @param glObject The source, drawn with {@link android.opengl.GLES20#GL_TRIANGLES},
+     *                 {@link android.opengl.GLES20#GL_TRIANGLE_STRIP} or {@link android.opengl.GLES20#GL_TRIANGLE_FAN}.
+     * @return false if the source can not be batched, in which case it is not added.
+     */
+    public boolean add(GlObject glObject) {
+        if (glObject.vertexType != mVertexType) {
+            LOG.w("Can not batch " + glObject.title + ", it has another vertex type");
+            return false;
+        }
+
+        if (!MeshUtil.isTriangleMode(glObject.glRenderMode)) {
+            LOG.w("Can not batch " + glObject.title + ", render mode " + glObject.glRenderMode + " is not made of triangles");
+            return false;
+        }
+
+        mSources.add(glObject);
+        return true;
+    }
+
+    public int getSourceCount() {
+        return mSources.size();
+    }
+
+    /**
+     * Merges the added sources.
+     *
+     * @param title The title of the merged object.
+     * @return The batch, or {@code null} if no sources have been added.
+     */
+    public StaticBatch build(String title) {
+        final int sourceCount = mSources.size();
+        if (sourceCount == 0) {
+            LOG.w("Nothing to batch");
+            return null;
+        }
+
+        int vertexCount = 0;
+        for (int i = 0; i < sourceCount; i++) {
+            vertexCount += mSources.get(i).vCount;
+        }
+
+        final MeshBuilder builder = new MeshBuilder(mVertexType, vertexCount, false);
+        final GlObject[] sources = new GlObject[sourceCount];
+        final int[] firstIndices = new int[sourceCount];
+        final int[] indexCounts = new int[sourceCount];
+
+        final float[] modelMatrix = new float[Mat4.SIZE];
+        final float[] normalMatrix = new float[Mat3.SIZE];
+        final float[] vertex = new float[mVertexType.getDimension()];
+
+        for (int i = 0; i < sourceCount; i++) {
+            final GlObject source = mSources.get(i);
+            sources[i] = source;
+            firstIndices[i] = builder.getIndexCount();
+
+            final int baseVertex = builder.getVertexCount();
+            final boolean flipped = addTransformedVertices(builder, source, modelMatrix, normalMatrix, vertex);
+            addTriangles(builder, source, baseVertex, flipped);
+
+            indexCounts[i] = builder.getIndexCount() - firstIndices[i];
+        }
+
+        return new StaticBatch(builder.build(title, GL_TRIANGLES), sources, firstIndices, indexCounts);
+    }
+
+    /**
+     * @return true if the model matrix mirrors the source, which flips the winding of its triangles.
+     */
+    private static boolean addTransformedVertices(MeshBuilder builder, GlObject source, float[] modelMatrix,
+                                                  float[] normalMatrix, float[] vertex) {
+        final float[] m = source.getModelMatrix(modelMatrix);
+
+        final boolean hasNormals = source.vNormaDimension == 3;
+        if (hasNormals) {
+            // Normals are transformed by the inverse-transpose to stay perpendicular under non-uniform scaling
+            if (!Mat3.normalMatrix(normalMatrix, 0, m, 0)) {
+                LOG.e("Could not invert the model matrix of " + source.title + ", normals are left untransformed");
+            }
+        }
+
+        final FloatBuffer data = source.getFloatVertexData().duplicate();
+        data.position(0);
+
+        final int pos = source.vPosOffset;
+        final int norm = source.vNormOffset;
+        final float[] n = normalMatrix;
+
+        for (int v = 0; v < source.vCount; v++) {
+            data.get(vertex);
+
+            final float x = vertex[pos];
+            final float y = vertex[pos + 1];
+            final float z = vertex[pos + 2];
+            vertex[pos]     = m[0] * x + m[4] * y + m[8] * z + m[12];
+            vertex[pos + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+            vertex[pos + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+
+            if (hasNormals) {
+                final float nx = vertex[norm];
+                final float ny = vertex[norm + 1];
+                final float nz = vertex[norm + 2];
+                float tx = n[0] * nx + n[3] * ny + n[6] * nz;
+                float ty = n[1] * nx + n[4] * ny + n[7] * nz;
+                float tz = n[2] * nx + n[5] * ny + n[8] * nz;
+
+                final float length = (float) Math.sqrt(tx * tx + ty * ty + tz * tz);
+                if (length > 0f) {
+                    tx /= length;
+                    ty /= length;
+                    tz /= length;
+                }
+                vertex[norm]     = tx;
+                vertex[norm + 1] = ty;
+                vertex[norm + 2] = tz;
+            }
+
+            builder.addVertex(vertex, 0);
+        }
+
+        // Sign of the determinant of the upper 3x3
+        final float determinant = m[0] * (m[5] * m[10] - m[9] * m[6])
+                                  - m[4] * (m[1] * m[10] - m[9] * m[2])
+                                  + m[8] * (m[1] * m[6] - m[5] * m[2]);
+        return determinant < 0f;
+    }
+
+    /**
+     * Adds the triangles of the source as a triangle list, offset by {@code baseVertex}.
+     */
+    private static void addTriangles(MeshBuilder builder, GlObject source, int baseVertex, boolean flipped) {
+        final int[] triangles = MeshUtil.getTriangleList(source);
+
+        for (int i = 0; i < triangles.length; i += 3) {
+            final int a = baseVertex + triangles[i];
+            final int b = baseVertex + triangles[i + 1];
+            final int c = baseVertex + triangles[i + 2];
+
+            if (flipped) {
+                builder.addTriangle(a, c, b);
+            } else {
+                builder.addTriangle(a, b, c);
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static android.opengl.GLES20.GL_TRIANGLES;
+import static android.opengl.GLES20.GL_TRIANGLE_STRIP;
+
+/**
+ * Tessellates a {@link ParametricSurface} into an indexed {@link GlObject} over a regular grid of (u, v) samples.
+ * <p/>
+ * The cosine and sine of every column and row are computed once into tables. Large grids are split into bands of
+ * rows which are evaluated in parallel, each band writing its vertices and indices straight into its own slice of
+ * the shared output, so the work scales with the number of cores without any copying or locking.
+ * <p/>
+ * The grid has one more vertex than quads along each parameter. On closed surfaces the first and last column, or
+ * row, are at the same position but have different texture coordinates.
+ */
+public class SurfaceGenerator {
+    private static final Log LOG = new Log(SurfaceGenerator.class);
+
+    /**
+     * Grids with fewer vertices are generated on the calling thread only, since the handoff would cost more.
+     */
+    public static final int MIN_PARALLEL_VERTICES = 8192;
+
+    // Bands are at least this many rows, so that each task does enough work
+    private static final int MIN_ROWS_PER_BAND = 8;
+
+    private static final double TRIG_EPSILON = 1e-7;
+
+    private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    // Created on first use, the calling thread runs one band itself
+    private static ExecutorService sExecutor;
+
+    private SurfaceGenerator() {
+    }
+
+    /**
+     * @param title        The title of the object.
+     * @param surface      The surface.
+     * @param columns      The number of quads along u.
+     * @param rows         The number of quads along v.
+     * @param vertexType   A vertex type with float components, attributes it does not have are skipped.
+     * @param glRenderMode {@link android.opengl.GLES20#GL_TRIANGLES}, or
+     *                     {@link android.opengl.GLES20#GL_TRIANGLE_STRIP} for one strip with the rows joined by
+     *                     degenerate triangles.
+     * @return The object, or {@code null} if the arguments are not supported or the surface failed.
+     */
+    public static GlObject generate(String title, ParametricSurface surface, int columns, int rows,
+                                    VertexType vertexType, int glRenderMode) {
+        return generate(title, surface, columns, rows, vertexType, glRenderMode, THREAD_COUNT);
+    }
+
+    /**
+     * As {@link #generate(String, ParametricSurface, int, int, VertexType, int)}, but split into at most
+     * {@code maxBands} bands whatever the number of cores, e.g. to compare the output of different splits.
+     */
+    static GlObject generate(String title, ParametricSurface surface, int columns, int rows, VertexType vertexType,
+                             int glRenderMode, int maxBands) {
+        if (columns < 1 || rows < 1) {
+            LOG.e("Can not generate " + title + " with " + columns + "x" + rows + " quads");
+            return null;
+        }
+        if (vertexType.isPacked()) {
+            LOG.e("Can not generate " + title + " with packed vertices, quantize it afterwards instead");
+            return null;
+        }
+        if (glRenderMode != GL_TRIANGLES && glRenderMode != GL_TRIANGLE_STRIP) {
+            LOG.e("Can not generate " + title + " with render mode " + glRenderMode);
+            return null;
+        }
+
+        final Grid grid = new Grid(surface, columns, rows, vertexType, glRenderMode == GL_TRIANGLE_STRIP);
+
+        // PARALLEL: Split the rows into bands ====================================================================================
+        final int vertexRows = rows + 1;
+        int bandCount = 1;
+        if (grid.vertexCount >= MIN_PARALLEL_VERTICES && maxBands > 1) {
+            bandCount = Math.max(1, Math.min(maxBands, vertexRows / MIN_ROWS_PER_BAND));
+        }
+
+        if (bandCount == 1) {
+            grid.generateBand(0, vertexRows);
+        } else {
+            final ExecutorService executor = getExecutor();
+            final CountDownLatch done = new CountDownLatch(bandCount - 1);
+
+            for (int band = 1; band < bandCount; band++) {
+                final int start = band * vertexRows / bandCount;
+                final int end = (band + 1) * vertexRows / bandCount;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            grid.generateBand(start, end);
+                        } catch (RuntimeException e) {
+                            grid.failure = e;
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+
+            try {
+                grid.generateBand(0, vertexRows / bandCount);
+            } catch (RuntimeException e) {
+                grid.failure = e;
+            }
+
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.e("Interrupted while generating " + title);
+                return null;
+            }
+        }
+        // PARALLEL: END ==========================================================================================================
+
+        if (grid.failure != null) {
+            LOG.e("Failed generating " + title + ": " + grid.failure);
+            return null;
+        }
+
+        grid.vertices.position(0);
+        grid.vertices.limit(grid.vertexCount * grid.stride);
+        return new GlObject(title, vertexType, grid.vertices,
+                            GlObject.allocateNativeIndexBuffer(grid.indices, grid.indices.length, grid.vertexCount),
+                            glRenderMode);
+    }
+
+    /**
+     * @return The number of indices of a grid, see {@link #generate}.
+     */
+    public static int getIndexCount(int columns, int rows, int glRenderMode) {
+        return glRenderMode == GL_TRIANGLE_STRIP
+                ? rows * getStripRowLength(columns) - 2
+                : rows * columns * 6;
+    }
+
+    private static int getStripRowLength(int columns) {
+        // Two vertices per column, and a degenerate pair joining the next row
+        return 2 * (columns + 1) + 2;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(Math.max(1, THREAD_COUNT - 1), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "SurfaceGenerator");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * The shared input and output of the bands, every band only writes to the rows it was given.
+     */
+    private static final class Grid {
+        final ParametricSurface surface;
+        final int columns;
+        final int rows;
+        final boolean strip;
+
+        final int vertexCount;
+        final int stride;
+        final int posOffset;
+        final int uvOffset;
+        final int normOffset;
+        final boolean hasUVs;
+        final boolean hasNormals;
+
+        // Parameters and their trigonometry per column and row
+        final float[] u;
+        final float[] cosU;
+        final float[] sinU;
+        final float[] v;
+        final float[] cosV;
+        final float[] sinV;
+
+        final FloatBuffer vertices;
+        final int[] indices;
+
+        volatile RuntimeException failure;
+
+        Grid(ParametricSurface surface, int columns, int rows, VertexType vertexType, boolean strip) {
+            this.surface = surface;
+            this.columns = columns;
+            this.rows = rows;
+            this.strip = strip;
+
+            vertexCount = (columns + 1) * (rows + 1);
+            stride = vertexType.getDimension();
+            posOffset = vertexType.getPositionOffset();
+            uvOffset = vertexType.getUVOffset();
+            normOffset = vertexType.getNormalOffset();
+            hasUVs = vertexType.getUVCount() > 0;
+            hasNormals = vertexType.getNormalCount() > 0;
+
+            u = new float[columns + 1];
+            cosU = new float[columns + 1];
+            sinU = new float[columns + 1];
+            fillTable(surface.uMin, surface.uMax, columns, u, cosU, sinU);
+
+            v = new float[rows + 1];
+            cosV = new float[rows + 1];
+            sinV = new float[rows + 1];
+            fillTable(surface.vMin, surface.vMax, rows, v, cosV, sinV);
+
+            final int bytesPerFloat = 4;
+            vertices = ByteBuffer.allocateDirect(vertexCount * stride * bytesPerFloat)
+                                 .order(ByteOrder.nativeOrder())
+                                 .asFloatBuffer();
+            indices = new int[getIndexCount(columns, rows, strip ? GL_TRIANGLE_STRIP : GL_TRIANGLES)];
+        }
+
+        private static void fillTable(float min, float max, int steps, float[] values, float[] cos, float[] sin) {
+            for (int i = 0; i <= steps; i++) {
+                // The last value is exactly max, so that closed surfaces meet
+                final double value = i == steps ? max : min + (double) (max - min) * i / steps;
+                values[i] = (float) value;
+                cos[i] = snapToZero(Math.cos(value));
+                sin[i] = snapToZero(Math.sin(value));
+            }
+        }
+
+        /**
+         * The cosine of a quarter turn is not exactly 0 in floating point, and a tiny negative value is turned into a
+         * large one by e.g. the powers of a superquadric.
+         */
+        private static float snapToZero(double value) {
+            return Math.abs(value) < TRIG_EPSILON ? 0f : (float) value;
+        }
+
+        /**
+         * Generates the vertices of rows [start end) and the quads between each of those rows and the next.
+         */
+        void generateBand(int start, int end) {
+            final float[] sample = new float[6];
+
+            // VERTICES ===========================================================================================================
+            for (int row = start; row < end; row++) {
+                final float texV = (float) row / rows;
+                int offset = row * (columns + 1) * stride;
+
+                for (int column = 0; column <= columns; column++, offset += stride) {
+                    surface.evaluate(u[column], cosU[column], sinU[column], v[row], cosV[row], sinV[row], sample);
+
+                    // Absolute puts, so that bands never touch the position of the shared buffer
+                    vertices.put(offset + posOffset, sample[0]);
+                    vertices.put(offset + posOffset + 1, sample[1]);
+                    vertices.put(offset + posOffset + 2, sample[2]);
+
+                    if (hasUVs) {
+                        vertices.put(offset + uvOffset, (float) column / columns);
+                        vertices.put(offset + uvOffset + 1, texV);
+                    }
+
+                    if (hasNormals) {
+                        final float length = (float) Math.sqrt(sample[3] * sample[3] + sample[4] * sample[4]
+                                                                       + sample[5] * sample[5]);
+                        final float scale = length > 0 ? 1f / length : 0f;
+                        vertices.put(offset + normOffset, sample[3] * scale);
+                        vertices.put(offset + normOffset + 1, sample[4] * scale);
+                        vertices.put(offset + normOffset + 2, sample[5] * scale);
+                    }
+                }
+            }
+
+            // INDICES ============================================================================================================
+            final int width = columns + 1;
+            final int quadEnd = Math.min(end, rows);
+            for (int row = start; row < quadEnd; row++) {
+                final int bottom = row * width;
+                final int top = bottom + width;
+
+                if (strip) {
+                    int i = row * getStripRowLength(columns);
+                    for (int column = 0; column <= columns; column++) {
+                        indices[i++] = top + column;
+                        indices[i++] = bottom + column;
+                    }
+                    if (row < rows - 1) {
+                        // Repeat the last vertex of this row and the first of the next
+                        indices[i++] = bottom + columns;
+                        indices[i] = top + width;
+                    }
+                } else {
+                    int i = row * columns * 6;
+                    for (int column = 0; column < columns; column++) {
+                        final int a = bottom + column;
+                        final int b = a + 1;
+                        final int c = top + column;
+                        final int d = c + 1;
+                        indices[i++] = a;
+                        indices[i++] = b;
+                        indices[i++] = c;
+                        indices[i++] = b;
+                        indices[i++] = d;
+                        indices[i++] = c;
+                    }
+                }
+            }
+        }
+    }
+}
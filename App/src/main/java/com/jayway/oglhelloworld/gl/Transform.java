@@ -0,0 +1,227 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.math.Mat4;
+import com.jayway.oglhelloworld.gl.math.Quat;
+
+/**
+ * Position, rotation and scale of an object, composed into a model matrix in a single step when it has changed.
+ * <p/>
+ * The rotation is kept as a unit quaternion. Rotations accumulated every tick, e.g. by
+ * {@link #integrate(float, float, float, float)}, are renormalized periodically so that the matrix stays orthonormal
+ * however long the animation runs, which is not the case when rotating a matrix in place.
+ * <p/>
+ * For a fixed step simulation, call {@link #storePrevious()} before each step and {@link #setInterpolation(float)}
+ * before drawing, the matrix is then composed between the last two steps. The setters move the object at once,
+ * without interpolation.
+ * <p/>
+ * Notice: Not thread safe, a {@link GlObject} hands the composed matrix to the renderer with
+ * {@link GlObject#publishTransform()}.
+ */
+public class Transform {
+    /**
+     * The number of accumulated rotations between renormalizations of the quaternion.
+     */
+    public static final int RENORMALIZE_INTERVAL = 32;
+
+    private final float[] mPosition = new float[3];
+    private final float[] mRotation = new float[Quat.SIZE];
+    private final float[] mScale = {1f, 1f, 1f};
+
+    // The state before the last step, see storePrevious()
+    private final float[] mPreviousPosition = new float[3];
+    private final float[] mPreviousRotation = new float[Quat.SIZE];
+    private final float[] mPreviousScale = {1f, 1f, 1f};
+    private float mAlpha = 1f;
+
+    // Scratch for the rotation applied by rotate() and integrate(), and for interpolation
+    private final float[] mDelta = new float[Quat.SIZE];
+
+    private boolean mDirty;
+    private boolean mIsSet;
+    private int mRotationsSinceNormalize;
+
+    /**
+     * Creates an identity transform.
+     */
+    public Transform() {
+        Quat.setIdentity(mRotation, 0);
+        Quat.setIdentity(mPreviousRotation, 0);
+    }
+
+    public void setPosition(float x, float y, float z) {
+        mPosition[0] = x;
+        mPosition[1] = y;
+        mPosition[2] = z;
+        System.arraycopy(mPosition, 0, mPreviousPosition, 0, 3);
+        setDirty();
+    }
+
+    public void setScale(float x, float y, float z) {
+        mScale[0] = x;
+        mScale[1] = y;
+        mScale[2] = z;
+        System.arraycopy(mScale, 0, mPreviousScale, 0, 3);
+        setDirty();
+    }
+
+    /**
+     * Replaces the rotation.
+     *
+     * @param angle The angle in degrees, counter-clockwise around the axis.
+     */
+    public void setRotation(float angle, float x, float y, float z) {
+        Quat.setAxisAngle(mRotation, 0, angle, x, y, z);
+        System.arraycopy(mRotation, 0, mPreviousRotation, 0, Quat.SIZE);
+        mRotationsSinceNormalize = 0;
+        setDirty();
+    }
+
+    /**
+     * Replaces this transform with a copy of another, including the state before the last step.
+     */
+    public void set(Transform other) {
+        System.arraycopy(other.mPosition, 0, mPosition, 0, 3);
+        System.arraycopy(other.mRotation, 0, mRotation, 0, Quat.SIZE);
+        System.arraycopy(other.mScale, 0, mScale, 0, 3);
+        System.arraycopy(other.mPreviousPosition, 0, mPreviousPosition, 0, 3);
+        System.arraycopy(other.mPreviousRotation, 0, mPreviousRotation, 0, Quat.SIZE);
+        System.arraycopy(other.mPreviousScale, 0, mPreviousScale, 0, 3);
+        mAlpha = other.mAlpha;
+        mRotationsSinceNormalize = other.mRotationsSinceNormalize;
+        mIsSet = other.mIsSet;
+        // An unset transform does not replace a model matrix written directly
+        mDirty = mIsSet;
+    }
+
+    /**
+     * Rotates around an axis in the local space of the object, like {@link Mat4#rotate} does on a model matrix.
+     *
+     * @param angle The angle in degrees, counter-clockwise around the axis.
+     */
+    public void rotate(float angle, float x, float y, float z) {
+        Quat.setAxisAngle(mDelta, 0, angle, x, y, z);
+        applyRotation();
+        System.arraycopy(mRotation, 0, mPreviousRotation, 0, Quat.SIZE);
+    }
+
+    /**
+     * Advances the rotation by an angular velocity around the local axes, as a single rotation around the velocity
+     * vector instead of one rotation per axis.
+     *
+     * @param x  The angular velocity around the local x-axis, in degrees per second.
+     * @param dt The time step in seconds.
+     */
+    public void integrate(float x, float y, float z, float dt) {
+        final float speed = (float) Math.sqrt(x * x + y * y + z * z);
+        if (speed == 0f || dt == 0f) {
+            return;
+        }
+        Quat.setAxisAngle(mDelta, 0, speed * dt, x, y, z);
+        applyRotation();
+    }
+
+    /**
+     * Remembers the current state as the state before the next simulation step.
+     */
+    public void storePrevious() {
+        System.arraycopy(mPosition, 0, mPreviousPosition, 0, 3);
+        System.arraycopy(mRotation, 0, mPreviousRotation, 0, Quat.SIZE);
+        System.arraycopy(mScale, 0, mPreviousScale, 0, 3);
+    }
+
+    /**
+     * @param alpha Where to compose the matrix between the state stored by {@link #storePrevious()}, at 0, and the
+     *              current state, at 1.
+     */
+    public void setInterpolation(float alpha) {
+        if (alpha != mAlpha) {
+            mAlpha = alpha;
+            setDirty();
+        }
+    }
+
+    public float[] getPosition(float[] out) {
+        System.arraycopy(mPosition, 0, out, 0, 3);
+        return out;
+    }
+
+    public float[] getRotation(float[] out) {
+        System.arraycopy(mRotation, 0, out, 0, Quat.SIZE);
+        return out;
+    }
+
+    public float[] getScale(float[] out) {
+        System.arraycopy(mScale, 0, out, 0, 3);
+        return out;
+    }
+
+    /**
+     * @return true if the transform changed since the matrix was last composed.
+     */
+    public boolean isDirty() {
+        return mDirty;
+    }
+
+    /**
+     * @return true once the transform has been changed from the identity it was created with.
+     */
+    public boolean isSet() {
+        return mIsSet;
+    }
+
+    /**
+     * Composes the model matrix, translation * rotation * scale, if the transform changed since the last call.
+     *
+     * @param out The 4x4 matrix to write.
+     * @return true if the matrix was written.
+     */
+    public boolean updateMatrix(float[] out, int offset) {
+        if (!mDirty) {
+            return false;
+        }
+
+        composeMatrix(out, offset);
+        mDirty = false;
+        return true;
+    }
+
+    /**
+     * Composes the model matrix, translation * rotation * scale, whether the transform changed or not. Does not
+     * affect {@link #isDirty()}.
+     *
+     * @param out The 4x4 matrix to write.
+     */
+    public void composeMatrix(float[] out, int offset) {
+        if (mAlpha >= 1f) {
+            Mat4.compose(out, offset, mPosition[0], mPosition[1], mPosition[2], mRotation, 0,
+                         mScale[0], mScale[1], mScale[2]);
+        } else {
+            final float a = mAlpha;
+            Quat.slerp(mDelta, 0, mPreviousRotation, 0, mRotation, 0, a);
+            Mat4.compose(out, offset,
+                         mPreviousPosition[0] + (mPosition[0] - mPreviousPosition[0]) * a,
+                         mPreviousPosition[1] + (mPosition[1] - mPreviousPosition[1]) * a,
+                         mPreviousPosition[2] + (mPosition[2] - mPreviousPosition[2]) * a,
+                         mDelta, 0,
+                         mPreviousScale[0] + (mScale[0] - mPreviousScale[0]) * a,
+                         mPreviousScale[1] + (mScale[1] - mPreviousScale[1]) * a,
+                         mPreviousScale[2] + (mScale[2] - mPreviousScale[2]) * a);
+        }
+    }
+
+    private void setDirty() {
+        mDirty = true;
+        mIsSet = true;
+    }
+
+    private void applyRotation() {
+        // Local axes, so the delta is applied first
+        Quat.multiply(mRotation, 0, mRotation, 0, mDelta, 0);
+
+        if (++mRotationsSinceNormalize >= RENORMALIZE_INTERVAL) {
+            Quat.normalize(mRotation, 0);
+            mRotationsSinceNormalize = 0;
+        }
+        setDirty();
+    }
+}
@@ -0,0 +1,74 @@
+package com.jayway.oglhelloworld.gl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands float data, e.g. a matrix, from one producer thread to one consumer thread without locks.
+ * <p/>
+ * The producer writes to the back buffer and publishes it, the consumer acquires the latest published buffer and
+ * reads the front buffer. There are three buffers, so each side always has one of its own while the third holds the
+ * latest published data: the consumer never sees a buffer that is being written, and neither side ever waits. Data
+ * published twice before the consumer acquires it is replaced, the consumer only sees the latest.
+ * <p/>
+ * Notice: Only the producer may call {@link #getBackBuffer()} and {@link #publish()}, only the consumer may call
+ * {@link #acquire()} and {@link #getFrontBuffer()}.
+ */
+public class TripleBuffer {
+    private static final int INDEX_MASK = 3;
+
+    // Set on the middle index when the consumer has not acquired it yet
+    private static final int FRESH = 4;
+
+    private final float[][] mBuffers;
+
+    // The buffer between the two threads, and whether it is fresh, swapped atomically
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+
+    // Only touched by the producer
+    private int mBack = 0;
+
+    // Only touched by the consumer
+    private int mFront = 2;
+
+    /**
+     * @param size The number of floats in each buffer.
+     */
+    public TripleBuffer(int size) {
+        mBuffers = new float[3][size];
+    }
+
+    /**
+     * @return The buffer to write the next data to.
+     */
+    public float[] getBackBuffer() {
+        return mBuffers[mBack];
+    }
+
+    /**
+     * Makes the back buffer the latest data, the back buffer is then another buffer.
+     */
+    public void publish() {
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Makes the latest published data the front buffer, if there is any newer than the front buffer.
+     *
+     * @return true if the front buffer changed.
+     */
+    public boolean acquire() {
+        if ((mMiddle.get() & FRESH) == 0) {
+            return false;
+        }
+
+        mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * @return The latest data acquired.
+     */
+    public float[] getFrontBuffer() {
+        return mBuffers[mFront];
+    }
+}
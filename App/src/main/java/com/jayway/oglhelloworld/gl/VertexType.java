@@ -1,20 +1,62 @@
 package com.jayway.oglhelloworld.gl;
 
+import static android.opengl.GLES20.GL_BYTE;
+import static android.opengl.GLES20.GL_FLOAT;
+import static android.opengl.GLES20.GL_SHORT;
+
 /**
  * Defines the number of attributes and their order. This is needed since the format for meshes differ
  * and in some cases you might not want texture coordinates for instance.
  * <p/>
+ * Meshes are always built as floats laid out according to {@link #getDimension()} and the float offsets, e.g.
+ * {@link #getPositionOffset()}. Each element also has a {@link ComponentType} which decides how it is stored in
+ * graphics memory, the vertex data is packed into that format when it is uploaded. The packed layout is described
+ * by the byte offsets, e.g. {@link #getPositionByteOffset()}, and {@link #getDataStrideInBytes()}.
+ * <p/>
  * This class is defined for 3D vertex types.
  *
  * @author Andreas Nilsson
  */
 public class VertexType {
     public static final int SIZE_OF_FLOAT = 4; // in bytes
+
+    /**
+     * The {@code type} of half float attributes, from the {@code OES_vertex_half_float} extension.
+     */
+    public static final int GL_HALF_FLOAT_OES = 0x8D61;
+
+    /**
+     * Extension required by vertex types using {@link ComponentType#HALF_FLOAT}.
+     */
+    public static final String EXTENSION_HALF_FLOAT = "GL_OES_vertex_half_float";
+
+    // Attributes are aligned to 4 bytes, unaligned attributes are slow or unsupported on many GPUs
+    private static final int ATTRIBUTE_ALIGNMENT = 4;
+
+    private static int sNextId = 0;
+
+    private final int mId;
     private final int mDimension;
+    private final int mStrideInBytes;
+    private final boolean mPacked;
+
     private Element mNormal = Element.NONE;
     private Element mTexCoord = Element.NONE;
     private Element mPosition = Element.NONE;
 
+    // Offsets into the float layout
+    private int mPositionOffset;
+    private int mTexCoordOffset;
+    private int mNormalOffset;
+
+    // The packed layout in graphics memory
+    private ComponentType mPositionType = ComponentType.FLOAT;
+    private ComponentType mTexCoordType = ComponentType.FLOAT;
+    private ComponentType mNormalType = ComponentType.FLOAT;
+    private int mPositionByteOffset;
+    private int mTexCoordByteOffset;
+    private int mNormalByteOffset;
+
     public enum Element {
         POSITION(3),
         TEXCOORD(2),
@@ -22,33 +64,111 @@ public class VertexType {
         NONE(0);
 
         final int dimension;
-        int offset = 0;
 
         Element(int dimension) {
             this.dimension = dimension;
         }
     }
 
+    /**
+     * How the components of an element are stored in graphics memory.
+     */
+    public enum ComponentType {
+        /**
+         * 32 bit float.
+         */
+        FLOAT(GL_FLOAT, 4, false),
+
+        /**
+         * 16 bit float, requires {@value #EXTENSION_HALF_FLOAT}. Keeps about 3 significant decimal digits.
+         */
+        HALF_FLOAT(GL_HALF_FLOAT_OES, 2, false),
+
+        /**
+         * 16 bit signed integer mapped to [-1, 1], values outside of the range are clamped.
+         */
+        SHORT_NORMALIZED(GL_SHORT, 2, true),
+
+        /**
+         * 8 bit signed integer mapped to [-1, 1], values outside of the range are clamped.
+         */
+        BYTE_NORMALIZED(GL_BYTE, 1, true);
+
+        /**
+         * The {@code type} passed to {@link android.opengl.GLES20#glVertexAttribPointer}.
+         */
+        public final int glType;
+
+        public final int sizeInBytes;
+
+        /**
+         * The {@code normalized} flag passed to {@link android.opengl.GLES20#glVertexAttribPointer}.
+         */
+        public final boolean normalized;
+
+        ComponentType(int glType, int sizeInBytes, boolean normalized) {
+            this.glType = glType;
+            this.sizeInBytes = sizeInBytes;
+            this.normalized = normalized;
+        }
+    }
+
+    /**
+     * Creates a vertex type where all elements are stored as floats.
+     */
     protected VertexType(Element... elements) {
+        this(elements, null);
+    }
+
+    /**
+     * @param elements       The elements in the order they are laid out.
+     * @param componentTypes The component type of each element, or {@code null} to store all elements as floats.
+     */
+    protected VertexType(Element[] elements, ComponentType[] componentTypes) {
+        mId = sNextId++;
         int currentOffset = 0;
+        int currentByteOffset = 0;
+        boolean packed = false;
+
+        for (int i = 0; i < elements.length; i++) {
+            final Element e = elements[i];
+            final ComponentType type = componentTypes != null ? componentTypes[i] : ComponentType.FLOAT;
 
-        for (Element e : elements) {
-            e.offset = currentOffset;
             switch (e) {
                 case POSITION:
                     mPosition = e;
+                    mPositionOffset = currentOffset;
+                    mPositionType = type;
+                    mPositionByteOffset = currentByteOffset;
                     break;
                 case TEXCOORD:
                     mTexCoord = e;
+                    mTexCoordOffset = currentOffset;
+                    mTexCoordType = type;
+                    mTexCoordByteOffset = currentByteOffset;
                     break;
                 case NORMAL:
                     mNormal = e;
+                    mNormalOffset = currentOffset;
+                    mNormalType = type;
+                    mNormalByteOffset = currentByteOffset;
                     break;
             }
 
+            packed |= e != Element.NONE && type != ComponentType.FLOAT;
             currentOffset += e.dimension;
+            currentByteOffset = align(currentByteOffset + e.dimension * type.sizeInBytes);
         }
         mDimension = currentOffset;
+        mStrideInBytes = currentByteOffset;
+        mPacked = packed;
+    }
+
+    /**
+     * @return A small number unique to this vertex type, e.g. to group draws with the same attribute layout.
+     */
+    public int getId() {
+        return mId;
     }
 
     /**
@@ -75,7 +195,7 @@ public class VertexType {
      * @return The start of each position attribute.
      */
     public int getPositionOffset() {
-        return mPosition.offset;
+        return mPositionOffset;
     }
 
     /**
@@ -85,7 +205,7 @@ public class VertexType {
      * @return The start of each texture attribute.
      */
     public int getUVOffset() {
-        return mTexCoord.offset;
+        return mTexCoordOffset;
     }
 
     /**
@@ -95,7 +215,7 @@ public class VertexType {
      * @return The start of the normal attribute.
      */
     public int getNormalOffset() {
-        return mNormal.offset;
+        return mNormalOffset;
     }
 
     /**
@@ -114,8 +234,65 @@ public class VertexType {
         return mDimension;
     }
 
+    public ComponentType getPositionType() {
+        return mPositionType;
+    }
+
+    public ComponentType getUVType() {
+        return mTexCoordType;
+    }
+
+    public ComponentType getNormalType() {
+        return mNormalType;
+    }
+
+    /**
+     * @return The start of each position attribute in the packed layout, in bytes.
+     */
+    public int getPositionByteOffset() {
+        return mPositionByteOffset;
+    }
+
+    /**
+     * @return The start of each texture attribute in the packed layout, in bytes.
+     */
+    public int getUVByteOffset() {
+        return mTexCoordByteOffset;
+    }
+
+    /**
+     * @return The start of each normal attribute in the packed layout, in bytes.
+     */
+    public int getNormalByteOffset() {
+        return mNormalByteOffset;
+    }
+
+    /**
+     * @return The size of a vertex in graphics memory, in bytes.
+     */
     public int getDataStrideInBytes() {
-        return getDimension() * SIZE_OF_FLOAT;
+        return mStrideInBytes;
+    }
+
+    /**
+     * @return true if any element is stored as something else than floats, which means that the vertex data has
+     * to be packed before it is uploaded.
+     */
+    public boolean isPacked() {
+        return mPacked;
+    }
+
+    /**
+     * @return true if the vertex type needs {@value #EXTENSION_HALF_FLOAT}.
+     */
+    public boolean requiresHalfFloat() {
+        return (mPosition != Element.NONE && mPositionType == ComponentType.HALF_FLOAT)
+               || (mTexCoord != Element.NONE && mTexCoordType == ComponentType.HALF_FLOAT)
+               || (mNormal != Element.NONE && mNormalType == ComponentType.HALF_FLOAT);
+    }
+
+    private static int align(int byteOffset) {
+        return (byteOffset + ATTRIBUTE_ALIGNMENT - 1) & -ATTRIBUTE_ALIGNMENT;
     }
 
     public static VertexType VERTEX_TYPE_POS = new VertexType(Element.POSITION);
@@ -130,5 +307,20 @@ public class VertexType {
      */
     public static VertexType VERTEX_TYPE_POS_UV_NORMAL = new VertexType(Element.POSITION, Element.TEXCOORD, Element.NORMAL);
 
-}
+    /**
+     * {@link #VERTEX_TYPE_POS_UV_NORMAL} with float positions, normalized short texture coordinates and normalized
+     * byte normals, 20 bytes per vertex instead of 32. Texture coordinates must be within [-1, 1].
+     */
+    public static VertexType VERTEX_TYPE_POS_UV_NORMAL_PACKED = new VertexType(
+            new Element[]{Element.POSITION, Element.TEXCOORD, Element.NORMAL},
+            new ComponentType[]{ComponentType.FLOAT, ComponentType.SHORT_NORMALIZED, ComponentType.BYTE_NORMALIZED});
 
+    /**
+     * {@link #VERTEX_TYPE_POS_UV_NORMAL_PACKED} with half float positions, 16 bytes per vertex.
+     * Requires {@value #EXTENSION_HALF_FLOAT}.
+     */
+    public static VertexType VERTEX_TYPE_POS_UV_NORMAL_HALF = new VertexType(
+            new Element[]{Element.POSITION, Element.TEXCOORD, Element.NORMAL},
+            new ComponentType[]{ComponentType.HALF_FLOAT, ComponentType.SHORT_NORMALIZED, ComponentType.BYTE_NORMALIZED});
+
+}
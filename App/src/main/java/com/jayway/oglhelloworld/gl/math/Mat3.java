@@ -0,0 +1,87 @@
+package com.jayway.oglhelloworld.gl.math;
+
+/**
+ * 3x3 matrix operations on caller supplied float arrays, column-major like {@link Mat4}: element (row, column) is
+ * at {@code offset + column * 3 + row}. The layout expected by {@code glUniformMatrix3fv}.
+ * <p/>
+ * The output may be the same array range as the input. No shared scratch state is used.
+ */
+public final class Mat3 {
+    /**
+     * The number of floats of a matrix.
+     */
+    public static final int SIZE = 9;
+
+    private Mat3() {
+    }
+
+    public static void setIdentity(float[] m, int offset) {
+        for (int i = 0; i < SIZE; i++) {
+            m[offset + i] = 0f;
+        }
+        m[offset] = 1f;
+        m[offset + 4] = 1f;
+        m[offset + 8] = 1f;
+    }
+
+    /**
+     * Copies the upper left 3x3 of a 4x4 matrix, its rotation and scale.
+     */
+    public static void fromMat4(float[] out, int outOffset, float[] m, int offset) {
+        for (int column = 0; column < 3; column++) {
+            out[outOffset + column * 3] = m[offset + column * 4];
+            out[outOffset + column * 3 + 1] = m[offset + column * 4 + 1];
+            out[outOffset + column * 3 + 2] = m[offset + column * 4 + 2];
+        }
+    }
+
+    /**
+     * Computes the normal matrix of a 4x4 matrix, the inverse-transpose of its upper left 3x3. That is the cofactor
+     * matrix divided by the determinant, which needs no 4x4 inverse and no transposes.
+     *
+     * @param out   The 3x3 normal matrix.
+     * @param m     A 4x4 matrix, e.g. the model-view matrix.
+     * @return false if the matrix is singular, {@code out} is then set to identity.
+     */
+    public static boolean normalMatrix(float[] out, int outOffset, float[] m, int offset) {
+        final int o = offset;
+        final float a00 = m[o], a10 = m[o + 1], a20 = m[o + 2];
+        final float a01 = m[o + 4], a11 = m[o + 5], a21 = m[o + 6];
+        final float a02 = m[o + 8], a12 = m[o + 9], a22 = m[o + 10];
+
+        final float c00 = a11 * a22 - a12 * a21;
+        final float c01 = a12 * a20 - a10 * a22;
+        final float c02 = a10 * a21 - a11 * a20;
+
+        final float determinant = a00 * c00 + a01 * c01 + a02 * c02;
+        if (determinant == 0f) {
+            setIdentity(out, outOffset);
+            return false;
+        }
+        final float d = 1f / determinant;
+
+        final int r = outOffset;
+        out[r] = c00 * d;
+        out[r + 1] = (a02 * a21 - a01 * a22) * d;
+        out[r + 2] = (a01 * a12 - a02 * a11) * d;
+        out[r + 3] = c01 * d;
+        out[r + 4] = (a00 * a22 - a02 * a20) * d;
+        out[r + 5] = (a02 * a10 - a00 * a12) * d;
+        out[r + 6] = c02 * d;
+        out[r + 7] = (a01 * a20 - a00 * a21) * d;
+        out[r + 8] = (a00 * a11 - a01 * a10) * d;
+        return true;
+    }
+
+    /**
+     * out = m * v
+     */
+    public static void multiplyVector(float[] out, int outOffset, float[] m, int offset, float[] v, int vOffset) {
+        final float x = v[vOffset];
+        final float y = v[vOffset + 1];
+        final float z = v[vOffset + 2];
+        out[outOffset] = m[offset] * x + m[offset + 3] * y + m[offset + 6] * z;
+        out[outOffset + 1] = m[offset + 1] * x + m[offset + 4] * y + m[offset + 7] * z;
+        out[outOffset + 2] = m[offset + 2] * x + m[offset + 5] * y + m[offset + 8] * z;
+    }
+}
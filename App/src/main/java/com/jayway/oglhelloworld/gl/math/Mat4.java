@@ -0,0 +1,359 @@
+package com.jayway.oglhelloworld.gl.math;
+
+/**
+ * 4x4 matrix operations on caller supplied float arrays, in the column-major layout used by OpenGL and
+ * {@code android.opengl.Matrix}: element (row, column) is at {@code offset + column * 4 + row}.
+ * <p/>
+ * Every operation reads its inputs into locals before writing, so the output may be the same array range as any
+ * input. No shared scratch state is used, all methods can be called from any thread.
+ */
+public final class Mat4 {
+    /**
+     * The number of floats of a matrix.
+     */
+    public static final int SIZE = 16;
+
+    private Mat4() {
+    }
+
+    public static void setIdentity(float[] m, int offset) {
+        for (int i = 0; i < SIZE; i++) {
+            m[offset + i] = 0f;
+        }
+        m[offset] = 1f;
+        m[offset + 5] = 1f;
+        m[offset + 10] = 1f;
+        m[offset + 15] = 1f;
+    }
+
+    /**
+     * out = lhs * rhs
+     */
+    public static void multiply(float[] out, int outOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+        final float[] a = lhs;
+        final int o = lhsOffset;
+        final float a00 = a[o], a10 = a[o + 1], a20 = a[o + 2], a30 = a[o + 3];
+        final float a01 = a[o + 4], a11 = a[o + 5], a21 = a[o + 6], a31 = a[o + 7];
+        final float a02 = a[o + 8], a12 = a[o + 9], a22 = a[o + 10], a32 = a[o + 11];
+        final float a03 = a[o + 12], a13 = a[o + 13], a23 = a[o + 14], a33 = a[o + 15];
+
+        for (int column = 0; column < 4; column++) {
+            final int c = rhsOffset + column * 4;
+            final float b0 = rhs[c], b1 = rhs[c + 1], b2 = rhs[c + 2], b3 = rhs[c + 3];
+
+            final int r = outOffset + column * 4;
+            out[r] = a00 * b0 + a01 * b1 + a02 * b2 + a03 * b3;
+            out[r + 1] = a10 * b0 + a11 * b1 + a12 * b2 + a13 * b3;
+            out[r + 2] = a20 * b0 + a21 * b1 + a22 * b2 + a23 * b3;
+            out[r + 3] = a30 * b0 + a31 * b1 + a32 * b2 + a33 * b3;
+        }
+    }
+
+    /**
+     * out = lhs * rhs, for matrices whose bottom row is (0, 0, 0, 1), e.g. model and view matrices. Skips the
+     * bottom row, 36 multiplications instead of 64.
+     */
+    public static void multiplyAffine(float[] out, int outOffset, float[] lhs, int lhsOffset,
+                                      float[] rhs, int rhsOffset) {
+        final float[] a = lhs;
+        final int o = lhsOffset;
+        final float a00 = a[o], a10 = a[o + 1], a20 = a[o + 2];
+        final float a01 = a[o + 4], a11 = a[o + 5], a21 = a[o + 6];
+        final float a02 = a[o + 8], a12 = a[o + 9], a22 = a[o + 10];
+        final float a03 = a[o + 12], a13 = a[o + 13], a23 = a[o + 14];
+
+        for (int column = 0; column < 3; column++) {
+            final int c = rhsOffset + column * 4;
+            final float b0 = rhs[c], b1 = rhs[c + 1], b2 = rhs[c + 2];
+
+            final int r = outOffset + column * 4;
+            out[r] = a00 * b0 + a01 * b1 + a02 * b2;
+            out[r + 1] = a10 * b0 + a11 * b1 + a12 * b2;
+            out[r + 2] = a20 * b0 + a21 * b1 + a22 * b2;
+            out[r + 3] = 0f;
+        }
+
+        final int c = rhsOffset + 12;
+        final float b0 = rhs[c], b1 = rhs[c + 1], b2 = rhs[c + 2];
+        final int r = outOffset + 12;
+        out[r] = a00 * b0 + a01 * b1 + a02 * b2 + a03;
+        out[r + 1] = a10 * b0 + a11 * b1 + a12 * b2 + a13;
+        out[r + 2] = a20 * b0 + a21 * b1 + a22 * b2 + a23;
+        out[r + 3] = 1f;
+    }
+
+    public static void transpose(float[] out, int outOffset, float[] m, int offset) {
+        for (int column = 0; column < 4; column++) {
+            for (int row = column + 1; row < 4; row++) {
+                final float upper = m[offset + row * 4 + column];
+                final float lower = m[offset + column * 4 + row];
+                out[outOffset + column * 4 + row] = upper;
+                out[outOffset + row * 4 + column] = lower;
+            }
+            out[outOffset + column * 5] = m[offset + column * 5];
+        }
+    }
+
+    /**
+     * Inverts any matrix with cofactors.
+     *
+     * @return false if the matrix is singular, {@code out} is then left unchanged.
+     */
+    public static boolean invert(float[] out, int outOffset, float[] m, int offset) {
+        final int o = offset;
+        final float m00 = m[o], m10 = m[o + 1], m20 = m[o + 2], m30 = m[o + 3];
+        final float m01 = m[o + 4], m11 = m[o + 5], m21 = m[o + 6], m31 = m[o + 7];
+        final float m02 = m[o + 8], m12 = m[o + 9], m22 = m[o + 10], m32 = m[o + 11];
+        final float m03 = m[o + 12], m13 = m[o + 13], m23 = m[o + 14], m33 = m[o + 15];
+
+        // 2x2 determinants of the lower and upper two rows
+        final float s0 = m00 * m11 - m10 * m01;
+        final float s1 = m00 * m12 - m10 * m02;
+        final float s2 = m00 * m13 - m10 * m03;
+        final float s3 = m01 * m12 - m11 * m02;
+        final float s4 = m01 * m13 - m11 * m03;
+        final float s5 = m02 * m13 - m12 * m03;
+
+        final float c5 = m22 * m33 - m32 * m23;
+        final float c4 = m21 * m33 - m31 * m23;
+        final float c3 = m21 * m32 - m31 * m22;
+        final float c2 = m20 * m33 - m30 * m23;
+        final float c1 = m20 * m32 - m30 * m22;
+        final float c0 = m20 * m31 - m30 * m21;
+
+        final float determinant = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (determinant == 0f) {
+            return false;
+        }
+        final float d = 1f / determinant;
+
+        final int r = outOffset;
+        out[r] = (m11 * c5 - m12 * c4 + m13 * c3) * d;
+        out[r + 1] = (-m10 * c5 + m12 * c2 - m13 * c1) * d;
+        out[r + 2] = (m10 * c4 - m11 * c2 + m13 * c0) * d;
+        out[r + 3] = (-m10 * c3 + m11 * c1 - m12 * c0) * d;
+
+        out[r + 4] = (-m01 * c5 + m02 * c4 - m03 * c3) * d;
+        out[r + 5] = (m00 * c5 - m02 * c2 + m03 * c1) * d;
+        out[r + 6] = (-m00 * c4 + m01 * c2 - m03 * c0) * d;
+        out[r + 7] = (m00 * c3 - m01 * c1 + m02 * c0) * d;
+
+        out[r + 8] = (m31 * s5 - m32 * s4 + m33 * s3) * d;
+        out[r + 9] = (-m30 * s5 + m32 * s2 - m33 * s1) * d;
+        out[r + 10] = (m30 * s4 - m31 * s2 + m33 * s0) * d;
+        out[r + 11] = (-m30 * s3 + m31 * s1 - m32 * s0) * d;
+
+        out[r + 12] = (-m21 * s5 + m22 * s4 - m23 * s3) * d;
+        out[r + 13] = (m20 * s5 - m22 * s2 + m23 * s1) * d;
+        out[r + 14] = (-m20 * s4 + m21 * s2 - m23 * s0) * d;
+        out[r + 15] = (m20 * s3 - m21 * s1 + m22 * s0) * d;
+        return true;
+    }
+
+    /**
+     * Inverts a matrix whose bottom row is (0, 0, 0, 1), by inverting the upper 3x3 and the translation separately.
+     *
+     * @return false if the matrix is singular, {@code out} is then left unchanged.
+     */
+    public static boolean invertAffine(float[] out, int outOffset, float[] m, int offset) {
+        final int o = offset;
+        final float a00 = m[o], a10 = m[o + 1], a20 = m[o + 2];
+        final float a01 = m[o + 4], a11 = m[o + 5], a21 = m[o + 6];
+        final float a02 = m[o + 8], a12 = m[o + 9], a22 = m[o + 10];
+        final float tx = m[o + 12], ty = m[o + 13], tz = m[o + 14];
+
+        // Cofactors of the first column
+        final float c00 = a11 * a22 - a12 * a21;
+        final float c10 = a12 * a20 - a10 * a22;
+        final float c20 = a10 * a21 - a11 * a20;
+
+        final float determinant = a00 * c00 + a01 * c10 + a02 * c20;
+        if (determinant == 0f) {
+            return false;
+        }
+        final float d = 1f / determinant;
+
+        final float i00 = c00 * d;
+        final float i01 = (a02 * a21 - a01 * a22) * d;
+        final float i02 = (a01 * a12 - a02 * a11) * d;
+        final float i10 = c10 * d;
+        final float i11 = (a00 * a22 - a02 * a20) * d;
+        final float i12 = (a02 * a10 - a00 * a12) * d;
+        final float i20 = c20 * d;
+        final float i21 = (a01 * a20 - a00 * a21) * d;
+        final float i22 = (a00 * a11 - a01 * a10) * d;
+
+        final int r = outOffset;
+        out[r] = i00;
+        out[r + 1] = i10;
+        out[r + 2] = i20;
+        out[r + 3] = 0f;
+        out[r + 4] = i01;
+        out[r + 5] = i11;
+        out[r + 6] = i21;
+        out[r + 7] = 0f;
+        out[r + 8] = i02;
+        out[r + 9] = i12;
+        out[r + 10] = i22;
+        out[r + 11] = 0f;
+        out[r + 12] = -(i00 * tx + i01 * ty + i02 * tz);
+        out[r + 13] = -(i10 * tx + i11 * ty + i12 * tz);
+        out[r + 14] = -(i20 * tx + i21 * ty + i22 * tz);
+        out[r + 15] = 1f;
+        return true;
+    }
+
+    /**
+     * Sets m = translation * rotation * scale in one step, e.g. from the transform of a node.
+     *
+     * @param q           A unit quaternion, see {@link Quat}.
+     * @param quatOffset  The offset of the quaternion in {@code q}.
+     */
+    public static void compose(float[] m, int offset, float tx, float ty, float tz,
+                               float[] q, int quatOffset, float sx, float sy, float sz) {
+        final float x = q[quatOffset], y = q[quatOffset + 1], z = q[quatOffset + 2], w = q[quatOffset + 3];
+        final float xx = x * x, yy = y * y, zz = z * z;
+        final float xy = x * y, xz = x * z, yz = y * z;
+        final float wx = w * x, wy = w * y, wz = w * z;
+
+        final int o = offset;
+        m[o] = (1f - 2f * (yy + zz)) * sx;
+        m[o + 1] = 2f * (xy + wz) * sx;
+        m[o + 2] = 2f * (xz - wy) * sx;
+        m[o + 3] = 0f;
+        m[o + 4] = 2f * (xy - wz) * sy;
+        m[o + 5] = (1f - 2f * (xx + zz)) * sy;
+        m[o + 6] = 2f * (yz + wx) * sy;
+        m[o + 7] = 0f;
+        m[o + 8] = 2f * (xz + wy) * sz;
+        m[o + 9] = 2f * (yz - wx) * sz;
+        m[o + 10] = (1f - 2f * (xx + yy)) * sz;
+        m[o + 11] = 0f;
+        m[o + 12] = tx;
+        m[o + 13] = ty;
+        m[o + 14] = tz;
+        m[o + 15] = 1f;
+    }
+
+    /**
+     * m = m * translation, like {@code android.opengl.Matrix.translateM}.
+     */
+    public static void translate(float[] m, int offset, float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            m[offset + 12 + i] += m[offset + i] * x + m[offset + 4 + i] * y + m[offset + 8 + i] * z;
+        }
+    }
+
+    /**
+     * m = m * scale, like {@code android.opengl.Matrix.scaleM}.
+     */
+    public static void scale(float[] m, int offset, float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            m[offset + i] *= x;
+            m[offset + 4 + i] *= y;
+            m[offset + 8 + i] *= z;
+        }
+    }
+
+    /**
+     * m = m * rotation, like {@code android.opengl.Matrix.rotateM} but without a temporary matrix.
+     *
+     * @param angle The angle in degrees, counter-clockwise around the axis.
+     */
+    public static void rotate(float[] m, int offset, float angle, float x, float y, float z) {
+        final double radians = Math.toRadians(angle);
+        final float s = (float) Math.sin(radians);
+        final float c = (float) Math.cos(radians);
+
+        final float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length == 0f) {
+            return;
+        }
+        x /= length;
+        y /= length;
+        z /= length;
+
+        final float nc = 1f - c;
+        final float r00 = x * x * nc + c, r01 = x * y * nc - z * s, r02 = x * z * nc + y * s;
+        final float r10 = y * x * nc + z * s, r11 = y * y * nc + c, r12 = y * z * nc - x * s;
+        final float r20 = z * x * nc - y * s, r21 = z * y * nc + x * s, r22 = z * z * nc + c;
+
+        // Only the first three columns change
+        for (int i = 0; i < 4; i++) {
+            final float m0 = m[offset + i];
+            final float m1 = m[offset + 4 + i];
+            final float m2 = m[offset + 8 + i];
+            m[offset + i] = m0 * r00 + m1 * r10 + m2 * r20;
+            m[offset + 4 + i] = m0 * r01 + m1 * r11 + m2 * r21;
+            m[offset + 8 + i] = m0 * r02 + m1 * r12 + m2 * r22;
+        }
+    }
+
+    /**
+     * Sets a view matrix looking from the eye at the center, like {@code android.opengl.Matrix.setLookAtM}.
+     */
+    public static void setLookAt(float[] m, int offset,
+                                 float eyeX, float eyeY, float eyeZ,
+                                 float centerX, float centerY, float centerZ,
+                                 float upX, float upY, float upZ) {
+        // Forward
+        float fx = centerX - eyeX;
+        float fy = centerY - eyeY;
+        float fz = centerZ - eyeZ;
+        final float fLength = (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+        fx /= fLength;
+        fy /= fLength;
+        fz /= fLength;
+
+        // Side = forward x up
+        float sx = fy * upZ - fz * upY;
+        float sy = fz * upX - fx * upZ;
+        float sz = fx * upY - fy * upX;
+        final float sLength = (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+        sx /= sLength;
+        sy /= sLength;
+        sz /= sLength;
+
+        // Up = side x forward
+        final float ux = sy * fz - sz * fy;
+        final float uy = sz * fx - sx * fz;
+        final float uz = sx * fy - sy * fx;
+
+        final int o = offset;
+        m[o] = sx;
+        m[o + 1] = ux;
+        m[o + 2] = -fx;
+        m[o + 3] = 0f;
+        m[o + 4] = sy;
+        m[o + 5] = uy;
+        m[o + 6] = -fy;
+        m[o + 7] = 0f;
+        m[o + 8] = sz;
+        m[o + 9] = uz;
+        m[o + 10] = -fz;
+        m[o + 11] = 0f;
+        m[o + 12] = -(sx * eyeX + sy * eyeY + sz * eyeZ);
+        m[o + 13] = -(ux * eyeX + uy * eyeY + uz * eyeZ);
+        m[o + 14] = fx * eyeX + fy * eyeY + fz * eyeZ;
+        m[o + 15] = 1f;
+    }
+
+    /**
+     * Sets a perspective projection, like {@code android.opengl.Matrix.perspectiveM}.
+     *
+     * @param fovy The vertical field of view in degrees.
+     */
+    public static void setPerspective(float[] m, int offset, float fovy, float aspect, float near, float far) {
+        final float f = 1f / (float) Math.tan(Math.toRadians(fovy) / 2.0);
+        final float rangeReciprocal = 1f / (near - far);
+
+        for (int i = 0; i < SIZE; i++) {
+            m[offset + i] = 0f;
+        }
+        m[offset] = f / aspect;
+        m[offset + 5] = f;
+        m[offset + 10] = (far + near) * rangeReciprocal;
+        m[offset + 11] = -1f;
+        m[offset + 14] = 2f * far * near * rangeReciprocal;
+    }
+}
@@ -0,0 +1,142 @@
+package com.jayway.oglhelloworld.gl.math;
+
+/**
+ * Unit quaternion operations on caller supplied float arrays, {@code x, y, z, w} starting at an offset.
+ * <p/>
+ * The output may be the same array range as any input. No shared scratch state is used.
+ */
+public final class Quat {
+    /**
+     * The number of floats of a quaternion.
+     */
+    public static final int SIZE = 4;
+
+    // Below this angle between two quaternions slerp falls back to a normalized lerp
+    private static final float SLERP_THRESHOLD = 0.9995f;
+
+    private Quat() {
+    }
+
+    public static void setIdentity(float[] q, int offset) {
+        q[offset] = 0f;
+        q[offset + 1] = 0f;
+        q[offset + 2] = 0f;
+        q[offset + 3] = 1f;
+    }
+
+    /**
+     * @param angle The angle in degrees, counter-clockwise around the axis like {@link Mat4#rotate}.
+     */
+    public static void setAxisAngle(float[] q, int offset, float angle, float x, float y, float z) {
+        final float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length == 0f) {
+            setIdentity(q, offset);
+            return;
+        }
+
+        final double half = Math.toRadians(angle) / 2.0;
+        final float s = (float) Math.sin(half) / length;
+        q[offset] = x * s;
+        q[offset + 1] = y * s;
+        q[offset + 2] = z * s;
+        q[offset + 3] = (float) Math.cos(half);
+    }
+
+    /**
+     * out = a * b, the rotation of b followed by the rotation of a.
+     */
+    public static void multiply(float[] out, int outOffset, float[] a, int aOffset, float[] b, int bOffset) {
+        final float ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], aw = a[aOffset + 3];
+        final float bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], bw = b[bOffset + 3];
+        out[outOffset] = aw * bx + ax * bw + ay * bz - az * by;
+        out[outOffset + 1] = aw * by - ax * bz + ay * bw + az * bx;
+        out[outOffset + 2] = aw * bz + ax * by - ay * bx + az * bw;
+        out[outOffset + 3] = aw * bw - ax * bx - ay * by - az * bz;
+    }
+
+    /**
+     * Scales the quaternion to unit length, which drifts when many rotations are accumulated.
+     */
+    public static void normalize(float[] q, int offset) {
+        final float x = q[offset], y = q[offset + 1], z = q[offset + 2], w = q[offset + 3];
+        final float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        if (length == 0f) {
+            setIdentity(q, offset);
+            return;
+        }
+
+        final float scale = 1f / length;
+        q[offset] = x * scale;
+        q[offset + 1] = y * scale;
+        q[offset + 2] = z * scale;
+        q[offset + 3] = w * scale;
+    }
+
+    /**
+     * Spherical interpolation along the shortest arc.
+     *
+     * @param t 0 gives a, 1 gives b.
+     */
+    public static void slerp(float[] out, int outOffset, float[] a, int aOffset, float[] b, int bOffset, float t) {
+        final float ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], aw = a[aOffset + 3];
+        float bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], bw = b[bOffset + 3];
+
+        float cos = ax * bx + ay * by + az * bz + aw * bw;
+        if (cos < 0f) {
+            // q and -q are the same rotation, take the short way
+            cos = -cos;
+            bx = -bx;
+            by = -by;
+            bz = -bz;
+            bw = -bw;
+        }
+
+        final float wa;
+        final float wb;
+        if (cos > SLERP_THRESHOLD) {
+            wa = 1f - t;
+            wb = t;
+        } else {
+            final double angle = Math.acos(cos);
+            final double sin = Math.sin(angle);
+            wa = (float) (Math.sin((1.0 - t) * angle) / sin);
+            wb = (float) (Math.sin(t * angle) / sin);
+        }
+
+        out[outOffset] = wa * ax + wb * bx;
+        out[outOffset + 1] = wa * ay + wb * by;
+        out[outOffset + 2] = wa * az + wb * bz;
+        out[outOffset + 3] = wa * aw + wb * bw;
+        if (cos > SLERP_THRESHOLD) {
+            normalize(out, outOffset);
+        }
+    }
+
+    /**
+     * Sets a 4x4 rotation matrix from a unit quaternion, without translation.
+     */
+    public static void toMat4(float[] m, int mOffset, float[] q, int offset) {
+        final float x = q[offset], y = q[offset + 1], z = q[offset + 2], w = q[offset + 3];
+        final float xx = x * x, yy = y * y, zz = z * z;
+        final float xy = x * y, xz = x * z, yz = y * z;
+        final float wx = w * x, wy = w * y, wz = w * z;
+
+        final int o = mOffset;
+        m[o] = 1f - 2f * (yy + zz);
+        m[o + 1] = 2f * (xy + wz);
+        m[o + 2] = 2f * (xz - wy);
+        m[o + 3] = 0f;
+        m[o + 4] = 2f * (xy - wz);
+        m[o + 5] = 1f - 2f * (xx + zz);
+        m[o + 6] = 2f * (yz + wx);
+        m[o + 7] = 0f;
+        m[o + 8] = 2f * (xz + wy);
+        m[o + 9] = 2f * (yz - wx);
+        m[o + 10] = 1f - 2f * (xx + yy);
+        m[o + 11] = 0f;
+        m[o + 12] = 0f;
+        m[o + 13] = 0f;
+        m[o + 14] = 0f;
+        m[o + 15] = 1f;
+    }
+}
@@ -0,0 +1,77 @@
+package com.jayway.oglhelloworld.gl.math;
+
+/**
+ * 3 component vector operations on caller supplied float arrays, {@code x, y, z} starting at an offset.
+ * <p/>
+ * The output may be the same array range as any input. No shared scratch state is used.
+ */
+public final class Vec3 {
+    /**
+     * The number of floats of a vector.
+     */
+    public static final int SIZE = 3;
+
+    private Vec3() {
+    }
+
+    public static void set(float[] out, int outOffset, float x, float y, float z) {
+        out[outOffset] = x;
+        out[outOffset + 1] = y;
+        out[outOffset + 2] = z;
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        return a[aOffset] * b[bOffset] + a[aOffset + 1] * b[bOffset + 1] + a[aOffset + 2] * b[bOffset + 2];
+    }
+
+    /**
+     * out = a x b
+     */
+    public static void cross(float[] out, int outOffset, float[] a, int aOffset, float[] b, int bOffset) {
+        final float ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2];
+        final float bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2];
+        out[outOffset] = ay * bz - az * by;
+        out[outOffset + 1] = az * bx - ax * bz;
+        out[outOffset + 2] = ax * by - ay * bx;
+    }
+
+    public static float length(float[] v, int offset) {
+        return (float) Math.sqrt(dot(v, offset, v, offset));
+    }
+
+    /**
+     * Scales the vector to unit length, zero vectors are left unchanged.
+     *
+     * @return The length before normalizing.
+     */
+    public static float normalize(float[] v, int offset) {
+        final float length = length(v, offset);
+        if (length > 0f) {
+            final float scale = 1f / length;
+            v[offset] *= scale;
+            v[offset + 1] *= scale;
+            v[offset + 2] *= scale;
+        }
+        return length;
+    }
+
+    /**
+     * out = m * (v, 1), for a 4x4 matrix whose bottom row is (0, 0, 0, 1).
+     */
+    public static void transformPoint(float[] out, int outOffset, float[] m, int mOffset, float[] v, int vOffset) {
+        final float x = v[vOffset], y = v[vOffset + 1], z = v[vOffset + 2];
+        out[outOffset] = m[mOffset] * x + m[mOffset + 4] * y + m[mOffset + 8] * z + m[mOffset + 12];
+        out[outOffset + 1] = m[mOffset + 1] * x + m[mOffset + 5] * y + m[mOffset + 9] * z + m[mOffset + 13];
+        out[outOffset + 2] = m[mOffset + 2] * x + m[mOffset + 6] * y + m[mOffset + 10] * z + m[mOffset + 14];
+    }
+
+    /**
+     * out = m * (v, 0), e.g. a direction which is not affected by the translation of a 4x4 matrix.
+     */
+    public static void transformDirection(float[] out, int outOffset, float[] m, int mOffset, float[] v, int vOffset) {
+        final float x = v[vOffset], y = v[vOffset + 1], z = v[vOffset + 2];
+        out[outOffset] = m[mOffset] * x + m[mOffset + 4] * y + m[mOffset + 8] * z;
+        out[outOffset + 1] = m[mOffset + 1] * x + m[mOffset + 5] * y + m[mOffset + 9] * z;
+        out[outOffset + 2] = m[mOffset + 2] * x + m[mOffset + 6] * y + m[mOffset + 10] * z;
+    }
+}
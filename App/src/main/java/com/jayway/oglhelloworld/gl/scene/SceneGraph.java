@@ -0,0 +1,260 @@
+package com.jayway.oglhelloworld.gl.scene;
+
+import com.jayway.oglhelloworld.gl.GlObject;
+import com.jayway.oglhelloworld.gl.math.Mat4;
+import com.jayway.oglhelloworld.gl.math.Quat;
+import com.jayway.oglhelloworld.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * A hierarchy of nodes, each with a local translation, rotation and scale relative to its parent, and optionally a
+ * {@link GlObject} which is drawn with the world matrix of the node.
+ * <p/>
+ * Nodes are stored in flat arrays ordered so that every parent comes before its children, which holds since a
+ * node can only be created under an existing one. {@link #update()} is therefore a single linear pass: a node is
+ * recomputed if its local transform changed or its parent was recomputed earlier in the same pass, all other nodes
+ * only cost a flag check.
+ * <p/>
+ * Notice: Nodes are identified by their index, they can not be removed or moved to another parent. Not thread safe,
+ * a graph should be modified and updated on one thread.
+ */
+public class SceneGraph {
+    private static final Log LOG = new Log(SceneGraph.class);
+
+    /**
+     * The parent of root nodes.
+     */
+    public static final int NO_NODE = -1;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int mSize;
+
+    // Per node, in parent order
+    private int[] mParents;
+    private float[] mTranslations;
+    private float[] mRotations;
+    private float[] mScales;
+    private float[] mWorldMatrices;
+    private GlObject[] mMeshes;
+
+    // Local transform changed since the last update
+    private boolean[] mDirty;
+
+    // World matrix recomputed by the current update, read by the children later in the same pass
+    private boolean[] mChanged;
+
+    private final float[] mLocalMatrix = new float[Mat4.SIZE];
+
+    // Statistics of the last update
+    private int mUpdatedCount;
+
+    public SceneGraph() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of nodes to allocate room for, the graph grows when needed.
+     */
+    public SceneGraph(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Creates a node with an identity transform.
+     *
+     * @param parent An existing node, or {@link #NO_NODE} for a root node.
+     * @return The node, or {@link #NO_NODE} if the parent does not exist.
+     */
+    public int createNode(int parent) {
+        if (parent < NO_NODE || parent >= mSize) {
+            LOG.e("Can not create a node under " + parent + ", there are " + mSize + " nodes");
+            return NO_NODE;
+        }
+
+        if (mSize == mParents.length) {
+            allocate(mSize * 2);
+        }
+
+        final int node = mSize++;
+        mParents[node] = parent;
+        mTranslations[node * 3] = 0f;
+        mTranslations[node * 3 + 1] = 0f;
+        mTranslations[node * 3 + 2] = 0f;
+        Quat.setIdentity(mRotations, node * 4);
+        mScales[node * 3] = 1f;
+        mScales[node * 3 + 1] = 1f;
+        mScales[node * 3 + 2] = 1f;
+        mMeshes[node] = null;
+        mDirty[node] = true;
+        return node;
+    }
+
+    /**
+     * Removes all nodes.
+     */
+    public void clear() {
+        Arrays.fill(mMeshes, 0, mSize, null);
+        mSize = 0;
+    }
+
+    public int getNodeCount() {
+        return mSize;
+    }
+
+    public int getParent(int node) {
+        return mParents[node];
+    }
+
+    // Local transform
+
+    public void setTranslation(int node, float x, float y, float z) {
+        mTranslations[node * 3] = x;
+        mTranslations[node * 3 + 1] = y;
+        mTranslations[node * 3 + 2] = z;
+        mDirty[node] = true;
+    }
+
+    /**
+     * @param angle The angle in degrees, counter-clockwise around the axis.
+     */
+    public void setRotation(int node, float angle, float x, float y, float z) {
+        Quat.setAxisAngle(mRotations, node * 4, angle, x, y, z);
+        mDirty[node] = true;
+    }
+
+    /**
+     * @param q      A unit quaternion.
+     * @param offset The offset of the quaternion in {@code q}.
+     */
+    public void setRotation(int node, float[] q, int offset) {
+        System.arraycopy(q, offset, mRotations, node * 4, 4);
+        mDirty[node] = true;
+    }
+
+    public void setScale(int node, float x, float y, float z) {
+        mScales[node * 3] = x;
+        mScales[node * 3 + 1] = y;
+        mScales[node * 3 + 2] = z;
+        mDirty[node] = true;
+    }
+
+    // Meshes
+
+    /**
+     * Attaches a mesh to a node, its {@link GlObject#modelMatrix} is then set to the world matrix of the node on
+     * every update which changes it.
+     *
+     * @param mesh The mesh, or {@code null} to detach the current one.
+     */
+    public void attach(int node, GlObject mesh) {
+        mMeshes[node] = mesh;
+        mDirty[node] = true;
+    }
+
+    /**
+     * @return The attached mesh, or {@code null}.
+     */
+    public GlObject getMesh(int node) {
+        return mMeshes[node];
+    }
+
+    // World transform
+
+    /**
+     * Recomputes the world matrices of all nodes whose local transform, or the transform of an ancestor, changed
+     * since the last update.
+     *
+     * @return The number of recomputed nodes.
+     */
+    public int update() {
+        final int[] parents = mParents;
+        final boolean[] dirty = mDirty;
+        final boolean[] changed = mChanged;
+        final float[] world = mWorldMatrices;
+        final float[] local = mLocalMatrix;
+
+        int updated = 0;
+        for (int node = 0; node < mSize; node++) {
+            final int parent = parents[node];
+            final boolean parentChanged = parent != NO_NODE && changed[parent];
+
+            if (!dirty[node] && !parentChanged) {
+                changed[node] = false;
+                continue;
+            }
+
+            final int t = node * 3;
+            if (parent == NO_NODE) {
+                Mat4.compose(world, node * Mat4.SIZE,
+                             mTranslations[t], mTranslations[t + 1], mTranslations[t + 2],
+                             mRotations, node * 4,
+                             mScales[t], mScales[t + 1], mScales[t + 2]);
+            } else {
+                Mat4.compose(local, 0,
+                             mTranslations[t], mTranslations[t + 1], mTranslations[t + 2],
+                             mRotations, node * 4,
+                             mScales[t], mScales[t + 1], mScales[t + 2]);
+                Mat4.multiplyAffine(world, node * Mat4.SIZE, world, parent * Mat4.SIZE, local, 0);
+            }
+
+            final GlObject mesh = mMeshes[node];
+            if (mesh != null) {
+                System.arraycopy(world, node * Mat4.SIZE, mesh.modelMatrix, 0, Mat4.SIZE);
+                mesh.invalidateModelMatrix();
+            }
+
+            dirty[node] = false;
+            changed[node] = true;
+            updated++;
+        }
+
+        mUpdatedCount = updated;
+        return updated;
+    }
+
+    /**
+     * @return The number of nodes recomputed by the last update.
+     */
+    public int getUpdatedCount() {
+        return mUpdatedCount;
+    }
+
+    /**
+     * Copies the world matrix of a node as of the last update.
+     */
+    public void getWorldMatrix(int node, float[] out, int offset) {
+        System.arraycopy(mWorldMatrices, node * Mat4.SIZE, out, offset, Mat4.SIZE);
+    }
+
+    /**
+     * @return The world matrices of all nodes as of the last update, {@link Mat4#SIZE} floats per node starting at
+     * {@code node * Mat4.SIZE}. Exposed directly for performance reasons, must not be modified.
+     */
+    public float[] getWorldMatrices() {
+        return mWorldMatrices;
+    }
+
+    private void allocate(int capacity) {
+        if (mParents == null) {
+            mParents = new int[capacity];
+            mTranslations = new float[capacity * 3];
+            mRotations = new float[capacity * 4];
+            mScales = new float[capacity * 3];
+            mWorldMatrices = new float[capacity * Mat4.SIZE];
+            mMeshes = new GlObject[capacity];
+            mDirty = new boolean[capacity];
+            mChanged = new boolean[capacity];
+        } else {
+            mParents = Arrays.copyOf(mParents, capacity);
+            mTranslations = Arrays.copyOf(mTranslations, capacity * 3);
+            mRotations = Arrays.copyOf(mRotations, capacity * 4);
+            mScales = Arrays.copyOf(mScales, capacity * 3);
+            mWorldMatrices = Arrays.copyOf(mWorldMatrices, capacity * Mat4.SIZE);
+            mMeshes = Arrays.copyOf(mMeshes, capacity);
+            mDirty = Arrays.copyOf(mDirty, capacity);
+            mChanged = Arrays.copyOf(mChanged, capacity);
+        }
+    }
+}
@@ -2,13 +2,14 @@ package com.jayway.oglhelloworld.gl.util;
 
 import android.util.Log;
 
+import com.jayway.oglhelloworld.gl.GlBackend;
+
 import static android.opengl.GLES20.GL_INVALID_ENUM;
 import static android.opengl.GLES20.GL_INVALID_FRAMEBUFFER_OPERATION;
 import static android.opengl.GLES20.GL_INVALID_OPERATION;
 import static android.opengl.GLES20.GL_INVALID_VALUE;
 import static android.opengl.GLES20.GL_NO_ERROR;
 import static android.opengl.GLES20.GL_OUT_OF_MEMORY;
-import static android.opengl.GLES20.glGetError;
 
 /**
  * Provides simple utility functionality for OpenGL ES i.e. GLES.
@@ -18,16 +19,16 @@ import static android.opengl.GLES20.glGetError;
 public class GLESUtil {
     private static final String LOGTAG = GLESUtil.class.getSimpleName();
 
-    public static void checkGlError(String op) {
+    public static void checkGlError(GlBackend gl, String op) {
         int error;
-        while ((error = glGetError()) != GL_NO_ERROR) {
+        while ((error = gl.glGetError()) != GL_NO_ERROR) {
             Log.e(LOGTAG, op + ": glError " + error + ":" + getShortDescription(error));
         }
     }
 
-    public static void checkAndHaltOnGlError(String op) {
+    public static void checkAndHaltOnGlError(GlBackend gl, String op) {
         int error;
-        if ((error = glGetError()) != GL_NO_ERROR) {
+        if ((error = gl.glGetError()) != GL_NO_ERROR) {
             String msg = op + ": glError " + error + ":" + getShortDescription(error);
             Log.e(LOGTAG, msg);
             throw new RuntimeException("GLES Error: " + msg);
@@ -0,0 +1,128 @@
+package com.jayway.oglhelloworld.gl.util;
+
+import com.jayway.oglhelloworld.gl.GlObject;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static android.opengl.GLES20.GL_TRIANGLES;
+import static android.opengl.GLES20.GL_TRIANGLE_FAN;
+import static android.opengl.GLES20.GL_TRIANGLE_STRIP;
+
+/**
+ * Helpers for reading the mesh data of a {@link GlObject} on the CPU, e.g. for the mesh processing tools.
+ */
+public class MeshUtil {
+
+    /**
+     * @return true if the render mode is made of triangles, i.e. if {@link #getTriangleList(GlObject)} supports it.
+     */
+    public static boolean isTriangleMode(int glRenderMode) {
+        return glRenderMode == GL_TRIANGLES || glRenderMode == GL_TRIANGLE_STRIP || glRenderMode == GL_TRIANGLE_FAN;
+    }
+
+    /**
+     * @param glObject The object.
+     * @param i        The position in the index buffer, or the vertex itself for non-indexed objects.
+     * @return The vertex index.
+     */
+    public static int getIndex(GlObject glObject, int i) {
+        final Buffer indices = glObject.iBuffer;
+        if (indices == null) {
+            return i;
+        } else if (indices instanceof ShortBuffer) {
+            return ((ShortBuffer) indices).get(i) & 0xFFFF;
+        } else {
+            return ((IntBuffer) indices).get(i);
+        }
+    }
+
+    /**
+     * Returns the triangles of an object as a triangle list. Strips and fans are converted keeping the winding of
+     * each triangle, degenerate triangles are dropped since they only stitch strips together.
+     *
+     * @param glObject The object, see {@link #isTriangleMode(int)}.
+     * @return Three vertex indices per triangle, or an empty array if the render mode is not made of triangles.
+     */
+    public static int[] getTriangleList(GlObject glObject) {
+        final int count = glObject.isIndexed() ? glObject.iCount : glObject.vCount;
+
+        final int maxTriangles;
+        switch (glObject.glRenderMode) {
+            case GL_TRIANGLES:
+                maxTriangles = count / 3;
+                break;
+            case GL_TRIANGLE_STRIP:
+            case GL_TRIANGLE_FAN:
+                maxTriangles = Math.max(0, count - 2);
+                break;
+            default:
+                return new int[0];
+        }
+
+        final int[] triangles = new int[maxTriangles * 3];
+        int size = 0;
+
+        switch (glObject.glRenderMode) {
+            case GL_TRIANGLES:
+                for (int i = 0; i + 2 < count; i += 3) {
+                    size = addTriangle(triangles, size,
+                                       getIndex(glObject, i), getIndex(glObject, i + 1), getIndex(glObject, i + 2));
+                }
+                break;
+            case GL_TRIANGLE_STRIP:
+                for (int i = 0; i + 2 < count; i++) {
+                    final int a = getIndex(glObject, i);
+                    final int b = getIndex(glObject, i + 1);
+                    final int c = getIndex(glObject, i + 2);
+
+                    // Every other triangle in a strip has its first two vertices swapped to keep the winding
+                    if ((i & 1) == 0) {
+                        size = addTriangle(triangles, size, a, b, c);
+                    } else {
+                        size = addTriangle(triangles, size, b, a, c);
+                    }
+                }
+                break;
+            case GL_TRIANGLE_FAN:
+                final int center = getIndex(glObject, 0);
+                for (int i = 1; i + 1 < count; i++) {
+                    size = addTriangle(triangles, size, center, getIndex(glObject, i), getIndex(glObject, i + 1));
+                }
+                break;
+        }
+
+        if (size == triangles.length) {
+            return triangles;
+        }
+        final int[] trimmed = new int[size];
+        System.arraycopy(triangles, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    /**
+     * @return A copy of the float vertex data of an object, {@link GlObject#vCount} vertices laid out according to
+     * its vertex type.
+     */
+    public static float[] getVertexData(GlObject glObject) {
+        final FloatBuffer data = glObject.getFloatVertexData().duplicate();
+        data.position(0);
+
+        final float[] vertices = new float[glObject.vCount * glObject.vertexType.getDimension()];
+        data.get(vertices);
+        return vertices;
+    }
+
+    private static int addTriangle(int[] triangles, int size, int a, int b, int c) {
+        if (a == b || b == c || a == c) {
+            return size;
+        }
+
+        triangles[size] = a;
+        triangles[size + 1] = b;
+        triangles[size + 2] = c;
+        return size + 3;
+    }
+}
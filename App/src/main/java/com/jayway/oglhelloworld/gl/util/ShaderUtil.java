@@ -2,6 +2,8 @@ package com.jayway.oglhelloworld.gl.util;
 
 import android.content.Context;
 
+import com.jayway.oglhelloworld.frame.Profiler;
+import com.jayway.oglhelloworld.gl.GlBackend;
 import com.jayway.oglhelloworld.util.Log;
 
 import java.io.BufferedReader;
@@ -15,18 +17,6 @@ import static android.opengl.GLES20.GL_FALSE;
 import static android.opengl.GLES20.GL_FRAGMENT_SHADER;
 import static android.opengl.GLES20.GL_LINK_STATUS;
 import static android.opengl.GLES20.GL_VERTEX_SHADER;
-import static android.opengl.GLES20.glAttachShader;
-import static android.opengl.GLES20.glCompileShader;
-import static android.opengl.GLES20.glCreateProgram;
-import static android.opengl.GLES20.glCreateShader;
-import static android.opengl.GLES20.glDeleteProgram;
-import static android.opengl.GLES20.glDeleteShader;
-import static android.opengl.GLES20.glGetProgramInfoLog;
-import static android.opengl.GLES20.glGetProgramiv;
-import static android.opengl.GLES20.glGetShaderInfoLog;
-import static android.opengl.GLES20.glGetShaderiv;
-import static android.opengl.GLES20.glLinkProgram;
-import static android.opengl.GLES20.glShaderSource;
 
 /**
  * Utility class for loading shader source as well as compiling and linking them.
@@ -41,31 +31,34 @@ public class ShaderUtil {
     /**
      * Create and links an OpenGL shader program from the attached shader sources.
      *
+     * @param gl             The backend to issue the GL calls on.
      * @param vertexSource   The vertex shader source.
      * @param fragmentSource The fragment shader source.
      * @return The OpenGL handle for the shader program.
      */
-    public static int createAndLinkShaderProgram(String vertexSource, String fragmentSource) {
+    public static int createAndLinkShaderProgram(GlBackend gl, String vertexSource, String fragmentSource) {
+        Profiler.begin("compile shaders");
         int program = CREATE_PROGRAM_FAILED;
 
-        int vertexShader = createShader(GL_VERTEX_SHADER, vertexSource);
-        int fragmentShader = createShader(GL_FRAGMENT_SHADER, fragmentSource);
+        int vertexShader = createShader(gl, GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader = createShader(gl, GL_FRAGMENT_SHADER, fragmentSource);
 
         if (verifyShaderProgram(vertexShader, fragmentShader)) {
-            program = glCreateProgram();
+            program = gl.glCreateProgram();
             if (program != CREATE_PROGRAM_FAILED) {
-                glAttachShader(program, vertexShader);
-                glAttachShader(program, fragmentShader);
+                gl.glAttachShader(program, vertexShader);
+                gl.glAttachShader(program, fragmentShader);
 
-                glLinkProgram(program);
-                if (getLinkStatus(program) == GL_FALSE) {
+                gl.glLinkProgram(program);
+                if (getLinkStatus(gl, program) == GL_FALSE) {
                     LOG.e("Could not link program : " + program);
-                    LOG.e(glGetProgramInfoLog(program));
+                    LOG.e(gl.glGetProgramInfoLog(program));
                     program = CREATE_PROGRAM_FAILED;
                 }
             }
         }
 
+        Profiler.end("compile shaders");
         return program;
     }
 
@@ -104,20 +97,21 @@ public class ShaderUtil {
     /**
      * Compiles the shader of {@code shaderType} with the {@code source}.
      *
+     * @param gl         The backend to issue the GL calls on.
      * @param shaderType The shader type,
      *                   e.g. {@link android.opengl.GLES20#GL_VERTEX_SHADER} or
      *                   {@link android.opengl.GLES20#GL_FRAGMENT_SHADER}.
      * @param source     The shader source.
      * @return The shader handle or {@link #CREATE_SHADER_FAILED} if it failed to create the shader.
      */
-    private static int createShader(int shaderType, String source) {
-        int shader = glCreateShader(shaderType);
+    private static int createShader(GlBackend gl, int shaderType, String source) {
+        int shader = gl.glCreateShader(shaderType);
         if (shader != CREATE_SHADER_FAILED) {
-            glShaderSource(shader, source);
-            glCompileShader(shader);
-            if (getCompileStatus(shader) == CREATE_SHADER_FAILED) {
+            gl.glShaderSource(shader, source);
+            gl.glCompileShader(shader);
+            if (getCompileStatus(gl, shader) == CREATE_SHADER_FAILED) {
                 LOG.e(getShaderTypeName(shaderType) + "(" + shaderType + ") : ");
-                LOG.e(glGetShaderInfoLog(shader));
+                LOG.e(gl.glGetShaderInfoLog(shader));
                 shader = CREATE_SHADER_FAILED;
             }
         }
@@ -128,16 +122,17 @@ public class ShaderUtil {
     /**
      * Returns the compilation status for shader of type {@code shaderType}.
      *
+     * @param gl            The backend to issue the GL calls on.
      * @param shaderProgram The shader program handle.
      * @return {@link android.opengl.GLES20#GL_TRUE} if compilation was successful otherwise
      * {@link android.opengl.GLES20#GL_FALSE}
      */
-    protected static int getCompileStatus(int shaderProgram) {
+    protected static int getCompileStatus(GlBackend gl, int shaderProgram) {
         int[] compileStatus = new int[1];
-        glGetShaderiv(shaderProgram, GL_COMPILE_STATUS, compileStatus, 0);
+        gl.glGetShaderiv(shaderProgram, GL_COMPILE_STATUS, compileStatus, 0);
 
         if (compileStatus[0] == CREATE_SHADER_FAILED) {
-            glDeleteShader(shaderProgram);
+            gl.glDeleteShader(shaderProgram);
         }
 
         return compileStatus[0];
@@ -146,16 +141,17 @@ public class ShaderUtil {
     /**
      * Checks if the a shader has linked successfully.
      *
+     * @param gl            The backend to issue the GL calls on.
      * @param shaderProgram The shader shaderProgram handle.
      * @return {@link android.opengl.GLES20#GL_TRUE} if the linking was successful otherwise
      * {@link android.opengl.GLES20#GL_FALSE}
      */
-    protected static int getLinkStatus(int shaderProgram) {
+    protected static int getLinkStatus(GlBackend gl, int shaderProgram) {
         int[] linkStatus = new int[1];
-        glGetProgramiv(shaderProgram, GL_LINK_STATUS, linkStatus, 0);
+        gl.glGetProgramiv(shaderProgram, GL_LINK_STATUS, linkStatus, 0);
 
         if (linkStatus[0] == GL_FALSE) {
-            glDeleteProgram(shaderProgram);
+            gl.glDeleteProgram(shaderProgram);
         }
 
         return linkStatus[0];
@@ -5,6 +5,8 @@ import android.opengl.GLSurfaceView;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 
+import com.jayway.oglhelloworld.frame.ChoreographerFrameClock;
+import com.jayway.oglhelloworld.frame.FrameLoop;
 import com.jayway.oglhelloworld.gl.GlObject;
 import com.jayway.oglhelloworld.gl.GlObjectManager;
 
@@ -15,10 +17,6 @@ import java.util.Observer;
  * Created by Andreas Nilsson
  */
 public class GLES20SurfaceView extends GLSurfaceView {
-    // Constants
-    private static final long ANIMATION_DELAY = 16; // In milliseconds
-    private static final float ANIMATION_DELAY_IN_S = ANIMATION_DELAY / 1000f;
-
     // Renderer
     private final GLES20Renderer mRenderer;
 
@@ -26,21 +24,26 @@ public class GLES20SurfaceView extends GLSurfaceView {
     private float mPreviousX;
     private float mPreviousY;
 
-    // Animation
-    private boolean mIsAnimating = false;
+    // Animation, stepped at a fixed rate and drawn once per vsync
+    private FrameLoop mFrameLoop;
     private GlObject mAnimationTarget;
 
-    private final Runnable mAnimationRunnable = new Runnable() {
+    private final FrameLoop.Listener mAnimationListener = new FrameLoop.Listener() {
         @Override
-        public void run() {
-            if (mIsAnimating) {
-                if (mAnimationTarget != null) {
-                    mAnimationTarget.update(ANIMATION_DELAY_IN_S);
-                }
+        public void onStep(final float dt) {
+            if (mAnimationTarget != null) {
+                mAnimationTarget.update(dt);
+            }
+        }
 
-                requestRender();
-                postDelayed(mAnimationRunnable, ANIMATION_DELAY);
+        @Override
+        public void onRender(final float alpha) {
+            if (mAnimationTarget != null) {
+                mAnimationTarget.getTransform().setInterpolation(alpha);
+                mAnimationTarget.publishTransform();
             }
+
+            requestRender();
         }
     };
 
@@ -54,6 +57,16 @@ public class GLES20SurfaceView extends GLSurfaceView {
                     requestRender();
                 }
             });
+
+            // The animation state is only touched on the UI thread
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isAnimating()) {
+                        setAnimationTarget((GlObject) data);
+                    }
+                }
+            });
         }
     };
 
@@ -77,6 +90,8 @@ public class GLES20SurfaceView extends GLSurfaceView {
         setRenderer(mRenderer);
         setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
 
+        mFrameLoop = new FrameLoop(new ChoreographerFrameClock(), mAnimationListener);
+
         // Let the gl wrapper check for errors
         setDebugFlags(DEBUG_CHECK_GL_ERROR);
         // Stop the GL context from being destroyed when the the activity pauses.
@@ -106,14 +121,18 @@ public class GLES20SurfaceView extends GLSurfaceView {
                 float dx = x - mPreviousX;
                 float dy = y - mPreviousY;
 
-                final GlObject glObject = GlObjectManager.getInstance().getSelectedObject();
-
+                final GlObjectManager manager = GlObjectManager.getInstance();
+                final GlObject glObject = manager.getSelectedObject();
+                if (manager.isPlaceholder(glObject)) {
+                    break;
+                }
 
                 float newRotationX = glObject.getRotationX() + dx * touchScaleFactor;
                 float newRotationY = glObject.getRotationY() + dy * touchScaleFactor;
 
                 glObject.setRotationX(newRotationX);
                 glObject.setRotationY(newRotationY);
+                glObject.publishTransform();
 
                 requestRender();
         }
@@ -129,20 +148,43 @@ public class GLES20SurfaceView extends GLSurfaceView {
     }
 
     public boolean setAnimating(final boolean doAnimate) {
-        mIsAnimating = doAnimate;
-
-        if (mIsAnimating) {
-            mAnimationTarget = GlObjectManager.getInstance().getSelectedObject();
-            postDelayed(mAnimationRunnable, ANIMATION_DELAY);
+        if (doAnimate) {
+            if (!isAnimating()) {
+                // Each animation is measured on its own
+                mRenderer.getFrameMetrics().reset();
+                mRenderer.setAnimating(true);
+            }
+            setAnimationTarget(GlObjectManager.getInstance().getSelectedObject());
+            mFrameLoop.start();
         } else {
-            removeCallbacks(mAnimationRunnable);
+            mFrameLoop.stop();
+            // Before the last frame is requested, which is rendered on demand
+            mRenderer.setAnimating(false);
+            mRenderer.getFrameMetrics().log();
+            setAnimationTarget(null);
+        }
+
+        return mFrameLoop.isRunning();
+    }
+
+    /**
+     * @param glObject The object to animate, the placeholder is not animated until the real object is delivered.
+     */
+    private void setAnimationTarget(final GlObject glObject) {
+        // Leave the previous target at its last step rather than a state between steps
+        if (mAnimationTarget != null) {
+            mAnimationTarget.getTransform().setInterpolation(1f);
+            mAnimationTarget.publishTransform();
+            requestRender();
         }
 
-        return mIsAnimating;
+        mAnimationTarget = glObject != null && !GlObjectManager.getInstance().isPlaceholder(glObject)
+                ? glObject
+                : null;
     }
 
     public boolean isAnimating() {
-        return mIsAnimating;
+        return mFrameLoop.isRunning();
     }
 
 }
@@ -10,11 +10,24 @@ import android.view.Menu;
 import android.view.MenuItem;
 
 import com.jayway.oglhelloworld.R;
+import com.jayway.oglhelloworld.frame.Profiler;
+import com.jayway.oglhelloworld.gl.GlObjectManager;
+import com.jayway.oglhelloworld.gl.MeshCache;
 import com.jayway.oglhelloworld.navigation.NavigationDrawerFragment;
 
+import java.io.File;
+
 public class MainActivity extends ActionBarActivity
         implements NavigationDrawerFragment.NavigationDrawerCallbacks {
 
+    // Frames to capture from startup into a Chrome trace in the cache dir, 0 to disable, see Profiler
+    private static final int PROFILE_STARTUP_FRAMES = 0;
+    private static final String PROFILE_FILE_NAME = "startup_trace.json";
+
+    // Generated meshes are kept in the cache dir between launches, see MeshCache
+    private static final String MESH_CACHE_DIR = "meshes";
+    private static final long MESH_CACHE_SIZE = 16 * 1024 * 1024; // In bytes
+
     /**
      * Fragment managing the behaviors, interactions and presentation of the navigation drawer.
      */
@@ -29,6 +42,10 @@ public class MainActivity extends ActionBarActivity
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (PROFILE_STARTUP_FRAMES > 0) {
+            Profiler.startCapture(PROFILE_STARTUP_FRAMES, new File(getCacheDir(), PROFILE_FILE_NAME));
+        }
+        GlObjectManager.setMeshCache(new MeshCache(new File(getCacheDir(), MESH_CACHE_DIR), MESH_CACHE_SIZE));
         setContentView(R.layout.activity_main);
 
         mNavigationDrawerFragment = (NavigationDrawerFragment)
@@ -3,7 +3,7 @@ attribute vec2 a_texcoord;
 attribute vec3 a_normal;
 
 uniform mat4 mvp_matrix;
-uniform mat4 normal_matrix;
+uniform mat3 normal_matrix;
 
 // ec = eye coordinate
 varying vec3 ec_normal;
@@ -18,8 +18,8 @@ void main()
 	vec3 v = a_position.xyz;
 	
 	//No normalization here, is done in the fragment shader instead.
-	ec_normal    = mat3(normal_matrix) * a_normal;
-    ec_view_dir  = -(mat3(normal_matrix) * v);
+	ec_normal    = normal_matrix * a_normal;
+    ec_view_dir  = -(normal_matrix * v);
     ec_light_dir = light_pos - v;
 
     uv = a_texcoord;
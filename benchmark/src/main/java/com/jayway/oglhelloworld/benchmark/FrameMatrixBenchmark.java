@@ -0,0 +1,111 @@
+package com.jayway.oglhelloworld.benchmark;
+
+import android.opengl.Matrix;
+
+import com.jayway.oglhelloworld.gl.Transform;
+import com.jayway.oglhelloworld.gl.math.Mat3;
+import com.jayway.oglhelloworld.gl.math.Mat4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The matrix work done per object and frame in {@code SceneRenderer.drawObject}, with the
+ * {@link com.jayway.oglhelloworld.gl.math} package compared to the {@code android.opengl.Matrix} path it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FrameMatrixBenchmark {
+
+    private final float[] mModelMatrix = new float[16];
+    private final float[] mViewMatrix = new float[16];
+    private final float[] mProjectionMatrix = new float[16];
+
+    private final float[] mModelViewMatrix = new float[16];
+    private final float[] mMVPMatrix = new float[16];
+    private final float[] mNormalMatrix = new float[16];
+    private final float[] mNormalMatrix3 = new float[Mat3.SIZE];
+    private final float[] mInverse = new float[16];
+
+    private final Transform mTransform = new Transform();
+
+    @Setup
+    public void setup() {
+        // Same camera as the renderer, with a rotated object
+        Mat4.setIdentity(mModelMatrix, 0);
+        Mat4.rotate(mModelMatrix, 0, 30, 1, 0, 0);
+        Mat4.rotate(mModelMatrix, 0, 45, 0, 1, 0);
+        Mat4.setLookAt(mViewMatrix, 0, 0, 0, 5, 0, 0, 0, 0, 1, 0);
+        Mat4.setPerspective(mProjectionMatrix, 0, 45, 16 / 9f, .1f, 100f);
+        Mat4.multiplyAffine(mModelViewMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
+    }
+
+    @Benchmark
+    public float[] frame() {
+        Mat4.multiplyAffine(mModelViewMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
+        Mat4.multiply(mMVPMatrix, 0, mProjectionMatrix, 0, mModelViewMatrix, 0);
+        Mat3.normalMatrix(mNormalMatrix3, 0, mModelViewMatrix, 0);
+        return mNormalMatrix3;
+    }
+
+    @Benchmark
+    public float[] frameAndroidMatrix() {
+        Matrix.setIdentityM(mMVPMatrix, 0);
+        Matrix.multiplyMM(mModelViewMatrix, 0, mViewMatrix, 0, mModelMatrix, 0);
+        Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mModelViewMatrix, 0);
+        Matrix.setIdentityM(mNormalMatrix, 0);
+        Matrix.invertM(mInverse, 0, mModelViewMatrix, 0);
+        Matrix.transposeM(mNormalMatrix, 0, mInverse, 0);
+        return mNormalMatrix;
+    }
+
+    @Benchmark
+    public float[] normalMatrix() {
+        Mat3.normalMatrix(mNormalMatrix3, 0, mModelViewMatrix, 0);
+        return mNormalMatrix3;
+    }
+
+    @Benchmark
+    public float[] normalMatrixAndroidMatrix() {
+        Matrix.invertM(mInverse, 0, mModelViewMatrix, 0);
+        Matrix.transposeM(mNormalMatrix, 0, mInverse, 0);
+        return mNormalMatrix;
+    }
+
+    @Benchmark
+    public float[] animate() {
+        // GlObject.update() at 60 fps
+        mTransform.integrate(60, 120, 120, 1 / 60f);
+        mTransform.updateMatrix(mModelMatrix, 0);
+        return mModelMatrix;
+    }
+
+    @Benchmark
+    public float[] animateRotate() {
+        // GlObject.update() before the transform, one rotation per axis
+        Mat4.rotate(mModelMatrix, 0, 1, 1, 0, 0);
+        Mat4.rotate(mModelMatrix, 0, 2, 0, 1, 0);
+        Mat4.rotate(mModelMatrix, 0, 2, 0, 0, 1);
+        return mModelMatrix;
+    }
+
+    @Benchmark
+    public float[] rotate() {
+        Mat4.rotate(mModelMatrix, 0, 1, 0, 0, 1);
+        return mModelMatrix;
+    }
+
+    @Benchmark
+    public float[] rotateAndroidMatrix() {
+        Matrix.rotateM(mModelMatrix, 0, 1, 0, 0, 1);
+        return mModelMatrix;
+    }
+}
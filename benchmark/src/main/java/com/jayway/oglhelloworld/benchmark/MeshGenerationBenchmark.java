@@ -0,0 +1,60 @@
+package com.jayway.oglhelloworld.benchmark;
+
+import com.jayway.oglhelloworld.gl.GlObject;
+import com.jayway.oglhelloworld.gl.GlObjectFactory;
+import com.jayway.oglhelloworld.gl.VertexType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesh generation as done by {@link com.jayway.oglhelloworld.gl.GlObjectManager} on startup.
+ * The tessellation is used for both the ring and the tube of the torus, and as vertex count for
+ * {@link GlObjectFactory#concatVertices(VertexType, float[]...)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeshGenerationBenchmark {
+
+    @Param({"10", "40", "100", "400"})
+    public int tessellation;
+
+    private float[][] mVertices;
+
+    @Setup
+    public void setup() {
+        mVertices = new float[tessellation * tessellation][];
+        for (int i = 0; i < mVertices.length; i++) {
+            mVertices[i] = new float[]{i, i + 1, i + 2, 0.5f, 0.5f, 0, 0, 1};
+        }
+    }
+
+    @Benchmark
+    public GlObject createTorus() {
+        return GlObjectFactory.createTorus(0.7f, 0.4f, tessellation, tessellation, true, true);
+    }
+
+    @Benchmark
+    public GlObject createCube() {
+        return GlObjectFactory.createCube(1, 1, 1, true, true);
+    }
+
+    @Benchmark
+    public GlObject createCubeWithFlatNormals() {
+        return GlObjectFactory.createCubeWithFlatNormals(1, 1, 1, true, true);
+    }
+
+    @Benchmark
+    public float[] concatVertices() {
+        return GlObjectFactory.concatVertices(VertexType.VERTEX_TYPE_POS_UV_NORMAL, mVertices);
+    }
+}
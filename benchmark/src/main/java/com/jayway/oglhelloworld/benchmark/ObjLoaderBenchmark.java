@@ -0,0 +1,93 @@
+package com.jayway.oglhelloworld.benchmark;
+
+import com.jayway.oglhelloworld.gl.GlObject;
+import com.jayway.oglhelloworld.gl.ObjLoader;
+import com.jayway.oglhelloworld.gl.VertexType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a torus exported as OBJ text with positions, texture coordinates and normals, from memory so that only
+ * the parser is measured. The file size is logged once, divide it by the score for the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ObjLoaderBenchmark {
+
+    @Param({"100", "400"})
+    public int tessellation;
+
+    @Param({"true", "false"})
+    public boolean withNormals;
+
+    private byte[] mObj;
+
+    @Setup
+    public void setup() throws UnsupportedEncodingException {
+        mObj = createTorusObj(tessellation, withNormals).getBytes("UTF-8");
+        System.out.println("OBJ size: " + mObj.length + " bytes");
+    }
+
+    @Benchmark
+    public GlObject load() {
+        return ObjLoader.load("Torus", new ByteArrayInputStream(mObj), VertexType.VERTEX_TYPE_POS_UV_NORMAL);
+    }
+
+    /**
+     * Writes a torus the way exporters do, one quad per face and the attributes as floats.
+     */
+    private static String createTorusObj(int n, boolean withNormals) {
+        final StringBuilder obj = new StringBuilder("# Torus\no Torus\n");
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                final double a = 2 * Math.PI * i / n;
+                final double b = 2 * Math.PI * j / n;
+                final double ring = 0.7 + 0.4 * Math.cos(b);
+
+                obj.append("v ").append((float) (ring * Math.cos(a)))
+                   .append(' ').append((float) (ring * Math.sin(a)))
+                   .append(' ').append((float) (0.4 * Math.sin(b))).append('\n');
+                obj.append("vt ").append((float) i / n).append(' ').append((float) j / n).append('\n');
+                if (withNormals) {
+                    obj.append("vn ").append((float) (Math.cos(b) * Math.cos(a)))
+                       .append(' ').append((float) (Math.cos(b) * Math.sin(a)))
+                       .append(' ').append((float) Math.sin(b)).append('\n');
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                final int[] quad = {
+                        i * n + j + 1,
+                        (i + 1) % n * n + j + 1,
+                        (i + 1) % n * n + (j + 1) % n + 1,
+                        i * n + (j + 1) % n + 1
+                };
+
+                obj.append('f');
+                for (int corner : quad) {
+                    obj.append(' ').append(corner).append('/').append(corner);
+                    if (withNormals) {
+                        obj.append('/').append(corner);
+                    }
+                }
+                obj.append('\n');
+            }
+        }
+        return obj.toString();
+    }
+}
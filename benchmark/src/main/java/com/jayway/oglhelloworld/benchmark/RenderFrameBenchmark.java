@@ -0,0 +1,58 @@
+package com.jayway.oglhelloworld.benchmark;
+
+import com.jayway.oglhelloworld.gl.GlObject;
+import com.jayway.oglhelloworld.gl.GlObjectFactory;
+import com.jayway.oglhelloworld.gl.RecordingGlBackend;
+import com.jayway.oglhelloworld.gl.SceneRenderer;
+import com.jayway.oglhelloworld.gl.StateCachingGlBackend;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU cost of drawing a frame, without the driver, by rendering through a {@link RecordingGlBackend}.
+ * The returned call count shows how many GL calls would have reached the driver, with and without the
+ * {@link StateCachingGlBackend} in between.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RenderFrameBenchmark {
+
+    @Param({"false", "true"})
+    public boolean stateCaching;
+
+    private RecordingGlBackend mGl;
+    private SceneRenderer mRenderer;
+
+    @Setup
+    public void setup() {
+        final GlObject torus = GlObjectFactory.createTorus(0.7f, 0.4f, 40, 40, true, true);
+
+        mGl = new RecordingGlBackend(false);
+        mRenderer = new SceneRenderer(stateCaching ? new StateCachingGlBackend(mGl) : mGl);
+        mRenderer.onSurfaceCreated(Collections.singletonList(torus));
+        mRenderer.setShaderProgram(mGl.glCreateProgram(), true, true);
+        mRenderer.setTexture(1);
+        mRenderer.onSurfaceChanged(1920, 1080);
+        mRenderer.setTarget(torus);
+
+        // Upload the buffers outside of the measurement
+        mRenderer.drawFrame();
+    }
+
+    @Benchmark
+    public int drawFrame() {
+        mRenderer.drawFrame();
+        return mGl.getTotalCount();
+    }
+}
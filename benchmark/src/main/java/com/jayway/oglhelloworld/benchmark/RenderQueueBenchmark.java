@@ -0,0 +1,71 @@
+package com.jayway.oglhelloworld.benchmark;
+
+import com.jayway.oglhelloworld.gl.GlObject;
+import com.jayway.oglhelloworld.gl.GlObjectFactory;
+import com.jayway.oglhelloworld.gl.RenderQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling and sorting a {@link RenderQueue} for a frame, with draws spread over a few programs and textures.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderQueueBenchmark {
+    private static final int PROGRAM_COUNT = 4;
+    private static final int TEXTURE_COUNT = 16;
+
+    @Param({"100", "1000", "10000"})
+    public int drawCount;
+
+    private RenderQueue mQueue;
+    private GlObject[] mObjects;
+    private int[] mPrograms;
+    private int[] mTextures;
+    private float[] mDepths;
+
+    @Setup
+    public void setup() {
+        final GlObject[] meshes = {
+                GlObjectFactory.createCube(1, 1, 1, true, true),
+                GlObjectFactory.createCubeWithFlatNormals(1, 1, 1, true, false),
+                GlObjectFactory.createTorus(0.7f, 0.4f, 10, 10, false, false)
+        };
+
+        final Random random = new Random(42);
+        mObjects = new GlObject[drawCount];
+        mPrograms = new int[drawCount];
+        mTextures = new int[drawCount];
+        mDepths = new float[drawCount];
+        for (int i = 0; i < drawCount; i++) {
+            mObjects[i] = meshes[random.nextInt(meshes.length)];
+            mPrograms[i] = 1 + random.nextInt(PROGRAM_COUNT);
+            mTextures[i] = 1 + random.nextInt(TEXTURE_COUNT);
+            mDepths[i] = random.nextFloat();
+        }
+
+        mQueue = new RenderQueue(drawCount);
+    }
+
+    @Benchmark
+    public int submitAndSort() {
+        final RenderQueue queue = mQueue;
+        queue.clear();
+        for (int i = 0; i < drawCount; i++) {
+            queue.submit(mObjects[i], mPrograms[i], mTextures[i], mDepths[i]);
+        }
+        queue.sort();
+        return queue.getStateSwitchCount();
+    }
+}
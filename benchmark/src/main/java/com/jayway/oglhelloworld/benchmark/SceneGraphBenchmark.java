@@ -0,0 +1,62 @@
+package com.jayway.oglhelloworld.benchmark;
+
+import com.jayway.oglhelloworld.gl.scene.SceneGraph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updating the world matrices of a {@link SceneGraph} shaped as a tree with four children per node, when the whole
+ * tree moves and when only a few leaves move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SceneGraphBenchmark {
+    private static final int CHILDREN_PER_NODE = 4;
+
+    // Every hundredth node moves in the partial update
+    private static final int MOVING_NODE_STRIDE = 100;
+
+    @Param({"10000", "50000"})
+    public int nodeCount;
+
+    private SceneGraph mGraph;
+    private float mAngle;
+
+    @Setup
+    public void setup() {
+        mGraph = new SceneGraph(nodeCount);
+        mGraph.createNode(SceneGraph.NO_NODE);
+        for (int i = 1; i < nodeCount; i++) {
+            final int node = mGraph.createNode((i - 1) / CHILDREN_PER_NODE);
+            mGraph.setTranslation(node, 1f, 0f, 0f);
+            mGraph.setRotation(node, i, 0f, 1f, 0f);
+        }
+        mGraph.update();
+    }
+
+    @Benchmark
+    public int updateAll() {
+        mAngle += 1f;
+        mGraph.setRotation(0, mAngle, 0f, 1f, 0f);
+        return mGraph.update();
+    }
+
+    @Benchmark
+    public int updatePartial() {
+        mAngle += 1f;
+        for (int node = nodeCount - 1; node > 0; node -= MOVING_NODE_STRIDE) {
+            mGraph.setRotation(node, mAngle, 0f, 1f, 0f);
+        }
+        return mGraph.update();
+    }
+}
@@ -0,0 +1,51 @@
+package com.jayway.oglhelloworld.benchmark;
+
+import com.jayway.oglhelloworld.gl.GlObjectFactory;
+import com.jayway.oglhelloworld.gl.VertexType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link VertexType} layout lookups done for every object that is created and every attribute that is bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VertexTypeBenchmark {
+
+    @Param({"POS", "POS_UV", "POS_UV_NORMAL"})
+    public String layout;
+
+    private boolean mUseUVs;
+    private boolean mUseNormals;
+
+    @Setup
+    public void setup() {
+        mUseUVs = !"POS".equals(layout);
+        mUseNormals = "POS_UV_NORMAL".equals(layout);
+    }
+
+    @Benchmark
+    public void layout(Blackhole blackhole) {
+        final VertexType vertexType = GlObjectFactory.getVertexType(mUseUVs, mUseNormals);
+
+        blackhole.consume(vertexType.getDimension());
+        blackhole.consume(vertexType.getDataStrideInBytes());
+        blackhole.consume(vertexType.getPositionOffset());
+        blackhole.consume(vertexType.getPositionCount());
+        blackhole.consume(vertexType.getUVOffset());
+        blackhole.consume(vertexType.getUVCount());
+        blackhole.consume(vertexType.getNormalOffset());
+        blackhole.consume(vertexType.getNormalCount());
+    }
+}
@@ -0,0 +1,11 @@
+package android.graphics;
+
+/**
+ * JVM shim of {@code android.graphics.Bitmap} for the benchmarks, only needed to compile
+ * {@link com.jayway.oglhelloworld.gl.GlBackend}.
+ */
+public class Bitmap {
+
+    public void recycle() {
+    }
+}
@@ -0,0 +1,68 @@
+package android.opengl;
+
+/**
+ * JVM shim of {@code android.opengl.GLES20} for the benchmarks.
+ * <p/>
+ * It only provides the constants, GL calls are issued through a
+ * {@link com.jayway.oglhelloworld.gl.RecordingGlBackend} on the JVM.
+ */
+public class GLES20 {
+    public static final int GL_DEPTH_BUFFER_BIT = 256;
+    public static final int GL_COLOR_BUFFER_BIT = 16384;
+    public static final int GL_FALSE = 0;
+    public static final int GL_TRUE = 1;
+    public static final int GL_POINTS = 0;
+    public static final int GL_LINES = 1;
+    public static final int GL_LINE_LOOP = 2;
+    public static final int GL_LINE_STRIP = 3;
+    public static final int GL_TRIANGLES = 4;
+    public static final int GL_TRIANGLE_STRIP = 5;
+    public static final int GL_TRIANGLE_FAN = 6;
+    public static final int GL_ZERO = 0;
+    public static final int GL_ONE = 1;
+    public static final int GL_SRC_ALPHA = 770;
+    public static final int GL_ONE_MINUS_SRC_ALPHA = 771;
+    public static final int GL_ARRAY_BUFFER = 34962;
+    public static final int GL_ELEMENT_ARRAY_BUFFER = 34963;
+    public static final int GL_STREAM_DRAW = 35040;
+    public static final int GL_STATIC_DRAW = 35044;
+    public static final int GL_DYNAMIC_DRAW = 35048;
+    public static final int GL_BACK = 1029;
+    public static final int GL_TEXTURE_2D = 3553;
+    public static final int GL_CULL_FACE = 2884;
+    public static final int GL_BLEND = 3042;
+    public static final int GL_DEPTH_TEST = 2929;
+    public static final int GL_DITHER = 3024;
+    public static final int GL_STENCIL_TEST = 2960;
+    public static final int GL_SCISSOR_TEST = 3089;
+    public static final int GL_POLYGON_OFFSET_FILL = 32823;
+    public static final int GL_NO_ERROR = 0;
+    public static final int GL_INVALID_ENUM = 1280;
+    public static final int GL_INVALID_VALUE = 1281;
+    public static final int GL_INVALID_OPERATION = 1282;
+    public static final int GL_OUT_OF_MEMORY = 1285;
+    public static final int GL_CCW = 2305;
+    public static final int GL_BYTE = 5120;
+    public static final int GL_UNSIGNED_BYTE = 5121;
+    public static final int GL_SHORT = 5122;
+    public static final int GL_UNSIGNED_SHORT = 5123;
+    public static final int GL_INT = 5124;
+    public static final int GL_UNSIGNED_INT = 5125;
+    public static final int GL_FLOAT = 5126;
+    public static final int GL_EXTENSIONS = 7939;
+    public static final int GL_FRAGMENT_SHADER = 35632;
+    public static final int GL_VERTEX_SHADER = 35633;
+    public static final int GL_LINK_STATUS = 35714;
+    public static final int GL_LESS = 513;
+    public static final int GL_LEQUAL = 515;
+    public static final int GL_LINEAR = 9729;
+    public static final int GL_TEXTURE_MAG_FILTER = 10240;
+    public static final int GL_TEXTURE_MIN_FILTER = 10241;
+    public static final int GL_TEXTURE_WRAP_S = 10242;
+    public static final int GL_TEXTURE_WRAP_T = 10243;
+    public static final int GL_TEXTURE0 = 33984;
+    public static final int GL_REPEAT = 10497;
+    public static final int GL_COMPILE_STATUS = 35713;
+    public static final int GL_INVALID_FRAMEBUFFER_OPERATION = 1286;
+
+}
@@ -0,0 +1,35 @@
+package android.util;
+
+/**
+ * JVM shim of {@code android.util.Log} for the benchmarks, which prints to the standard streams.
+ */
+public class Log {
+
+    public static int d(String tag, String msg) {
+        return println(System.out, "D", tag, msg);
+    }
+
+    public static int i(String tag, String msg) {
+        return println(System.out, "I", tag, msg);
+    }
+
+    public static int w(String tag, String msg) {
+        return println(System.err, "W", tag, msg);
+    }
+
+    public static int e(String tag, String msg) {
+        return println(System.err, "E", tag, msg);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        final int written = println(System.err, "E", tag, msg);
+        tr.printStackTrace(System.err);
+        return written;
+    }
+
+    private static int println(java.io.PrintStream stream, String priority, String tag, String msg) {
+        final String line = priority + "/" + tag + ": " + msg;
+        stream.println(line);
+        return line.length();
+    }
+}
@@ -0,0 +1,104 @@
+package com.jayway.oglhelloworld.frame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a {@link FrameLoop} at 60 steps per second on a {@link ManualFrameClock} for two simulated seconds.
+ */
+public class FrameLoopTest {
+    private static final long SECOND_NANOS = 1000000000L;
+
+    private ManualFrameClock mClock;
+    private FrameLoop mFrameLoop;
+
+    private int mStepCount;
+    private int mRenderCount;
+    private boolean mAlphaInRange = true;
+
+    @Before
+    public void setUp() {
+        mClock = new ManualFrameClock(0);
+        mFrameLoop = new FrameLoop(mClock, new FrameLoop.Listener() {
+            @Override
+            public void onStep(final float dt) {
+                mStepCount++;
+            }
+
+            @Override
+            public void onRender(final float alpha) {
+                mRenderCount++;
+                mAlphaInRange &= alpha >= 0 && alpha < 1;
+            }
+        });
+    }
+
+    @Test
+    public void stepsAtTheSameSpeedAt30Hz() {
+        assertStepsPerTwoSeconds(30);
+    }
+
+    @Test
+    public void stepsAtTheSameSpeedAt60Hz() {
+        assertStepsPerTwoSeconds(60);
+    }
+
+    @Test
+    public void stepsAtTheSameSpeedAt120Hz() {
+        assertStepsPerTwoSeconds(120);
+    }
+
+    @Test
+    public void dropsStepsOfLongFrames() {
+        // Six steps are due every 100 ms frame, four are run and two dropped
+        mFrameLoop.start();
+        runFrames(21, SECOND_NANOS / 10);
+
+        assertEquals(80, mFrameLoop.getStepCount());
+        assertEquals(40, mFrameLoop.getSkippedStepCount());
+        assertEquals(mFrameLoop.getStepCount(), mStepCount);
+        assertTrue(mAlphaInRange);
+    }
+
+    @Test
+    public void firstFrameRunsNoSteps() {
+        mFrameLoop.start();
+        runFrames(1, SECOND_NANOS / 60);
+
+        assertEquals(0, mStepCount);
+        assertEquals(1, mRenderCount);
+    }
+
+    @Test
+    public void stopRemovesTheCallback() {
+        mFrameLoop.start();
+        runFrames(10, SECOND_NANOS / 60);
+        mFrameLoop.stop();
+
+        assertFalse(mClock.hasCallbacks());
+        final int steps = mStepCount;
+        runFrames(10, SECOND_NANOS / 60);
+        assertEquals(steps, mStepCount);
+    }
+
+    private void assertStepsPerTwoSeconds(int hz) {
+        mFrameLoop.start();
+        // The first frame only measures the time
+        runFrames(2 * hz + 1, SECOND_NANOS / hz);
+
+        assertEquals(120, mStepCount, 1);
+        assertEquals(0, mFrameLoop.getSkippedStepCount());
+        assertEquals(2 * hz + 1, mRenderCount);
+        assertTrue(mAlphaInRange);
+    }
+
+    private void runFrames(int count, long frameNanos) {
+        for (int i = 0; i < count; i++) {
+            mClock.frame(frameNanos);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.jayway.oglhelloworld.frame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Only the frames of a running animation may count towards the frame times and jank.
+ */
+public class FrameMetricsTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void framesOnDemandAreNotRecorded() {
+        final FrameMetrics metrics = new FrameMetrics();
+
+        // Touch frames with pauses which are no missed vsyncs
+        long time = 0;
+        for (int i = 0; i < 10; i++) {
+            renderFrame(metrics, time, false);
+            time += 100 * MS;
+        }
+
+        assertEquals(0, metrics.getIntervals().getPercentiles().count);
+        assertEquals(0, metrics.getRenderTimes().getPercentiles().count);
+        assertEquals(0, metrics.getJankCount());
+    }
+
+    @Test
+    public void gapBeforeAnimationIsNotRecorded() {
+        final FrameMetrics metrics = new FrameMetrics();
+
+        renderFrame(metrics, 0, false);
+        long time = 100 * MS;
+        for (int i = 0; i < 10; i++) {
+            renderFrame(metrics, time, true);
+            time += 16 * MS;
+        }
+
+        assertEquals(9, metrics.getIntervals().getPercentiles().count);
+        assertEquals(10, metrics.getRenderTimes().getPercentiles().count);
+        assertEquals(0, metrics.getJankCount());
+    }
+
+    @Test
+    public void missedVsyncWhileAnimatingIsJank() {
+        final FrameMetrics metrics = new FrameMetrics();
+
+        renderFrame(metrics, 0, true);
+        renderFrame(metrics, 16 * MS, true);
+        renderFrame(metrics, 50 * MS, true);
+
+        assertEquals(2, metrics.getIntervals().getPercentiles().count);
+        assertEquals(1, metrics.getJankCount());
+    }
+
+    @Test
+    public void resetStartsANewSession() {
+        final FrameMetrics metrics = new FrameMetrics();
+        renderFrame(metrics, 0, true);
+        renderFrame(metrics, 50 * MS, true);
+
+        metrics.reset();
+
+        assertEquals(0, metrics.getIntervals().getPercentiles().count);
+        assertEquals(0, metrics.getJankCount());
+    }
+
+    private static void renderFrame(FrameMetrics metrics, long timeNanos, boolean continuous) {
+        metrics.beginFrame(timeNanos, continuous);
+        metrics.endFrame(timeNanos + 2 * MS);
+    }
+}
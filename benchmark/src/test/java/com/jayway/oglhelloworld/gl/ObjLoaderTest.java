@@ -0,0 +1,136 @@
+package com.jayway.oglhelloworld.gl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The number parsing of {@link ObjLoader} must give the same floats as {@link Float#parseFloat(String)}.
+ */
+public class ObjLoaderTest {
+    // About three million numbers, one triangle per three vertices
+    private static final int VERTEX_COUNT = 999999;
+
+    @Test
+    public void parsesFloatsLikeParseFloat() {
+        final Random random = new Random(24);
+        final float[] expected = new float[VERTEX_COUNT * 3];
+        final ByteArrayOutputStream obj = new ByteArrayOutputStream(64 * VERTEX_COUNT);
+
+        for (int i = 0; i < VERTEX_COUNT; i++) {
+            final StringBuilder line = new StringBuilder("v");
+            for (int k = 0; k < 3; k++) {
+                final String number = randomNumber(random);
+                expected[i * 3 + k] = Float.parseFloat(number);
+                line.append(' ').append(number);
+            }
+            obj.write(toBytes(line.append('\n').toString()), 0, line.length());
+        }
+
+        // Each vertex is used once, so they are kept in the order they were read
+        for (int i = 0; i < VERTEX_COUNT; i += 3) {
+            final String face = "f " + (i + 1) + ' ' + (i + 2) + ' ' + (i + 3) + '\n';
+            obj.write(toBytes(face), 0, face.length());
+        }
+
+        final GlObject glObject = ObjLoader.load("Numbers", new ByteArrayInputStream(obj.toByteArray()),
+                                                 VertexType.VERTEX_TYPE_POS);
+        assertEquals(VERTEX_COUNT, glObject.vCount);
+
+        int mismatches = 0;
+        String first = null;
+        for (int i = 0; i < expected.length; i++) {
+            final float actual = glObject.vBuffer.get(i);
+            if (Float.floatToRawIntBits(actual) != Float.floatToRawIntBits(expected[i])) {
+                if (first == null) {
+                    first = expected[i] + " parsed as " + actual;
+                }
+                mismatches++;
+            }
+        }
+        assertNull(mismatches + " mismatches, the first " + first, first);
+    }
+
+    @Test
+    public void roundsNumbersNearHalfwayLikeParseFloat() {
+        // Around the halfway point between 1 and the next float, and numbers which are not parsed by hand
+        final String[] numbers = {
+                "1.000000059604644775390625", "1.000000059604644775390626", "1.000000059604644775390624",
+                "1.00000005960464477539062500000000000001", "0.000000000000000000000000000000000000000000001",
+                "1.4e-45", "7.0e-46", "3.4028235e38", "3.4028236e38", "1e-50", "123456789012345678901234567890",
+                "-0", "-0.0e10", "9007199254740993", "33554431", "33554433e-1"
+        };
+
+        final StringBuilder obj = new StringBuilder();
+        for (int i = 0; i < numbers.length; i++) {
+            obj.append("v ").append(numbers[i]).append(" 0 0\n");
+        }
+        for (int i = 0; i + 3 <= numbers.length; i += 3) {
+            obj.append("f ").append(i + 1).append(' ').append(i + 2).append(' ').append(i + 3).append('\n');
+        }
+        final GlObject glObject = load(obj.toString());
+
+        final int dimension = glObject.vertexType.getDimension();
+        for (int i = 0; i < numbers.length / 3 * 3; i++) {
+            assertEquals(numbers[i], Float.floatToRawIntBits(Float.parseFloat(numbers[i])),
+                         Float.floatToRawIntBits(glObject.vBuffer.get(i * dimension)));
+        }
+    }
+
+    @Test
+    public void rejectsMalformedNumbers() {
+        assertNull(load("v 0 0 x\nf 1 1 1\n"));
+        assertNull(load("v 0 0 1e\nf 1 1 1\n"));
+        assertNull(load("v 0 0 1.5.5\nf 1 1 1\n"));
+    }
+
+    /**
+     * @return A number written the way exporters do, shortest, fixed or scientific, over the whole float range, or
+     * with more digits than the hand written parser keeps.
+     */
+    private static String randomNumber(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return Float.toString(randomFiniteFloat(random));
+            case 1:
+                return Float.toString((float) (random.nextGaussian() * 10));
+            case 2:
+                return String.format(Locale.ROOT, "%.6f", random.nextGaussian());
+            case 3:
+                return String.format(Locale.ROOT, "%.9e", randomFiniteFloat(random));
+            case 4:
+                // More digits than a float holds
+                return Double.toString(random.nextGaussian() * 100);
+            default:
+                // More digits than a long holds
+                return String.format(Locale.ROOT, "%.25f", random.nextGaussian());
+        }
+    }
+
+    private static float randomFiniteFloat(Random random) {
+        float value;
+        do {
+            value = Float.intBitsToFloat(random.nextInt());
+        } while (Float.isNaN(value) || Float.isInfinite(value));
+        return value;
+    }
+
+    private static GlObject load(String obj) {
+        return ObjLoader.load("Test", new ByteArrayInputStream(toBytes(obj)), VertexType.VERTEX_TYPE_POS);
+    }
+
+    private static byte[] toBytes(String s) {
+        try {
+            return s.getBytes("US-ASCII");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.RecordingGlBackend.Call;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Draws frames of a torus through a {@link StateCachingGlBackend} and counts the calls which reach the
+ * {@link RecordingGlBackend} behind it, i.e. the driver.
+ */
+public class SceneRendererTest {
+
+    private RecordingGlBackend mGl;
+    private SceneRenderer mRenderer;
+    private GlObject mTorus;
+
+    @Before
+    public void setUp() {
+        mTorus = GlObjectFactory.createTorus(0.7f, 0.4f, 20, 20, true, true);
+        mGl = new RecordingGlBackend(false);
+    }
+
+    @Test
+    public void firstFrameUploadsAndDraws() {
+        setUpRenderer(new StateCachingGlBackend(mGl));
+
+        mRenderer.drawFrame();
+
+        assertEquals(1, mRenderer.getVisibleCount());
+        assertEquals(2, mGl.getCount(Call.BUFFER_DATA));
+        // In use since its handles were looked up
+        assertEquals(0, mGl.getCount(Call.USE_PROGRAM));
+        assertEquals(1, mGl.getCount(Call.UNIFORM_MATRIX_4FV));
+        assertEquals(1, mGl.getCount(Call.UNIFORM_MATRIX_3FV));
+        assertEquals(3, mGl.getCount(Call.VERTEX_ATTRIB_POINTER));
+        assertEquals(1, mGl.getCount(Call.DRAW_ELEMENTS));
+    }
+
+    @Test
+    public void unchangedFrameOnlyClearsAndDraws() {
+        setUpRenderer(new StateCachingGlBackend(mGl));
+        mRenderer.drawFrame();
+        mGl.reset();
+
+        mRenderer.drawFrame();
+
+        // The program, texture, buffers and pointers are still bound and the uniforms hold the matrices
+        assertEquals(0, mRenderer.getUniformUploadCount());
+        assertEquals(1, mGl.getCount(Call.CLEAR));
+        assertEquals(1, mGl.getCount(Call.DRAW_ELEMENTS));
+        assertEquals(2, mGl.getTotalCount());
+    }
+
+    @Test
+    public void movedObjectOnlyUploadsItsUniforms() {
+        setUpRenderer(new StateCachingGlBackend(mGl));
+        mRenderer.drawFrame();
+        mGl.reset();
+
+        mTorus.setRotationX(mTorus.getRotationX() + 10);
+        mTorus.publishTransform();
+        mRenderer.drawFrame();
+
+        assertEquals(1, mRenderer.getMatrixUpdateCount());
+        assertEquals(1, mRenderer.getUniformUploadCount());
+        assertEquals(1, mGl.getCount(Call.UNIFORM_MATRIX_4FV));
+        assertEquals(1, mGl.getCount(Call.UNIFORM_MATRIX_3FV));
+        assertEquals(1, mGl.getCount(Call.DRAW_ELEMENTS));
+        assertEquals(4, mGl.getTotalCount());
+    }
+
+    @Test
+    public void redundantStateReachesTheDriverWithoutStateCaching() {
+        setUpRenderer(mGl);
+        mRenderer.drawFrame();
+        mGl.reset();
+
+        mRenderer.drawFrame();
+
+        // Still skipped by the renderer itself
+        assertEquals(0, mGl.getCount(Call.UNIFORM_MATRIX_4FV));
+        assertEquals(0, mGl.getCount(Call.BUFFER_DATA));
+
+        assertEquals(1, mGl.getCount(Call.USE_PROGRAM));
+        assertEquals(1, mGl.getCount(Call.BIND_TEXTURE));
+        assertEquals(3, mGl.getCount(Call.VERTEX_ATTRIB_POINTER));
+        assertEquals(1, mGl.getCount(Call.DRAW_ELEMENTS));
+    }
+
+    @Test
+    public void objectsSharingProgramAndTextureOnlyUploadMatrices() {
+        final GlObject other = GlObjectFactory.createTorus(0.7f, 0.4f, 20, 20, true, true);
+        other.setRotationY(90);
+        other.publishTransform();
+
+        setUpRenderer(new StateCachingGlBackend(mGl));
+        mRenderer.setScene(Arrays.asList(mTorus, other));
+        mRenderer.drawFrame();
+        mGl.reset();
+
+        mRenderer.drawFrame();
+
+        // Each draw uploads its own matrices, the program and texture stay bound
+        assertEquals(2, mRenderer.getVisibleCount());
+        assertEquals(0, mGl.getCount(Call.USE_PROGRAM));
+        assertEquals(0, mGl.getCount(Call.BIND_TEXTURE));
+        assertEquals(2, mGl.getCount(Call.UNIFORM_MATRIX_4FV));
+        assertEquals(2, mGl.getCount(Call.DRAW_ELEMENTS));
+    }
+
+    private void setUpRenderer(GlBackend gl) {
+        mRenderer = new SceneRenderer(gl);
+        mRenderer.onSurfaceCreated(Arrays.asList(mTorus));
+        mRenderer.setShaderProgram(mGl.glCreateProgram(), true, true);
+        mRenderer.setTexture(1);
+        mRenderer.onSurfaceChanged(1920, 1080);
+        mRenderer.setTarget(mTorus);
+        mGl.reset();
+    }
+}
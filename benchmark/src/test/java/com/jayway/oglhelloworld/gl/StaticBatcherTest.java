@@ -0,0 +1,100 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.util.MeshUtil;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Objects moved through their transform, and never drawn, must be batched and derived where they are.
+ */
+public class StaticBatcherTest {
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void batchesMovedObjectWhereItIs() {
+        final GlObject cube = GlObjectFactory.createCube(1, 1, 1, false, true);
+        final float[] source = MeshUtil.getVertexData(cube);
+
+        cube.getTransform().setPosition(10, 0, 0);
+        cube.publishTransform();
+
+        final GlObject batch = batch(cube);
+        final float[] batched = MeshUtil.getVertexData(batch);
+        assertEquals(cube.vCount, batch.vCount);
+        for (int v = 0; v < cube.vCount; v++) {
+            final int i = v * cube.vertexType.getDimension() + cube.vPosOffset;
+            assertEquals(source[i] + 10, batched[i], EPSILON);
+            assertEquals(source[i + 1], batched[i + 1], EPSILON);
+            assertEquals(source[i + 2], batched[i + 2], EPSILON);
+        }
+    }
+
+    @Test
+    public void batchesRotatedObjectWithRotatedNormals() {
+        final GlObject cube = GlObjectFactory.createCube(1, 1, 1, false, true);
+        final float[] source = MeshUtil.getVertexData(cube);
+
+        // Rotates around the y-axis
+        cube.setRotationX(90);
+        cube.publishTransform();
+
+        final float[] batched = MeshUtil.getVertexData(batch(cube));
+        final int dimension = cube.vertexType.getDimension();
+        for (int v = 0; v < cube.vCount; v++) {
+            final int p = v * dimension + cube.vPosOffset;
+            assertEquals(source[p + 2], batched[p], EPSILON);
+            assertEquals(-source[p], batched[p + 2], EPSILON);
+
+            final int n = v * dimension + cube.vNormOffset;
+            final float length = (float) Math.sqrt(source[n] * source[n] + source[n + 2] * source[n + 2]
+                                                   + source[n + 1] * source[n + 1]);
+            assertEquals(source[n + 2] / length, batched[n], EPSILON);
+            assertEquals(-source[n] / length, batched[n + 2], EPSILON);
+        }
+    }
+
+    @Test
+    public void batchesModelMatrixWrittenDirectly() {
+        // As a scene graph places its meshes
+        final GlObject cube = GlObjectFactory.createCube(1, 1, 1, false, false);
+        final float[] source = MeshUtil.getVertexData(cube);
+        cube.modelMatrix[13] = 5;
+        cube.invalidateModelMatrix();
+
+        final float[] batched = MeshUtil.getVertexData(batch(cube));
+        assertEquals(source[cube.vPosOffset + 1] + 5, batched[cube.vPosOffset + 1], EPSILON);
+    }
+
+    @Test
+    public void derivedObjectsKeepTheTransform() {
+        final GlObject torus = GlObjectFactory.createTorus(0.7f, 0.4f, 20, 20, true, true);
+        torus.getTransform().setPosition(10, 0, 0);
+        torus.setRotationX(30);
+        torus.publishTransform();
+
+        final float[] expected = torus.getModelMatrix(new float[16]);
+        assertPlacedLike(expected, torus,
+                         GlObjectFactory.quantize(torus, VertexType.VERTEX_TYPE_POS_UV_NORMAL_PACKED));
+        assertPlacedLike(expected, torus, new MeshOptimizer().optimize(torus));
+        assertPlacedLike(expected, torus, new MeshSimplifier().simplify(torus, 200));
+    }
+
+    private static void assertPlacedLike(float[] expected, GlObject source, GlObject derived) {
+        assertArrayEquals(expected, derived.modelMatrix, 0);
+        assertArrayEquals(expected, derived.getModelMatrix(new float[16]), 0);
+        assertEquals(source.getRotationX(), derived.getRotationX(), 0);
+
+        // The renderer acquires the same matrix
+        derived.updateModelMatrix();
+        assertArrayEquals(expected, derived.modelMatrix, 0);
+    }
+
+    private static GlObject batch(GlObject glObject) {
+        final StaticBatcher batcher = new StaticBatcher(glObject.vertexType);
+        batcher.add(glObject);
+        return batcher.build("Batch").glObject;
+    }
+}
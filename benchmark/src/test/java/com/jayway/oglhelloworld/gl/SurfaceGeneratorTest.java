@@ -0,0 +1,64 @@
+package com.jayway.oglhelloworld.gl;
+
+import com.jayway.oglhelloworld.gl.util.MeshUtil;
+
+import org.junit.Test;
+
+import static android.opengl.GLES20.GL_TRIANGLES;
+import static android.opengl.GLES20.GL_TRIANGLE_STRIP;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The output of {@link SurfaceGenerator} must not depend on how the rows are split between threads.
+ */
+public class SurfaceGeneratorTest {
+    private static final ParametricSurface TORUS = ParametricSurface.createTorus(0.7f, 0.4f);
+
+    @Test
+    public void eightBandsGenerateTheSameTrianglesAsOne() {
+        assertSameOutput(400, 400, VertexType.VERTEX_TYPE_POS_UV_NORMAL, GL_TRIANGLES);
+    }
+
+    @Test
+    public void eightBandsGenerateTheSameStripAsOne() {
+        assertSameOutput(400, 400, VertexType.VERTEX_TYPE_POS_UV_NORMAL, GL_TRIANGLE_STRIP);
+    }
+
+    @Test
+    public void unevenBandsGenerateTheSameOutputAsOne() {
+        // Rows which do not divide evenly into the bands
+        assertSameOutput(137, 203, VertexType.VERTEX_TYPE_POS_UV, GL_TRIANGLES);
+    }
+
+    private static void assertSameOutput(int columns, int rows, VertexType vertexType, int glRenderMode) {
+        assertTrue((columns + 1) * (rows + 1) >= SurfaceGenerator.MIN_PARALLEL_VERTICES);
+
+        final GlObject serial = SurfaceGenerator.generate("Serial", TORUS, columns, rows, vertexType, glRenderMode, 1);
+        final GlObject parallel = SurfaceGenerator.generate("Parallel", TORUS, columns, rows, vertexType,
+                                                            glRenderMode, 8);
+
+        assertEquals(serial.vCount, parallel.vCount);
+        assertEquals(serial.iCount, parallel.iCount);
+        assertEquals(SurfaceGenerator.getIndexCount(columns, rows, glRenderMode), parallel.iCount);
+
+        // Bit for bit, so that e.g. cached meshes do not depend on the device
+        final float[] expected = MeshUtil.getVertexData(serial);
+        final float[] actual = MeshUtil.getVertexData(parallel);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (Float.floatToRawIntBits(expected[i]) != Float.floatToRawIntBits(actual[i])) {
+                throw new AssertionError("Vertex component " + i + " differs: " + expected[i] + " != " + actual[i]);
+            }
+        }
+
+        final int[] expectedIndices = new int[serial.iCount];
+        final int[] actualIndices = new int[parallel.iCount];
+        for (int i = 0; i < serial.iCount; i++) {
+            expectedIndices[i] = MeshUtil.getIndex(serial, i);
+            actualIndices[i] = MeshUtil.getIndex(parallel, i);
+        }
+        assertArrayEquals(expectedIndices, actualIndices);
+    }
+}
@@ -0,0 +1,86 @@
+package com.jayway.oglhelloworld.gl;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hands matrices from a producer thread to the test thread through a {@link TripleBuffer}.
+ */
+public class TripleBufferTest {
+    private static final int MATRIX_SIZE = 16;
+    private static final int PUBLISH_COUNT = 20000000;
+
+    @Test
+    public void acquiresOnlyTheLatestPublish() {
+        final TripleBuffer buffer = new TripleBuffer(1);
+        assertFalse(buffer.acquire());
+
+        buffer.getBackBuffer()[0] = 1;
+        buffer.publish();
+        buffer.getBackBuffer()[0] = 2;
+        buffer.publish();
+
+        assertTrue(buffer.acquire());
+        assertEquals(2, buffer.getFrontBuffer()[0], 0);
+        assertFalse(buffer.acquire());
+        assertEquals(2, buffer.getFrontBuffer()[0], 0);
+    }
+
+    @Test
+    public void consumerNeverSeesATornMatrix() throws InterruptedException {
+        final TripleBuffer buffer = new TripleBuffer(MATRIX_SIZE);
+        final AtomicBoolean done = new AtomicBoolean();
+
+        // Every element of a published matrix holds the number of the publish
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int n = 1; n <= PUBLISH_COUNT; n++) {
+                    final float[] matrix = buffer.getBackBuffer();
+                    final float value = Float.intBitsToFloat(n);
+                    for (int i = 0; i < MATRIX_SIZE; i++) {
+                        matrix[i] = value;
+                    }
+                    buffer.publish();
+                }
+                done.set(true);
+            }
+        }, "Producer");
+        producer.start();
+
+        int last = 0;
+        int acquired = 0;
+        boolean finished = false;
+        while (!finished) {
+            // Read after the flag, so that the last publish is acquired too
+            finished = done.get();
+            if (!buffer.acquire()) {
+                continue;
+            }
+            acquired++;
+
+            final float[] matrix = buffer.getFrontBuffer();
+            final int n = Float.floatToRawIntBits(matrix[0]);
+            for (int i = 1; i < MATRIX_SIZE; i++) {
+                final int element = Float.floatToRawIntBits(matrix[i]);
+                if (element != n) {
+                    throw new AssertionError("Torn matrix, element " + i + " of publish " + element
+                                             + " in publish " + n);
+                }
+            }
+            if (n <= last) {
+                throw new AssertionError("Publish " + n + " acquired after " + last);
+            }
+            last = n;
+        }
+        producer.join();
+
+        assertTrue(acquired > 0);
+        assertEquals(PUBLISH_COUNT, last);
+    }
+}